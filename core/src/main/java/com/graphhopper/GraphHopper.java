@@ -84,6 +84,7 @@ import static com.graphhopper.util.Parameters.Algorithms.RoundTrip;
  */
 public class GraphHopper {
     private static final Logger logger = LoggerFactory.getLogger(GraphHopper.class);
+    private static final String MAX_VALUE_PATTERN = "\\\\\"max_value\\\\\":-?\\d+,";
     private MaxSpeedCalculator maxSpeedCalculator;
     private final Map<String, Profile> profilesByName = new LinkedHashMap<>();
     private final String fileLockName = "gh.lock";
@@ -112,6 +113,8 @@ public class GraphHopper {
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
+    private RoutingMetrics routingMetrics = RoutingMetrics.NONE;
+    private RouteCache routeCache;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
@@ -125,6 +128,8 @@ public class GraphHopper {
     private double cityAreaRadius = 1500;
     private double cityAreaSensitivity = 1000;
     private int urbanDensityCalculationThreads = 0;
+    // elevation
+    private int elevationInterpolationThreads = 1;
 
     // preparation handlers
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
@@ -555,6 +560,7 @@ public class GraphHopper {
         osmReaderConfig.setLongEdgeSamplingDistance(ghConfig.getDouble("graph.elevation.long_edge_sampling_distance", osmReaderConfig.getLongEdgeSamplingDistance()));
         osmReaderConfig.setElevationMaxWayPointDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", osmReaderConfig.getElevationMaxWayPointDistance()));
         routerConfig.setElevationWayPointMaxDistance(ghConfig.getDouble("graph.elevation.way_point_max_distance", routerConfig.getElevationWayPointMaxDistance()));
+        elevationInterpolationThreads = ghConfig.getInt("graph.elevation.interpolation_threads", elevationInterpolationThreads);
         ElevationProvider elevationProvider = createElevationProvider(ghConfig);
         setElevationProvider(elevationProvider);
 
@@ -586,6 +592,8 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setSinglePass(ghConfig.getBool("datareader.single_pass", osmReaderConfig.isSinglePass()));
+        osmReaderConfig.setStoreOSMNodes(ghConfig.getBool("datareader.store_osm_nodes", osmReaderConfig.isStoreOSMNodes()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
@@ -609,6 +617,8 @@ public class GraphHopper {
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
                     + " should be less or equal to landmark count of " + lmPreparationHandler.getLandmarks());
         routerConfig.setActiveLandmarkCount(activeLandmarkCount);
+        long routeCacheBytes = ghConfig.getLong("routing.route_cache.max_bytes", 0);
+        routeCache = routeCacheBytes > 0 ? new RouteCache(routeCacheBytes) : null;
 
         calcChecksums = ghConfig.getBool("graph.calc_checksums", false);
 
@@ -754,7 +764,10 @@ public class GraphHopper {
             provider
                     .setAutoRemoveTemporaryFiles(removeTempElevationFiles)
                     .setInterpolate(interpolate)
-                    .setDAType(elevationDAType);
+                    .setDAType(elevationDAType)
+                    .setPrefetchThreads(ghConfig.getInt("graph.elevation.prefetch_threads", 0));
+            if (ghConfig.has("graph.elevation.max_cached_tiles"))
+                provider.setMaxCachedTiles(ghConfig.getInt("graph.elevation.max_cached_tiles", Integer.MAX_VALUE));
             if (!baseURL.isEmpty())
                 provider.setBaseURL(baseURL);
         }
@@ -814,6 +827,92 @@ public class GraphHopper {
         close();
     }
 
+    /**
+     * Applies an OSM change file (.osc or .osc.gz) to the graph that was imported into the graph folder before, so
+     * daily or hourly diffs can be included without reading and parsing the entire OSM file again. This requires the
+     * osm_way_id encoded value, see {@link OSMReader#applyChanges} for details and limitations. The subnetworks are
+     * searched again, but the location index and the CH and LM preparations are removed, because they are stale after
+     * the update. They are created again by the next call of {@link #importOrLoad()}.
+     */
+    public void importChangesAndClose(String changeFile) {
+        ensureNotLoaded();
+        if (isEmpty(ghLocation))
+            throw new IllegalStateException("GraphHopperLocation is not specified. Call setGraphHopperLocation or init before");
+        ensureWriteAccess();
+        prepareImport();
+        if (!encodingManager.hasEncodedValue(OSMWayID.KEY))
+            throw new IllegalArgumentException("Applying OSM changes requires the " + OSMWayID.KEY + " encoded value, add it to graph.encoded_values and run a new import");
+        GHDirectory directory = new GHDirectory(ghLocation, dataAccessDefaultType);
+        directory.configure(dataAccessConfig);
+        GHLock lock = null;
+        try {
+            if (directory.getDefaultType().isStoring()) {
+                lockFactory.setLockDir(new File(ghLocation));
+                lock = lockFactory.create(fileLockName, true);
+                if (!lock.tryLock())
+                    throw new RuntimeException("To avoid multiple writers we need to obtain a write lock but it failed. In " + ghLocation, lock.getObtainFailedReason());
+            }
+            properties = new StorableProperties(directory);
+            if (!properties.loadExisting())
+                throw new IllegalStateException("Cannot apply changes, there is no graph in " + ghLocation);
+            if (!properties.get("profiles").equals(getProfilesString()))
+                throw new IllegalStateException("Profiles do not match:"
+                        + "\nGraphhopper config: " + getProfilesString()
+                        + "\nGraph: " + properties.get("profiles"));
+            // the stored encoded values contain the max values observed during the import, we keep them unchanged
+            String storedEncodedValues = properties.get("graph.encoded_values").replaceAll(MAX_VALUE_PATTERN, "");
+            String configuredEncodedValues = encodingManager.toEncodedValuesAsString().replaceAll(MAX_VALUE_PATTERN, "");
+            if (!storedEncodedValues.equals(configuredEncodedValues))
+                throw new IllegalStateException("Encoded values do not match:"
+                        + "\nGraphhopper config: " + configuredEncodedValues
+                        + "\nGraph: " + storedEncodedValues);
+            baseGraph = new BaseGraph.Builder(encodingManager)
+                    .setDir(directory)
+                    .set3D(hasElevation())
+                    .withTurnCosts(encodingManager.needsTurnCostsSupport())
+                    .setSegmentSize(defaultSegmentSize)
+                    .build();
+            checkProfilesConsistency();
+            if (!baseGraph.loadExisting())
+                throw new IllegalStateException("Cannot apply changes, could not load graph from " + ghLocation);
+            removeStalePreparations(directory);
+
+            LocationIndexTree index = new LocationIndexTree(baseGraph, directory);
+            if (!index.loadExisting())
+                throw new IllegalStateException("Cannot apply changes, could not load location index from " + ghLocation);
+            try {
+                createOSMReader().applyChanges(new File(changeFile), encodingManager.getIntEncodedValue(OSMWayID.KEY), index);
+            } catch (IOException ex) {
+                throw new RuntimeException("Cannot read change file " + changeFile, ex);
+            }
+            // the location index does not contain the new edges, so we let the next import or load create it again
+            directory.remove("location_index");
+            cleanUp();
+
+            properties.put("datareader.changes.date", createFormatter().format(new Date()));
+            flush();
+        } finally {
+            if (lock != null)
+                lock.release();
+        }
+        close();
+    }
+
+    private void removeStalePreparations(Directory directory) {
+        if (baseGraph.isFrozen())
+            baseGraph.unfreeze();
+        List<String> names = new ArrayList<>();
+        for (CHConfig chConfig : createCHConfigs(chPreparationHandler.getCHProfiles()))
+            names.addAll(Arrays.asList("nodes_ch_" + chConfig.getName(), "shortcuts_" + chConfig.getName()));
+        for (LMConfig lmConfig : createLMConfigs(lmPreparationHandler.getLMProfiles()))
+            names.addAll(Arrays.asList("landmarks_" + lmConfig.getName(), "landmarks_subnetwork_" + lmConfig.getName()));
+        for (String name : names) {
+            // we need to create the data access before we can remove it together with its files
+            directory.create(name);
+            directory.remove(name);
+        }
+    }
+
     /**
      * Creates the graph from OSM data.
      */
@@ -933,6 +1032,24 @@ public class GraphHopper {
             throw new IllegalStateException("Couldn't load from existing folder: " + ghLocation
                     + " but also cannot use file for DataReader as it wasn't specified!");
 
+        logger.info("start creating graph from " + osmFile);
+        OSMReader reader = createOSMReader().setFile(_getOSMFile());
+        logger.info("using " + getBaseGraphString() + ", memory:" + getMemInfo());
+
+        createBaseGraphAndProperties();
+
+        try {
+            reader.readGraph();
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot read file " + getOSMFile(), ex);
+        }
+        DateFormat f = createFormatter();
+        properties.put("datareader.import.date", f.format(new Date()));
+        if (reader.getDataDate() != null)
+            properties.put("datareader.data.date", f.format(reader.getDataDate()));
+    }
+
+    private OSMReader createOSMReader() {
         List<CustomArea> customAreas = readCountries();
         if (isEmpty(customAreasDirectory)) {
             logger.info("No custom areas are used, custom_areas.directory not given");
@@ -948,24 +1065,10 @@ public class GraphHopper {
             logger.info("Applying rules for the following countries: {}", countryRuleFactory.getCountryToRuleMap().keySet());
         }
 
-        logger.info("start creating graph from " + osmFile);
-        OSMReader reader = new OSMReader(baseGraph.getBaseGraph(), osmParsers, osmReaderConfig).setFile(_getOSMFile()).
+        return new OSMReader(baseGraph.getBaseGraph(), osmParsers, osmReaderConfig).
                 setAreaIndex(areaIndex).
                 setElevationProvider(eleProvider).
                 setCountryRuleFactory(countryRuleFactory);
-        logger.info("using " + getBaseGraphString() + ", memory:" + getMemInfo());
-
-        createBaseGraphAndProperties();
-
-        try {
-            reader.readGraph();
-        } catch (IOException ex) {
-            throw new RuntimeException("Cannot read file " + getOSMFile(), ex);
-        }
-        DateFormat f = createFormatter();
-        properties.put("datareader.import.date", f.format(new Date()));
-        if (reader.getDataDate() != null)
-            properties.put("datareader.data.date", f.format(reader.getDataDate()));
     }
 
     protected void createBaseGraphAndProperties() {
@@ -1305,15 +1408,15 @@ public class GraphHopper {
         if (encodingManager.hasEncodedValue(RoadEnvironment.KEY)) {
             EnumEncodedValue<RoadEnvironment> roadEnvEnc = encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
             StopWatch sw = new StopWatch().start();
-            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.TUNNEL).execute();
+            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.TUNNEL).setThreads(elevationInterpolationThreads).execute();
             float tunnel = sw.stop().getSeconds();
             sw = new StopWatch().start();
-            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.BRIDGE).execute();
+            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.BRIDGE).setThreads(elevationInterpolationThreads).execute();
             float bridge = sw.stop().getSeconds();
             // The SkadiProvider contains bathymetric data. For ferries this can result in bigger elevation changes
             // See #2098 for mor information
             sw = new StopWatch().start();
-            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.FERRY).execute();
+            new EdgeElevationInterpolator(baseGraph.getBaseGraph(), roadEnvEnc, RoadEnvironment.FERRY).setThreads(elevationInterpolationThreads).execute();
             logger.info("Bridge interpolation " + (int) bridge + "s, " + "tunnel interpolation " + (int) tunnel + "s, ferry interpolation " + (int) sw.stop().getSeconds() + "s");
         }
     }
@@ -1343,7 +1446,9 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks).
+                setRoutingMetrics(routingMetrics).
+                setRouteCache(routeCache);
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -1535,6 +1640,8 @@ public class GraphHopper {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        if (routeCache != null)
+            routeCache.clear();
         if (baseGraph != null)
             baseGraph.close();
         if (properties != null)
@@ -1587,6 +1694,25 @@ public class GraphHopper {
         return routerConfig;
     }
 
+    /**
+     * Sets the callback that receives the timings of all route requests, e.g. to collect statistics
+     */
+    public GraphHopper setRoutingMetrics(RoutingMetrics routingMetrics) {
+        this.routingMetrics = routingMetrics;
+        return this;
+    }
+
+    public RoutingMetrics getRoutingMetrics() {
+        return routingMetrics;
+    }
+
+    /**
+     * @return the cache for the results of speed mode requests or null if routing.route_cache.max_bytes is not set
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
     public OSMReaderConfig getReaderConfig() {
         return osmReaderConfig;
     }
@@ -13,13 +13,17 @@
 
 package com.graphhopper.isochrone.algorithm;
 
+import com.graphhopper.util.GHUtility;
 import org.locationtech.jts.algorithm.Area;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.geom.prep.PreparedPolygon;
 import org.locationtech.jts.triangulate.quadedge.Vertex;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.function.ToIntBiFunction;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -54,11 +58,34 @@ public class ContourBuilder {
         return computeIsoline(cut, seedEdges);
     }
 
+    /**
+     * @return the isolines for all the given values in the same order, computed in the current thread
+     */
+    public List<MultiPolygon> computeIsolines(List<Double> zs, Collection<ReadableQuadEdge> seedEdges) {
+        return zs.stream().map(z0 -> computeIsoline(z0, seedEdges)).collect(Collectors.toList());
+    }
+
+    /**
+     * Computes the isolines for all the given values at the same time on the given executor. This is possible because
+     * the triangulation is only read while walking along the cut edges, and it is useful because every isoline
+     * traverses a big part of the triangulation.
+     *
+     * @return the isolines in the same order as the given values
+     * @throws IllegalStateException if the current thread was interrupted
+     */
+    public List<MultiPolygon> computeIsolines(List<Double> zs, Collection<ReadableQuadEdge> seedEdges, ExecutorService executorService) {
+        List<Callable<MultiPolygon>> tasks = zs.stream().<Callable<MultiPolygon>>map(z0 -> () -> computeIsoline(z0, seedEdges)).collect(Collectors.toList());
+        return GHUtility.invokeAll(executorService, tasks);
+    }
+
     public MultiPolygon computeIsoline(ToIntBiFunction<Vertex, Vertex> cut, Collection<ReadableQuadEdge> seedEdges) {
         Set<ReadableQuadEdge> processed = new HashSet<>();
         List<LinearRing> rings = new ArrayList<>();
 
         for (ReadableQuadEdge f : seedEdges) {
+            // stop early if the request was cancelled
+            if (Thread.currentThread().isInterrupted())
+                throw new IllegalStateException("Thread was interrupted");
             ReadableQuadEdge e = f.getPrimary();
             if (processed.contains(e))
                 continue;
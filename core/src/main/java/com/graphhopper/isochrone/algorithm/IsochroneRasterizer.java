@@ -0,0 +1,258 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PointList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Creates a grid with the smallest time, distance or weight at which each cell is reached, as an alternative to the
+ * polygons of the {@link ContourBuilder} that does not need a triangulation. The values along the edges of the
+ * shortest path tree are linearly interpolated between the values of their nodes and written into all cells that an
+ * edge crosses. The cells are square in lat/lon-space. The grid can be split into horizontal bands that are filled in
+ * parallel on a given executor.
+ */
+public class IsochroneRasterizer {
+    // every segment is stored as lat1, lon1, z1, lat2, lon2, z2
+    private final DoubleArrayList segments = new DoubleArrayList();
+    private final double cellSize;
+
+    /**
+     * @param cellSize the width and height of the cells in degrees
+     */
+    public IsochroneRasterizer(double cellSize) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize))
+            throw new IllegalArgumentException("The cell size must be positive but was " + cellSize);
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds the edges of the given shortest path tree. This runs the search of the tree.
+     */
+    public IsochroneRasterizer addEdges(QueryGraph queryGraph, ShortestPathTree shortestPathTree, int from,
+                                        ToDoubleFunction<ShortestPathTree.IsoLabel> fz) {
+        shortestPathTree.search(from, label -> {
+            double z = fz.applyAsDouble(label);
+            if (label.parent == null) {
+                double lat = queryGraph.getNodeAccess().getLat(label.node);
+                double lon = queryGraph.getNodeAccess().getLon(label.node);
+                addSegment(lat, lon, z, lat, lon, z);
+                return;
+            }
+            // the geometry goes from the parent to the node of the label
+            EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edge, label.node);
+            PointList points = edge.fetchWayGeometry(FetchMode.ALL);
+            double parentZ = fz.applyAsDouble(label.parent);
+            double length = 0;
+            for (int i = 1; i < points.size(); i++)
+                length += segmentLength(points, i);
+            double prevZ = parentZ;
+            double distance = 0;
+            for (int i = 1; i < points.size(); i++) {
+                distance += segmentLength(points, i);
+                double nextZ = length > 0 ? parentZ + (z - parentZ) * distance / length : z;
+                addSegment(points.getLat(i - 1), points.getLon(i - 1), prevZ, points.getLat(i), points.getLon(i), nextZ);
+                prevZ = nextZ;
+            }
+        });
+        return this;
+    }
+
+    private static double segmentLength(PointList points, int i) {
+        // we only need the relative length along the edge
+        return Math.hypot(points.getLat(i) - points.getLat(i - 1), points.getLon(i) - points.getLon(i - 1));
+    }
+
+    public IsochroneRasterizer addSegment(double lat1, double lon1, double z1, double lat2, double lon2, double z2) {
+        segments.add(lat1, lon1, z1, lat2, lon2, z2);
+        return this;
+    }
+
+    /**
+     * Creates the grid in the current thread, see {@link #rasterize(double, int, ExecutorService, int)}
+     */
+    public Raster rasterize(double limit, int maxCells) {
+        return rasterize(limit, maxCells, null, 1);
+    }
+
+    /**
+     * @param limit           cells with larger values are not reached. Segments that exceed the limit are cut.
+     * @param maxCells        the maximum number of cells of the grid
+     * @param executorService fills the bands of the grid, or null to fill them in the current thread
+     * @param bands           the number of bands that can be filled in parallel
+     * @return the grid that covers all segments that are below the limit
+     * @throws IllegalStateException if the current thread was interrupted
+     */
+    public Raster rasterize(double limit, int maxCells, ExecutorService executorService, int bands) {
+        // cut the segments at the limit and find the bounds of the remaining ones
+        double[] s = segments.toArray();
+        IntArrayList included = new IntArrayList();
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE, minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < s.length; i += 6) {
+            if (s[i + 2] > limit && s[i + 5] > limit)
+                continue;
+            if (s[i + 2] > limit)
+                cut(s, i + 3, i, limit);
+            else if (s[i + 5] > limit)
+                cut(s, i, i + 3, limit);
+            included.add(i);
+            minLat = Math.min(minLat, Math.min(s[i], s[i + 3]));
+            maxLat = Math.max(maxLat, Math.max(s[i], s[i + 3]));
+            minLon = Math.min(minLon, Math.min(s[i + 1], s[i + 4]));
+            maxLon = Math.max(maxLon, Math.max(s[i + 1], s[i + 4]));
+        }
+        if (included.isEmpty())
+            throw new IllegalArgumentException("Nothing is reachable within the limit");
+
+        // for very small cells the number of cells does not even fit into an int, so we check it before the cast
+        double columns = Math.floor((maxLon - minLon) / cellSize) + 1;
+        double rows = Math.floor((maxLat - minLat) / cellSize) + 1;
+        if (columns * rows > maxCells)
+            throw new IllegalArgumentException("The grid would have " + String.format(Locale.ROOT, "%.0f", columns * rows)
+                    + " cells, but the maximum is " + maxCells + ". Use larger cells or a smaller limit.");
+        int width = (int) columns;
+        int height = (int) rows;
+        Raster raster = new Raster(width, height, minLon, maxLat, cellSize);
+        float[] values = raster.values;
+        Arrays.fill(values, Float.POSITIVE_INFINITY);
+
+        // every band only writes into its own rows, so the bands can be filled in parallel without locking
+        bands = Math.max(1, Math.min(height, bands));
+        IntArrayList[] segmentsPerBand = new IntArrayList[bands];
+        for (int b = 0; b < bands; b++)
+            segmentsPerBand[b] = new IntArrayList();
+        for (int j = 0; j < included.size(); j++) {
+            int i = included.get(j);
+            int firstRow = raster.getRow(Math.max(s[i], s[i + 3]));
+            int lastRow = raster.getRow(Math.min(s[i], s[i + 3]));
+            for (int b = getBand(firstRow, height, bands); b <= getBand(lastRow, height, bands); b++)
+                segmentsPerBand[b].add(i);
+        }
+        List<Runnable> bandTasks = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            int fromRow = (int) ((long) b * height / bands);
+            int toRow = (int) ((long) (b + 1) * height / bands);
+            IntArrayList bandSegments = segmentsPerBand[b];
+            bandTasks.add(() -> fillBand(s, bandSegments, raster, fromRow, toRow));
+        }
+        if (executorService == null)
+            bandTasks.forEach(Runnable::run);
+        else
+            GHUtility.invokeAll(executorService, bandTasks.stream().map(Executors::callable).collect(Collectors.toList()));
+        return raster;
+    }
+
+    /**
+     * Writes the given segments into the rows from fromRow (inclusive) to toRow (exclusive)
+     */
+    private void fillBand(double[] s, IntArrayList bandSegments, Raster raster, int fromRow, int toRow) {
+        float[] values = raster.values;
+        int width = raster.width;
+        for (int j = 0; j < bandSegments.size(); j++) {
+            // a large grid can take a while, so we stop early if the request was cancelled
+            if (Thread.currentThread().isInterrupted())
+                throw new IllegalStateException("Thread was interrupted");
+            int i = bandSegments.get(j);
+            // sample with half the cell size so that we do not miss a cell
+            int steps = (int) Math.ceil(2 * Math.max(Math.abs(s[i + 3] - s[i]), Math.abs(s[i + 4] - s[i + 1])) / cellSize);
+            for (int step = 0; step <= steps; step++) {
+                double f = steps == 0 ? 0 : (double) step / steps;
+                int row = raster.getRow(s[i] + f * (s[i + 3] - s[i]));
+                if (row < fromRow || row >= toRow)
+                    continue;
+                int col = raster.getCol(s[i + 1] + f * (s[i + 4] - s[i + 1]));
+                float z = (float) (s[i + 2] + f * (s[i + 5] - s[i + 2]));
+                int index = row * width + col;
+                if (z < values[index])
+                    values[index] = z;
+            }
+        }
+        for (int index = fromRow * width; index < toRow * width; index++)
+            if (values[index] == Float.POSITIVE_INFINITY)
+                values[index] = Float.NaN;
+    }
+
+    /**
+     * Moves the point of a segment at the index 'above' towards the point at the index 'below' until its value is the limit
+     */
+    private static void cut(double[] s, int below, int above, double limit) {
+        double f = (limit - s[below + 2]) / (s[above + 2] - s[below + 2]);
+        s[above] = s[below] + f * (s[above] - s[below]);
+        s[above + 1] = s[below + 1] + f * (s[above + 1] - s[below + 1]);
+        s[above + 2] = limit;
+    }
+
+    private static int getBand(int row, int height, int bands) {
+        // band b starts at row b * height / bands (rounded down), see rasterize
+        int band = (int) ((long) row * bands / height);
+        while (band + 1 < bands && (long) (band + 1) * height / bands <= row)
+            band++;
+        while (band > 0 && (long) band * height / bands > row)
+            band--;
+        return band;
+    }
+
+    public static class Raster {
+        public final int width;
+        public final int height;
+        // the coordinates of the upper left corner of the grid
+        public final double minLon;
+        public final double maxLat;
+        public final double cellSize;
+        /**
+         * The values of the cells row by row from north to south and within each row from west to east. Cells that
+         * are not reached are NaN.
+         */
+        public final float[] values;
+
+        Raster(int width, int height, double minLon, double maxLat, double cellSize) {
+            this.width = width;
+            this.height = height;
+            this.minLon = minLon;
+            this.maxLat = maxLat;
+            this.cellSize = cellSize;
+            this.values = new float[width * height];
+        }
+
+        public float getValue(int row, int col) {
+            return values[row * width + col];
+        }
+
+        public int getRow(double lat) {
+            return Math.max(0, Math.min(height - 1, (int) ((maxLat - lat) / cellSize)));
+        }
+
+        public int getCol(double lon) {
+            return Math.max(0, Math.min(width - 1, (int) ((lon - minLon) / cellSize)));
+        }
+    }
+}
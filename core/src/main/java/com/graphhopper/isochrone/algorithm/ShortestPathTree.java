@@ -17,6 +17,7 @@
  */
 package com.graphhopper.isochrone.algorithm;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.cursors.ObjectCursor;
 import com.graphhopper.coll.GHIntObjectHashMap;
@@ -63,6 +64,7 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
             this.time = time;
             this.distance = distance;
             this.parent = parent;
+            this.source = parent == null ? 0 : parent.source;
         }
 
         public boolean deleted = false;
@@ -72,6 +74,10 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         public long time;
         public double distance;
         public IsoLabel parent;
+        /**
+         * The index of the start node from which this label was reached, see {@link #search(int[], Consumer)}
+         */
+        public int source;
 
         @Override
         public String toString() {
@@ -130,15 +136,40 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
     }
 
+    /**
+     * @throws IllegalStateException if the timeout is exceeded or the current thread was interrupted before the
+     *                               search finished, because we must not return an incomplete tree
+     */
     public void search(int from, final Consumer<IsoLabel> consumer) {
+        search(new int[]{from}, consumer);
+    }
+
+    /**
+     * Searches from all the given nodes at the same time, so every node is reached from the nearest of them. This is
+     * the same as one search per start node where only the labels with the smallest weight are kept, but much faster.
+     * The index of the start node from which a label was reached is stored in {@link IsoLabel#source}. If a node is
+     * specified multiple times the first index is used.
+     */
+    public void search(int[] sources, final Consumer<IsoLabel> consumer) {
         checkAlreadyRun();
-        IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
-        queueByWeighting.add(currentLabel);
-        queueByZ.add(currentLabel);
-        if (traversalMode == TraversalMode.NODE_BASED) {
-            fromMap.put(from, currentLabel);
+        setupFinishTime();
+        IntHashSet startNodes = new IntHashSet(sources.length);
+        IsoLabel currentLabel;
+        for (int i = 0; i < sources.length; i++) {
+            if (!startNodes.add(sources[i]))
+                continue;
+            currentLabel = new IsoLabel(sources[i], -1, 0, 0, 0, null);
+            currentLabel.source = i;
+            queueByWeighting.add(currentLabel);
+            queueByZ.add(currentLabel);
+            if (traversalMode == TraversalMode.NODE_BASED) {
+                fromMap.put(sources[i], currentLabel);
+            }
         }
         while (!finished()) {
+            if (isTimeoutExceeded())
+                throw new IllegalStateException("Shortest path tree search was aborted after " + visitedNodes
+                        + " visited nodes due to a timeout or because it was cancelled");
             currentLabel = queueByWeighting.poll();
             if (currentLabel.deleted)
                 continue;
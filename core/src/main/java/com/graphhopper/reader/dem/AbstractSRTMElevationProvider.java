@@ -17,15 +17,16 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.Map;
 
 /**
  * Common functionality used when working with SRTM hgt data.
@@ -39,7 +40,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    private final Map<Integer, HeightTile> cacheData = createTileCache();
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -61,6 +62,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     @Override
     public void release() {
         cacheData.clear();
+        releaseDetachedTiles();
         if (dir != null) {
             // for memory mapped type we remove temporary files
             if (autoRemoveTemporary)
@@ -99,6 +101,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
             if (fileName == null || (Helper.isEmpty(baseUrl) && !new File(fileName).exists()))
                 return 0;
 
+            awaitPrefetch("dem" + intKey);
             DataAccess heights = getDirectory().create("dem" + intKey);
             boolean loadExisting = false;
             try {
@@ -108,16 +111,10 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
             }
 
             if (!loadExisting) {
-                try {
-                    updateHeightsFromFile(lat, lon, heights);
-                } catch (FileNotFoundException ex) {
+                if (!decodeTile(lat, lon, heights)) {
                     demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
                     demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.create(10)
-                            .flush();
+                    cacheData.put(intKey, demProvider);
                     return 0;
                 }
             }
@@ -127,9 +124,9 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
                 width = DEFAULT_WIDTH;
 
             demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
             demProvider.setInterpolate(interpolate);
             demProvider.setHeights(heights);
+            cacheData.put(intKey, demProvider);
         }
 
         if (demProvider.isSeaLevel())
@@ -138,6 +135,44 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
         return demProvider.getHeight(lat, lon);
     }
 
+    /**
+     * Fills the given DataAccess with the heights of the tile containing the given coordinates.
+     *
+     * @return false if there is no data for this tile. In this case the DataAccess is marked as sea level.
+     */
+    private boolean decodeTile(double lat, double lon, DataAccess heights) {
+        try {
+            updateHeightsFromFile(lat, lon, heights);
+            return true;
+        } catch (FileNotFoundException ex) {
+            // use small size on disc and in-memory
+            heights.create(10);
+            // the sea level flag is stored in the same header as the width
+            heights.setHeader(WIDTH_BYTE_INDEX, 1);
+            heights.flush();
+            return false;
+        }
+    }
+
+    @Override
+    int prefetchTiles(BBox bbox) {
+        int tiles = 0;
+        for (int minLat = down(bbox.minLat); minLat <= down(bbox.maxLat); minLat++) {
+            for (int minLon = down(bbox.minLon); minLon <= down(bbox.maxLon); minLon++) {
+                // use the center of the tile to avoid rounding issues at its borders
+                double lat = minLat + 0.5, lon = minLon + 0.5;
+                if (lat >= MAX_LAT || lat <= MIN_LAT)
+                    continue;
+                String fileName = getFileName(lat, lon);
+                if (fileName == null || (Helper.isEmpty(baseUrl) && !new File(fileName).exists()))
+                    continue;
+                if (submitPrefetch("dem" + calcIntKey(lat, lon), heights -> decodeTile(lat, lon, heights)))
+                    tiles++;
+            }
+        }
+        return tiles;
+    }
+
     private void updateHeightsFromFile(double lat, double lon, DataAccess heights) throws FileNotFoundException {
         try {
             String zippedURL = baseUrl + getDownloadURL(lat, lon);
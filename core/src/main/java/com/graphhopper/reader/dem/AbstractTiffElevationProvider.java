@@ -19,13 +19,13 @@ package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.Downloader;
+import com.graphhopper.util.shapes.BBox;
 
 import javax.net.ssl.SSLException;
 import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -34,7 +34,7 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends TileBasedElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    private final Map<String, HeightTile> cacheData = createTileCache();
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -58,6 +58,7 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
     @Override
     public void release() {
         cacheData.clear();
+        releaseDetachedTiles();
         if (dir != null) {
             // for memory mapped type we remove temporary files
             if (autoRemoveTemporary)
@@ -117,9 +118,10 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
             demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
             demProvider.setInterpolate(interpolate);
 
-            cacheData.put(name, demProvider);
+            awaitPrefetch(name + ".gh");
             DataAccess heights = getDirectory().create(name + ".gh");
             demProvider.setHeights(heights);
+            cacheData.put(name, demProvider);
             boolean loadExisting = false;
             try {
                 loadExisting = heights.loadExisting();
@@ -127,28 +129,8 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
                 logger.warn("cannot load " + name + ", error: " + ex.getMessage());
             }
 
-            if (!loadExisting) {
-                File zipFile = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
-                if (!zipFile.exists())
-                    try {
-                        String zippedURL = getDownloadURL(lat, lon);
-                        downloadToFile(zipFile, zippedURL);
-                    } catch (SSLException ex) {
-                        throw new IllegalStateException("SSL problem with elevation provider " + getClass().getSimpleName(), ex);
-                    } catch (IOException ex) {
-                        demProvider.setSeaLevel(true);
-                        // use small size on disc and in-memory
-                        heights.create(10).flush();
-                        return 0;
-                    }
-
-                // short == 2 bytes
-                heights.create(2L * WIDTH * HEIGHT);
-
-                Raster raster = readFile(zipFile, name + ".tif");
-                fillDataAccessWithElevationData(raster, heights, WIDTH);
-
-            } // loadExisting
+            if (!loadExisting && !decodeTile(lat, lon, name, heights))
+                return 0;
         }
 
         if (demProvider.isSeaLevel())
@@ -157,6 +139,52 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
         return demProvider.getHeight(lat, lon);
     }
 
+    /**
+     * Fills the given DataAccess with the heights of the tile containing the given coordinates.
+     *
+     * @return false if there is no data for this tile. In this case the DataAccess is marked as sea level.
+     */
+    private boolean decodeTile(double lat, double lon, String name, DataAccess heights) {
+        File zipFile = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
+        if (!zipFile.exists())
+            try {
+                String zippedURL = getDownloadURL(lat, lon);
+                downloadToFile(zipFile, zippedURL);
+            } catch (SSLException ex) {
+                throw new IllegalStateException("SSL problem with elevation provider " + getClass().getSimpleName(), ex);
+            } catch (IOException ex) {
+                // use small size on disc and in-memory
+                heights.create(10);
+                heights.setHeader(0, 1);
+                heights.flush();
+                return false;
+            }
+
+        // short == 2 bytes
+        heights.create(2L * WIDTH * HEIGHT);
+
+        Raster raster = readFile(zipFile, name + ".tif");
+        fillDataAccessWithElevationData(raster, heights, WIDTH);
+        return true;
+    }
+
+    @Override
+    int prefetchTiles(BBox bbox) {
+        int tiles = 0;
+        for (int minLat = getMinLatForTile(bbox.minLat); minLat <= bbox.maxLat; minLat += LAT_DEGREE) {
+            for (int minLon = getMinLonForTile(bbox.minLon); minLon <= bbox.maxLon; minLon += LON_DEGREE) {
+                // use the center of the tile to avoid rounding issues at its borders
+                double lat = minLat + LAT_DEGREE / 2.0, lon = minLon + LON_DEGREE / 2.0;
+                if (isOutsideSupportedArea(lat, lon))
+                    continue;
+                String name = getFileName(lat, lon);
+                if (submitPrefetch(name + ".gh", heights -> decodeTile(lat, lon, name, heights)))
+                    tiles++;
+            }
+        }
+        return tiles;
+    }
+
     abstract Raster readFile(File file, String tifName);
 
     /**
@@ -29,6 +29,11 @@ import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
 /**
  * Abstract base class for tunnel/bridge edge elevation interpolators. This
  * class estimates elevation of inner nodes of a tunnel/bridge based on
@@ -49,6 +54,12 @@ import com.graphhopper.util.*;
  * Earth surface. Elevations of inner nodes are then interpolated from the outer
  * nodes using {@link NodeElevationInterpolator}. Elevations of pillar nodes are
  * calculated using linear interpolation on distances from tower nodes.
+ * <p>
+ * Optionally the interpolation can use multiple threads, see {@link #setThreads(int)}. The connected components are
+ * still determined sequentially, but the elevations of their inner nodes are calculated concurrently (they only read
+ * elevations of outer nodes, which are never inner nodes of another component) and then written in the same order as
+ * in the sequential case. The pillar nodes of different edges are independent anyway. Therefore the result does not
+ * depend on the number of threads.
  *
  * @author Alexey Valikov
  */
@@ -59,6 +70,7 @@ public class EdgeElevationInterpolator {
     private final NodeElevationInterpolator nodeElevationInterpolator;
     private final RoadEnvironment interpolateKey;
     private final ElevationInterpolator elevationInterpolator = new ElevationInterpolator();
+    private int threads = 1;
 
     public EdgeElevationInterpolator(BaseGraph graph, EnumEncodedValue<RoadEnvironment> roadEnvironmentEnc, RoadEnvironment interpolateKey) {
         this.graph = graph;
@@ -75,12 +87,51 @@ public class EdgeElevationInterpolator {
         return graph;
     }
 
+    /**
+     * Sets the number of threads used for the interpolation. Default is 1.
+     */
+    public EdgeElevationInterpolator setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive, but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public void execute() {
-        interpolateElevationsOfTowerNodes();
-        interpolateElevationsOfPillarNodes();
+        if (threads == 1) {
+            interpolateElevationsOfTowerNodes();
+            interpolateElevationsOfPillarNodes();
+        } else {
+            interpolateElevationsOfTowerNodesConcurrently();
+            interpolateElevationsOfPillarNodesConcurrently();
+        }
     }
 
     private void interpolateElevationsOfTowerNodes() {
+        forEachComponent((outerNodeIds, innerNodeIds) ->
+                nodeElevationInterpolator.interpolateElevationsOfInnerNodes(outerNodeIds, innerNodeIds));
+    }
+
+    private void interpolateElevationsOfTowerNodesConcurrently() {
+        final List<int[]> outerNodeIdsList = new ArrayList<>();
+        final List<int[]> innerNodeIdsList = new ArrayList<>();
+        forEachComponent((outerNodeIds, innerNodeIds) -> {
+            outerNodeIdsList.add(outerNodeIds);
+            innerNodeIdsList.add(innerNodeIds);
+        });
+        final double[][] elevations = new double[innerNodeIdsList.size()][];
+        GHUtility.runConcurrently(IntStream.range(0, elevations.length).mapToObj(i -> () ->
+                elevations[i] = nodeElevationInterpolator.calcElevationsOfInnerNodes(outerNodeIdsList.get(i), innerNodeIdsList.get(i))
+        ), threads);
+        for (int i = 0; i < elevations.length; i++)
+            if (elevations[i] != null)
+                nodeElevationInterpolator.setElevationsOfInnerNodes(innerNodeIdsList.get(i), elevations[i]);
+    }
+
+    /**
+     * Calls the given consumer with the outer and inner node IDs of every connected component of interpolatable edges
+     */
+    private void forEachComponent(BiConsumer<int[], int[]> componentConsumer) {
         final AllEdgesIterator edge = graph.getAllEdges();
         final GHBitSet visitedEdgeIds = new GHBitSetImpl(edge.length());
         final EdgeExplorer edgeExplorer = graph.createEdgeExplorer();
@@ -89,21 +140,16 @@ public class EdgeElevationInterpolator {
             final int edgeId = edge.getEdge();
             if (isInterpolatableEdge(edge)) {
                 if (!visitedEdgeIds.contains(edgeId)) {
-                    interpolateEdge(edge, visitedEdgeIds, edgeExplorer);
+                    final IntSet outerNodeIds = new GHIntHashSet();
+                    final GHIntHashSet innerNodeIds = new GHIntHashSet();
+                    gatherOuterAndInnerNodeIds(edgeExplorer, edge, visitedEdgeIds, outerNodeIds, innerNodeIds);
+                    componentConsumer.accept(outerNodeIds.toArray(), innerNodeIds.toArray());
                 }
             }
             visitedEdgeIds.add(edgeId);
         }
     }
 
-    private void interpolateEdge(final EdgeIteratorState interpolatableEdge,
-                                 final GHBitSet visitedEdgeIds, final EdgeExplorer edgeExplorer) {
-        final IntSet outerNodeIds = new GHIntHashSet();
-        final GHIntHashSet innerNodeIds = new GHIntHashSet();
-        gatherOuterAndInnerNodeIds(edgeExplorer, interpolatableEdge, visitedEdgeIds, outerNodeIds, innerNodeIds);
-        nodeElevationInterpolator.interpolateElevationsOfInnerNodes(outerNodeIds.toArray(), innerNodeIds.toArray());
-    }
-
     public void gatherOuterAndInnerNodeIds(final EdgeExplorer edgeExplorer,
                                            final EdgeIteratorState interpolatableEdge, final GHBitSet visitedEdgesIds,
                                            final IntSet outerNodeIds, final GHIntHashSet innerNodeIds) {
@@ -132,33 +178,50 @@ public class EdgeElevationInterpolator {
 
     private void interpolateElevationsOfPillarNodes() {
         final EdgeIterator edge = graph.getAllEdges();
-        final NodeAccess nodeAccess = graph.getNodeAccess();
         while (edge.next()) {
-            if (isInterpolatableEdge(edge)) {
-                int firstNodeId = edge.getBaseNode();
-                int secondNodeId = edge.getAdjNode();
-
-                double lat0 = nodeAccess.getLat(firstNodeId);
-                double lon0 = nodeAccess.getLon(firstNodeId);
-                double ele0 = nodeAccess.getEle(firstNodeId);
-
-                double lat1 = nodeAccess.getLat(secondNodeId);
-                double lon1 = nodeAccess.getLon(secondNodeId);
-                double ele1 = nodeAccess.getEle(secondNodeId);
-
-                final PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
-                final int count = pointList.size();
-                for (int index = 1; index < count - 1; index++) {
-                    double lat = pointList.getLat(index);
-                    double lon = pointList.getLon(index);
-                    double ele = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon,
-                            lat0, lon0, ele0, lat1, lon1, ele1);
-                    pointList.set(index, lat, lon, ele);
-                }
-                if (count > 2)
-                    edge.setWayGeometry(pointList.shallowCopy(1, count - 1, false));
-                edge.setDistance(DistanceCalcEarth.DIST_EARTH.calcDistance(pointList));
+            if (isInterpolatableEdge(edge))
+                interpolateElevationsOfPillarNodes(edge);
+        }
+    }
+
+    private void interpolateElevationsOfPillarNodesConcurrently() {
+        // every task handles a range of edges to keep the overhead per edge small
+        final int edgesPerTask = 10_000;
+        final int edges = graph.getEdges();
+        GHUtility.runConcurrently(IntStream.range(0, (edges + edgesPerTask - 1) / edgesPerTask).mapToObj(task -> () -> {
+            for (int edgeId = task * edgesPerTask; edgeId < Math.min(edges, (task + 1) * edgesPerTask); edgeId++) {
+                EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+                if (isInterpolatableEdge(edge))
+                    // this only changes the existing geometry of the edge and its distance, so the edges are independent
+                    interpolateElevationsOfPillarNodes(edge);
             }
+        }), threads);
+    }
+
+    private void interpolateElevationsOfPillarNodes(EdgeIteratorState edge) {
+        final NodeAccess nodeAccess = graph.getNodeAccess();
+        int firstNodeId = edge.getBaseNode();
+        int secondNodeId = edge.getAdjNode();
+
+        double lat0 = nodeAccess.getLat(firstNodeId);
+        double lon0 = nodeAccess.getLon(firstNodeId);
+        double ele0 = nodeAccess.getEle(firstNodeId);
+
+        double lat1 = nodeAccess.getLat(secondNodeId);
+        double lon1 = nodeAccess.getLon(secondNodeId);
+        double ele1 = nodeAccess.getEle(secondNodeId);
+
+        final PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+        final int count = pointList.size();
+        for (int index = 1; index < count - 1; index++) {
+            double lat = pointList.getLat(index);
+            double lon = pointList.getLon(index);
+            double ele = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon,
+                    lat0, lon0, ele0, lat1, lon1, ele1);
+            pointList.set(index, lat, lon, ele);
         }
+        if (count > 2)
+            edge.setWayGeometry(pointList.shallowCopy(1, count - 1, false));
+        edge.setDistance(DistanceCalcEarth.DIST_EARTH.calcDistance(pointList));
     }
 }
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.util.shapes.BBox;
 
 /**
  * The MultiSourceElevationProvider mixes different elevation providers to provide the best available elevation data
@@ -102,6 +103,31 @@ public class MultiSourceElevationProvider extends TileBasedElevationProvider {
         return this;
     }
 
+    @Override
+    public MultiSourceElevationProvider setMaxCachedTiles(int maxCachedTiles) {
+        srtmProvider.setMaxCachedTiles(maxCachedTiles);
+        globalProvider.setMaxCachedTiles(maxCachedTiles);
+        return this;
+    }
+
+    @Override
+    public MultiSourceElevationProvider setPrefetchThreads(int prefetchThreads) {
+        srtmProvider.setPrefetchThreads(prefetchThreads);
+        globalProvider.setPrefetchThreads(prefetchThreads);
+        return this;
+    }
+
+    @Override
+    public void prefetch(BBox bbox) {
+        // only prefetch the parts of the area each provider is used for in getEle
+        if (bbox.minLat < 59.999 && bbox.maxLat > -56)
+            srtmProvider.prefetch(new BBox(bbox.minLon, bbox.maxLon, Math.max(bbox.minLat, -56), Math.min(bbox.maxLat, 59.999)));
+        if (bbox.maxLat >= 59.999)
+            globalProvider.prefetch(new BBox(bbox.minLon, bbox.maxLon, Math.max(bbox.minLat, 59.999), bbox.maxLat));
+        if (bbox.minLat <= -56)
+            globalProvider.prefetch(new BBox(bbox.minLon, bbox.maxLon, bbox.minLat, Math.min(bbox.maxLat, -56)));
+    }
+
     @Override
     public String toString() {
         return "multi";
@@ -21,6 +21,8 @@ import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.PointList;
 
+import java.util.Arrays;
+
 /**
  * Interpolates elevations of pillar nodes based on elevations of tower nodes.
  *
@@ -36,32 +38,51 @@ public class NodeElevationInterpolator {
     }
 
     public void interpolateElevationsOfInnerNodes(int[] outerNodeIds, int[] innerNodeIds) {
+        double[] elevations = calcElevationsOfInnerNodes(outerNodeIds, innerNodeIds);
+        if (elevations != null)
+            setElevationsOfInnerNodes(innerNodeIds, elevations);
+    }
+
+    /**
+     * Calculates the elevations of the inner nodes without modifying the graph. This method only reads from the graph
+     * and can be used concurrently.
+     *
+     * @return the elevations in the same order as innerNodeIds or null if there is no outer node to interpolate from
+     */
+    public double[] calcElevationsOfInnerNodes(int[] outerNodeIds, int[] innerNodeIds) {
         final int numberOfOuterNodes = outerNodeIds.length;
         if (numberOfOuterNodes == 0) {
             // do nothing
+            return null;
         } else if (numberOfOuterNodes == 1) {
-            interpolateElevationsOfInnerNodesForOneOuterNode(outerNodeIds[0], innerNodeIds);
+            return calcElevationsOfInnerNodesForOneOuterNode(outerNodeIds[0], innerNodeIds);
         } else if (numberOfOuterNodes == 2) {
-            interpolateElevationsOfInnerNodesForTwoOuterNodes(outerNodeIds[0], outerNodeIds[1], innerNodeIds);
+            return calcElevationsOfInnerNodesForTwoOuterNodes(outerNodeIds[0], outerNodeIds[1], innerNodeIds);
         } else if (numberOfOuterNodes == 3) {
-            interpolateElevationsOfInnerNodesForThreeOuterNodes(outerNodeIds[0], outerNodeIds[1], outerNodeIds[2], innerNodeIds);
-        } else if (numberOfOuterNodes > 3) {
-            interpolateElevationsOfInnerNodesForNOuterNodes(outerNodeIds, innerNodeIds);
+            return calcElevationsOfInnerNodesForThreeOuterNodes(outerNodeIds[0], outerNodeIds[1], outerNodeIds[2], innerNodeIds);
+        } else {
+            return calcElevationsOfInnerNodesForNOuterNodes(outerNodeIds, innerNodeIds);
         }
     }
 
-    private void interpolateElevationsOfInnerNodesForOneOuterNode(int outerNodeId, int[] innerNodeIds) {
+    public void setElevationsOfInnerNodes(int[] innerNodeIds, double[] elevations) {
         NodeAccess nodeAccess = graph.getNodeAccess();
-        double ele = nodeAccess.getEle(outerNodeId);
-        for (int innerNodeId : innerNodeIds) {
-            double lat = nodeAccess.getLat(innerNodeId);
-            double lon = nodeAccess.getLon(innerNodeId);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
+        for (int i = 0; i < innerNodeIds.length; i++) {
+            int innerNodeId = innerNodeIds[i];
+            nodeAccess.setNode(innerNodeId, nodeAccess.getLat(innerNodeId), nodeAccess.getLon(innerNodeId), elevations[i]);
         }
     }
 
-    private void interpolateElevationsOfInnerNodesForTwoOuterNodes(int firstOuterNodeId,
-                                                                   int secondOuterNodeId, int[] innerNodeIds) {
+    private double[] calcElevationsOfInnerNodesForOneOuterNode(int outerNodeId, int[] innerNodeIds) {
+        NodeAccess nodeAccess = graph.getNodeAccess();
+        double ele = nodeAccess.getEle(outerNodeId);
+        double[] elevations = new double[innerNodeIds.length];
+        Arrays.fill(elevations, ele);
+        return elevations;
+    }
+
+    private double[] calcElevationsOfInnerNodesForTwoOuterNodes(int firstOuterNodeId,
+                                                                int secondOuterNodeId, int[] innerNodeIds) {
         final NodeAccess nodeAccess = graph.getNodeAccess();
         double lat0 = nodeAccess.getLat(firstOuterNodeId);
         double lon0 = nodeAccess.getLon(firstOuterNodeId);
@@ -71,17 +92,18 @@ public class NodeElevationInterpolator {
         double lon1 = nodeAccess.getLon(secondOuterNodeId);
         double ele1 = nodeAccess.getEle(secondOuterNodeId);
 
-        for (int innerNodeId : innerNodeIds) {
-            double lat = nodeAccess.getLat(innerNodeId);
-            double lon = nodeAccess.getLon(innerNodeId);
-            double ele = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon, lat0, lon0, ele0,
+        double[] elevations = new double[innerNodeIds.length];
+        for (int i = 0; i < innerNodeIds.length; i++) {
+            double lat = nodeAccess.getLat(innerNodeIds[i]);
+            double lon = nodeAccess.getLon(innerNodeIds[i]);
+            elevations[i] = elevationInterpolator.calculateElevationBasedOnTwoPoints(lat, lon, lat0, lon0, ele0,
                     lat1, lon1, ele1);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
         }
+        return elevations;
     }
 
-    private void interpolateElevationsOfInnerNodesForThreeOuterNodes(int firstOuterNodeId, int secondOuterNodeId,
-                                                                     int thirdOuterNodeId, int[] innerNodeIds) {
+    private double[] calcElevationsOfInnerNodesForThreeOuterNodes(int firstOuterNodeId, int secondOuterNodeId,
+                                                                  int thirdOuterNodeId, int[] innerNodeIds) {
         NodeAccess nodeAccess = graph.getNodeAccess();
         double lat0 = nodeAccess.getLat(firstOuterNodeId);
         double lon0 = nodeAccess.getLon(firstOuterNodeId);
@@ -95,28 +117,29 @@ public class NodeElevationInterpolator {
         double lon2 = nodeAccess.getLon(thirdOuterNodeId);
         double ele2 = nodeAccess.getEle(thirdOuterNodeId);
 
-        for (int innerNodeId : innerNodeIds) {
-            double lat = nodeAccess.getLat(innerNodeId);
-            double lon = nodeAccess.getLon(innerNodeId);
-            double ele = elevationInterpolator.calculateElevationBasedOnThreePoints(lat, lon, lat0,
+        double[] elevations = new double[innerNodeIds.length];
+        for (int i = 0; i < innerNodeIds.length; i++) {
+            double lat = nodeAccess.getLat(innerNodeIds[i]);
+            double lon = nodeAccess.getLon(innerNodeIds[i]);
+            elevations[i] = elevationInterpolator.calculateElevationBasedOnThreePoints(lat, lon, lat0,
                     lon0, ele0, lat1, lon1, ele1, lat2, lon2, ele2);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
         }
+        return elevations;
     }
 
-    private void interpolateElevationsOfInnerNodesForNOuterNodes(int[] outerNodeIds,
-                                                                 int[] innerNodeIds) {
+    private double[] calcElevationsOfInnerNodesForNOuterNodes(int[] outerNodeIds, int[] innerNodeIds) {
         NodeAccess nodeAccess = graph.getNodeAccess();
         PointList pointList = new PointList(outerNodeIds.length, true);
         for (int outerNodeId : outerNodeIds) {
             pointList.add(nodeAccess.getLat(outerNodeId), nodeAccess.getLon(outerNodeId),
                     nodeAccess.getEle(outerNodeId));
         }
-        for (int innerNodeId : innerNodeIds) {
-            double lat = nodeAccess.getLat(innerNodeId);
-            double lon = nodeAccess.getLon(innerNodeId);
-            double ele = elevationInterpolator.calculateElevationBasedOnPointList(lat, lon, pointList);
-            nodeAccess.setNode(innerNodeId, lat, lon, ele);
+        double[] elevations = new double[innerNodeIds.length];
+        for (int i = 0; i < innerNodeIds.length; i++) {
+            double lat = nodeAccess.getLat(innerNodeIds[i]);
+            double lon = nodeAccess.getLon(innerNodeIds[i]);
+            elevations[i] = elevationInterpolator.calculateElevationBasedOnPointList(lat, lon, pointList);
         }
+        return elevations;
     }
 }
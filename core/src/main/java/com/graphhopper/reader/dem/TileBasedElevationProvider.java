@@ -18,14 +18,19 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider using tiles from files.
@@ -42,6 +47,12 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    int maxCachedTiles = Integer.MAX_VALUE;
+    int prefetchThreads = 0;
+    private ExecutorService prefetchExecutor;
+    private final Map<String, Future<?>> prefetchedTiles = new ConcurrentHashMap<>();
+    // names of the tiles that were written to disk, but are no longer (or never were) registered in our directory
+    private final Set<String> detachedTiles = ConcurrentHashMap.newKeySet();
 
     protected TileBasedElevationProvider(String cacheDirString) {
         File cacheDir = new File(cacheDirString);
@@ -103,6 +114,26 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return this;
     }
 
+    /**
+     * Limits the number of decoded tiles that are kept open at the same time. The least recently used tile is closed
+     * when this limit is exceeded and will be loaded again from its DataAccess file (or decoded again for non-storing
+     * DATypes) when it is needed. Default is no limit.
+     */
+    public TileBasedElevationProvider setMaxCachedTiles(int maxCachedTiles) {
+        if (maxCachedTiles < 1)
+            throw new IllegalArgumentException("maxCachedTiles must be positive, but was " + maxCachedTiles);
+        this.maxCachedTiles = maxCachedTiles;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used by {@link #prefetch(BBox)}. Default is 0, which disables prefetching.
+     */
+    public TileBasedElevationProvider setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+        return this;
+    }
+
     public TileBasedElevationProvider setDownloader(Downloader downloader) {
         this.downloader = downloader;
         return this;
@@ -121,4 +152,132 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return dir = new GHDirectory(cacheDir.getAbsolutePath(), daType);
     }
 
+    /**
+     * Starts downloading and decoding all tiles that intersect the given area in the background, so they can be
+     * loaded quickly from their DataAccess files once {@link #getEle} needs them. This method does not block. It does
+     * nothing if no prefetch threads were configured or if the DAType does not store the tiles on disk.
+     */
+    public void prefetch(BBox bbox) {
+        if (prefetchThreads <= 0)
+            return;
+        if (!daType.isStoring()) {
+            logger.warn("Elevation tiles are not prefetched, because " + daType + " does not store them on disk");
+            return;
+        }
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+        synchronized (this) {
+            if (prefetchExecutor == null)
+                prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads, r -> {
+                    Thread thread = new Thread(r, "elevation-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+        int tiles = prefetchTiles(bbox);
+        logger.info("Prefetching " + tiles + " elevation tiles for " + bbox + " using " + prefetchThreads + " threads");
+    }
+
+    /**
+     * Calls {@link #submitPrefetch} for every tile intersecting the given area. Providers that do not read tiles
+     * themselves, like the {@link MultiSourceElevationProvider}, keep this default and submit nothing.
+     *
+     * @return the number of submitted tiles
+     */
+    int prefetchTiles(BBox bbox) {
+        return 0;
+    }
+
+    /**
+     * Decodes the tile with the given DataAccess name in the background unless it already exists on disk.
+     *
+     * @param tileDecoder writes the tile into the given, not yet created DataAccess
+     */
+    boolean submitPrefetch(String name, TileDecoder tileDecoder) {
+        if (new File(cacheDir, name).exists() || prefetchedTiles.containsKey(name))
+            return false;
+        prefetchedTiles.put(name, prefetchExecutor.submit(() -> {
+            // use a separate directory as the DataAccess is not used by this provider but loaded again in getEle
+            Directory prefetchDir = new GHDirectory(cacheDir.getAbsolutePath(), daType);
+            DataAccess heights = prefetchDir.create(name);
+            try {
+                tileDecoder.decode(heights);
+            } catch (Exception ex) {
+                logger.warn("Could not prefetch elevation tile " + name + ", error: " + ex.getMessage());
+                // the tile will be created again when it is needed
+                prefetchDir.clear();
+                return;
+            }
+            detachedTiles.add(name);
+            prefetchDir.close();
+        }));
+        return true;
+    }
+
+    /**
+     * Blocks until a tile that is currently prefetched is available on disk.
+     */
+    void awaitPrefetch(String name) {
+        if (prefetchedTiles.isEmpty())
+            return;
+        Future<?> future = prefetchedTiles.get(name);
+        if (future == null)
+            return;
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for elevation tile " + name, ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Could not prefetch elevation tile " + name, ex.getCause());
+        }
+    }
+
+    /**
+     * Creates the in-memory map of the currently used tiles. The map closes the least recently used tile if there
+     * are more than maxCachedTiles entries.
+     */
+    <K> Map<K, HeightTile> createTileCache() {
+        return new LinkedHashMap<K, HeightTile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, HeightTile> eldest) {
+                if (size() <= maxCachedTiles)
+                    return false;
+                DataAccess heights = eldest.getValue().getHeights();
+                getDirectory().getDAs().remove(heights.getName());
+                heights.close();
+                if (daType.isStoring())
+                    detachedTiles.add(heights.getName());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Releases the tiles that are no longer registered in our directory, which are all tiles that were evicted from
+     * the tile cache or only prefetched.
+     */
+    void releaseDetachedTiles() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            try {
+                prefetchExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            prefetchExecutor = null;
+        }
+        prefetchedTiles.clear();
+        if (autoRemoveTemporary)
+            for (String name : detachedTiles)
+                // there might be an open DataAccess in our directory again, which is removed by dir.clear() anyway
+                if (dir == null || !dir.getDAs().containsKey(name))
+                    Helper.removeDir(new File(cacheDir, name));
+        detachedTiles.clear();
+    }
+
+    interface TileDecoder {
+        void decode(DataAccess heights) throws IOException;
+    }
+
 }
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.ReaderNode;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads an OSM change file (.osc or .osc.gz) as it is published for the minutely, hourly and daily diffs. Such a file
+ * contains create, modify and delete blocks of nodes, ways and relations. The action of the element that was last
+ * returned by {@link #getNext()} can be obtained using {@link #getAction()}.
+ */
+public class OSMChangeFile implements Closeable {
+    public enum Action {CREATE, MODIFY, DELETE}
+
+    private final InputStream inputStream;
+    private XMLStreamReader xmlParser;
+    private Action action;
+
+    public OSMChangeFile(File file) throws IOException {
+        InputStream ips = new BufferedInputStream(new FileInputStream(file), 50000);
+        ips.mark(2);
+        boolean gzip = ips.read() == 31 && ips.read() == 139;
+        ips.reset();
+        inputStream = gzip ? new GZIPInputStream(ips, 50000) : ips;
+    }
+
+    public OSMChangeFile open() throws XMLStreamException {
+        xmlParser = XMLInputFactory.newInstance().createXMLStreamReader(inputStream, "UTF-8");
+        int event = xmlParser.next();
+        if (event != XMLStreamConstants.START_ELEMENT || !xmlParser.getLocalName().equalsIgnoreCase("osmChange"))
+            throw new IllegalArgumentException("File is not a valid OSM change file");
+        return this;
+    }
+
+    /**
+     * @return the next node, way or relation or null if the end of the file was reached
+     */
+    public ReaderElement getNext() throws XMLStreamException {
+        while (xmlParser.hasNext()) {
+            int event = xmlParser.next();
+            if (event != XMLStreamConstants.START_ELEMENT)
+                continue;
+            String name = xmlParser.getLocalName();
+            switch (name) {
+                case "create":
+                    action = Action.CREATE;
+                    break;
+                case "modify":
+                    action = Action.MODIFY;
+                    break;
+                case "delete":
+                    action = Action.DELETE;
+                    break;
+                case "node":
+                case "way":
+                case "relation":
+                    if (action == null)
+                        throw new IllegalStateException("OSM element outside of create, modify or delete block: " + name);
+                    long id = Long.parseLong(xmlParser.getAttributeValue(null, "id"));
+                    if (name.equals("way"))
+                        return OSMXMLHelper.createWay(id, xmlParser);
+                    else if (name.equals("relation"))
+                        return OSMXMLHelper.createRelation(id, xmlParser);
+                    else if (xmlParser.getAttributeValue(null, "lat") != null)
+                        return OSMXMLHelper.createNode(id, xmlParser);
+                    else
+                        // deleted nodes do not necessarily contain coordinates
+                        return new ReaderNode(id, Double.NaN, Double.NaN);
+            }
+        }
+        return null;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (xmlParser != null)
+                xmlParser.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
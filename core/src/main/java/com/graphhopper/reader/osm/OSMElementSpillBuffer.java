@@ -0,0 +1,252 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.reader.ReaderRelation;
+import com.graphhopper.reader.ReaderWay;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.graphhopper.util.VarIntHelper.*;
+
+/**
+ * A sequential on-disk buffer of OSM elements. It is used by the single pass mode of {@link WaySegmentParser}: all
+ * elements are written to this buffer while the OSM file is read for the first (and only) time and are then replayed
+ * from here instead of reading the OSM file a second time.
+ * <p>
+ * OSM IDs are delta-encoded per element type (and way node IDs within each way) and written as variable length
+ * integers, because they are sorted in the files this is meant for. Coordinates are written as doubles to keep them
+ * identical to the ones we would read from the OSM file.
+ */
+public class OSMElementSpillBuffer {
+    private static final byte NODE = 0;
+    private static final byte WAY = 1;
+    private static final byte RELATION = 2;
+    private static final byte END = 3;
+
+    private final File file;
+    private DataOutputStream out;
+    private long prevNodeId, prevWayId, prevRelationId;
+    private long elements;
+
+    public OSMElementSpillBuffer(File file) {
+        this.file = file;
+    }
+
+    public OSMElementSpillBuffer create() {
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create spill buffer " + file.getAbsolutePath(), e);
+        }
+        return this;
+    }
+
+    public long getElements() {
+        return elements;
+    }
+
+    public long getBytes() {
+        return file.length();
+    }
+
+    public void add(ReaderElement element) {
+        try {
+            switch (element.getType()) {
+                case NODE:
+                    ReaderNode node = (ReaderNode) element;
+                    out.writeByte(NODE);
+                    writeUnsigned(out, zigZag(node.getId() - prevNodeId));
+                    prevNodeId = node.getId();
+                    out.writeDouble(node.getLat());
+                    out.writeDouble(node.getLon());
+                    break;
+                case WAY:
+                    ReaderWay way = (ReaderWay) element;
+                    out.writeByte(WAY);
+                    writeUnsigned(out, zigZag(way.getId() - prevWayId));
+                    prevWayId = way.getId();
+                    LongArrayList nodes = way.getNodes();
+                    writeUnsigned(out, nodes.size());
+                    long prevRef = 0;
+                    for (int i = 0; i < nodes.size(); i++) {
+                        writeUnsigned(out, zigZag(nodes.get(i) - prevRef));
+                        prevRef = nodes.get(i);
+                    }
+                    break;
+                case RELATION:
+                    ReaderRelation relation = (ReaderRelation) element;
+                    out.writeByte(RELATION);
+                    writeUnsigned(out, zigZag(relation.getId() - prevRelationId));
+                    prevRelationId = relation.getId();
+                    writeUnsigned(out, relation.getMembers().size());
+                    for (ReaderRelation.Member member : relation.getMembers()) {
+                        out.writeByte(member.getType().ordinal());
+                        writeUnsigned(out, zigZag(member.getRef()));
+                        out.writeUTF(member.getRole());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Cannot spill element of type " + element.getType());
+            }
+            writeTags(element);
+            elements++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to spill buffer " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private void writeTags(ReaderElement element) throws IOException {
+        Map<String, Object> tags = element.getTags();
+        writeUnsigned(out, tags.size());
+        for (Map.Entry<String, Object> e : tags.entrySet()) {
+            if (!(e.getValue() instanceof String))
+                throw new IllegalArgumentException("Only string tags can be spilled, but " + element.getType() + " "
+                        + element.getId() + " has " + e.getKey() + "=" + e.getValue());
+            out.writeUTF(e.getKey());
+            out.writeUTF((String) e.getValue());
+        }
+    }
+
+    /**
+     * Finishes writing. Afterwards the elements can be read via {@link #open()}.
+     */
+    public void finish() {
+        if (out == null)
+            throw new IllegalStateException("Spill buffer " + file.getAbsolutePath() + " was not created or is finished already");
+        try {
+            out.writeByte(END);
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not finish spill buffer " + file.getAbsolutePath(), e);
+        } finally {
+            out = null;
+        }
+    }
+
+    /**
+     * Closes the file if writing was not finished, e.g. because reading the OSM file failed. Unlike {@link #finish()}
+     * this never throws, so it can be called in a finally block without hiding the original exception.
+     */
+    public void close() {
+        if (out == null)
+            return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the incomplete spill buffer is deleted anyway
+        } finally {
+            out = null;
+        }
+    }
+
+    /**
+     * @return an {@link OSMInput} that replays all elements in the order they were added
+     */
+    public OSMInput open() {
+        try {
+            return new Input(new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open spill buffer " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public void delete() {
+        if (file.exists() && !file.delete())
+            throw new IllegalStateException("Could not delete spill buffer " + file.getAbsolutePath());
+    }
+
+    private static class Input implements OSMInput {
+        private final DataInputStream in;
+        private long prevNodeId, prevWayId, prevRelationId;
+        private boolean eof;
+
+        Input(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public ReaderElement getNext() {
+            if (eof)
+                throw new IllegalStateException("EOF reached");
+            try {
+                byte type = in.readByte();
+                ReaderElement element;
+                switch (type) {
+                    case NODE:
+                        prevNodeId += unZigZag(readUnsigned(in));
+                        element = new ReaderNode(prevNodeId, in.readDouble(), in.readDouble());
+                        break;
+                    case WAY:
+                        prevWayId += unZigZag(readUnsigned(in));
+                        ReaderWay way = new ReaderWay(prevWayId);
+                        int size = (int) readUnsigned(in);
+                        long ref = 0;
+                        for (int i = 0; i < size; i++) {
+                            ref += unZigZag(readUnsigned(in));
+                            way.getNodes().add(ref);
+                        }
+                        element = way;
+                        break;
+                    case RELATION:
+                        prevRelationId += unZigZag(readUnsigned(in));
+                        ReaderRelation relation = new ReaderRelation(prevRelationId);
+                        int members = (int) readUnsigned(in);
+                        for (int i = 0; i < members; i++) {
+                            ReaderElement.Type memberType = ReaderElement.Type.values()[in.readByte()];
+                            long memberRef = unZigZag(readUnsigned(in));
+                            relation.add(new ReaderRelation.Member(memberType, memberRef, in.readUTF()));
+                        }
+                        element = relation;
+                        break;
+                    case END:
+                        eof = true;
+                        return null;
+                    default:
+                        throw new IllegalStateException("Unknown element type in spill buffer: " + type);
+                }
+                int tagCount = (int) readUnsigned(in);
+                if (tagCount > 0) {
+                    Map<String, Object> tags = new LinkedHashMap<>(tagCount);
+                    for (int i = 0; i < tagCount; i++)
+                        tags.put(in.readUTF(), in.readUTF());
+                    element.setTags(tags);
+                }
+                return element;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read from spill buffer", e);
+            }
+        }
+
+        @Override
+        public int getUnprocessedElements() {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            eof = true;
+            in.close();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.osm;
 
 import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.util.shapes.BBox;
 
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -30,6 +31,11 @@ import javax.xml.stream.XMLStreamReader;
  * @author ratrun
  */
 public class OSMFileHeader extends ReaderElement {
+    /**
+     * The optional PBF header feature that declares that the file is sorted by element type and then by ID
+     */
+    public static final String SORT_TYPE_THEN_ID = "Sort.Type_then_ID";
+
     public OSMFileHeader() {
         super(0, Type.FILEHEADER);
     }
@@ -50,6 +56,20 @@ public class OSMFileHeader extends ReaderElement {
         }
     }
 
+    /**
+     * @return true if the file declares that it is sorted by element type and then by ID
+     */
+    public boolean isSortedByTypeThenId() {
+        return getTag("sorted_type_then_id", false);
+    }
+
+    /**
+     * @return the bounding box declared in the file header or null if there is none
+     */
+    public BBox getBBox() {
+        return getTag("bbox", null);
+    }
+
     @Override
     public String toString() {
         return "OSM File header:" + super.toString();
@@ -0,0 +1,134 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.osm;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.BitUtil;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * Stores the coordinates of the OSM nodes that were used during the import, ordered by their OSM ID. We need them
+ * to apply OSM change files, because new ways usually reference existing nodes that are not contained in the change
+ * file. See {@link OSMReader#applyChanges}.
+ */
+public class OSMNodeCoordinateStore {
+    private static final int BYTES_PER_NODE = 16;
+    private final DataAccess da;
+    private long nodes;
+    private long lastOSMNodeId = Long.MIN_VALUE;
+
+    public OSMNodeCoordinateStore(Directory dir) {
+        da = dir.create("osm_node_coordinates");
+    }
+
+    public OSMNodeCoordinateStore create() {
+        da.create(1000 * BYTES_PER_NODE);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        nodes = BitUtil.LITTLE.toLong(da.getHeader(0), da.getHeader(4));
+        if (nodes > 0)
+            lastOSMNodeId = getOSMNodeId(nodes - 1);
+        return true;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Adds a node. The nodes have to be added in the order of their IDs, which is the case for the usual OSM files.
+     */
+    public void add(long osmNodeId, double lat, double lon) {
+        if (osmNodeId <= lastOSMNodeId)
+            throw new IllegalStateException("Storing OSM node coordinates requires an OSM file where the nodes are sorted by ID, but got "
+                    + osmNodeId + " after " + lastOSMNodeId);
+        da.ensureCapacity((nodes + 1) * BYTES_PER_NODE);
+        long pointer = nodes * BYTES_PER_NODE;
+        da.setInt(pointer, (int) osmNodeId);
+        da.setInt(pointer + 4, (int) (osmNodeId >>> 32));
+        da.setInt(pointer + 8, Helper.degreeToInt(lat));
+        da.setInt(pointer + 12, Helper.degreeToInt(lon));
+        lastOSMNodeId = osmNodeId;
+        nodes++;
+    }
+
+    /**
+     * Changes the coordinates of an existing node or adds a new one if its ID is larger than all IDs stored so far.
+     *
+     * @return false if the node is neither stored nor can it be added
+     */
+    public boolean set(long osmNodeId, double lat, double lon) {
+        long index = find(osmNodeId);
+        if (index < 0) {
+            if (osmNodeId <= lastOSMNodeId)
+                return false;
+            add(osmNodeId, lat, lon);
+        } else {
+            da.setInt(index * BYTES_PER_NODE + 8, Helper.degreeToInt(lat));
+            da.setInt(index * BYTES_PER_NODE + 12, Helper.degreeToInt(lon));
+        }
+        return true;
+    }
+
+    /**
+     * @return the coordinates of the given OSM node or null if it is not stored
+     */
+    public GHPoint get(long osmNodeId) {
+        long index = find(osmNodeId);
+        if (index < 0)
+            return null;
+        return new GHPoint(Helper.intToDegree(da.getInt(index * BYTES_PER_NODE + 8)),
+                Helper.intToDegree(da.getInt(index * BYTES_PER_NODE + 12)));
+    }
+
+    private long find(long osmNodeId) {
+        long low = 0, high = nodes - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long midId = getOSMNodeId(mid);
+            if (midId < osmNodeId)
+                low = mid + 1;
+            else if (midId > osmNodeId)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private long getOSMNodeId(long index) {
+        long pointer = index * BYTES_PER_NODE;
+        return BitUtil.LITTLE.toLong(da.getInt(pointer), da.getInt(pointer + 4));
+    }
+
+    public void flush() {
+        da.setHeader(0, (int) nodes);
+        da.setHeader(4, (int) (nodes >>> 32));
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+}
@@ -18,7 +18,10 @@
 package com.graphhopper.reader.osm;
 
 import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.LongCursor;
 import com.graphhopper.coll.GHLongLongHashMap;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderNode;
@@ -28,12 +31,16 @@ import com.graphhopper.reader.dem.EdgeElevationSmoothingMovingAverage;
 import com.graphhopper.reader.dem.EdgeElevationSmoothingRamer;
 import com.graphhopper.reader.dem.EdgeSampling;
 import com.graphhopper.reader.dem.ElevationProvider;
+import com.graphhopper.reader.dem.TileBasedElevationProvider;
 import com.graphhopper.routing.OSMReaderConfig;
 import com.graphhopper.routing.ev.Country;
 import com.graphhopper.routing.ev.EdgeIntAccess;
+import com.graphhopper.routing.ev.IntEncodedValue;
 import com.graphhopper.routing.ev.State;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.AreaIndex;
 import com.graphhopper.routing.util.CustomArea;
+import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FerrySpeedCalculator;
 import com.graphhopper.routing.util.OSMParsers;
 import com.graphhopper.routing.util.countryrules.CountryRule;
@@ -44,12 +51,15 @@ import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -62,6 +72,7 @@ import static com.graphhopper.util.GHUtility.OSM_WARNING_LOGGER;
 import static com.graphhopper.util.Helper.nf;
 import static com.graphhopper.util.Parameters.Details.*;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 
 /**
  * Parses an OSM file (xml, zipped xml or pbf) and creates a graph from it. The OSM file is actually read twice.
@@ -162,6 +173,7 @@ public class OSMReader {
         if (!baseGraph.isInitialized())
             throw new IllegalStateException("BaseGraph must be initialize before we can read OSM");
 
+        OSMNodeCoordinateStore nodeCoordinateStore = config.isStoreOSMNodes() ? new OSMNodeCoordinateStore(baseGraph.getDirectory()).create() : null;
         WaySegmentParser waySegmentParser = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory())
                 .setElevationProvider(this::getElevation)
                 .setWayFilter(this::acceptWay)
@@ -169,10 +181,20 @@ public class OSMReader {
                 .setWayPreprocessor(this::preprocessWay)
                 .setRelationPreprocessor(this::preprocessRelations)
                 .setRelationProcessor(this::processRelation)
+                .setFileHeaderHandler(this::handleFileHeader)
                 .setEdgeHandler(this::addEdge)
                 .setWorkerThreads(config.getWorkerThreads())
+                .setSinglePass(config.isSinglePass())
+                .setAcceptedNodeHandler(node -> {
+                    if (nodeCoordinateStore != null)
+                        nodeCoordinateStore.add(node.getId(), node.getLat(), node.getLon());
+                })
                 .build();
         waySegmentParser.readOSM(osmFile);
+        if (nodeCoordinateStore != null) {
+            nodeCoordinateStore.flush();
+            nodeCoordinateStore.close();
+        }
         osmDataDate = waySegmentParser.getTimestamp();
         if (baseGraph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty");
@@ -190,6 +212,303 @@ public class OSMReader {
         return osmDataDate;
     }
 
+    /**
+     * Applies an OSM change file (.osc) to the existing graph, see {@link OSMChangeFile}. We cannot look up the
+     * edges of an OSM way without the {@link com.graphhopper.routing.ev.OSMWayID} encoded value, so it is required
+     * here. The OSM node IDs are not stored in the graph, so new ways are connected to the existing graph by matching
+     * the coordinates of their nodes with the tower and pillar nodes found by the given location index. If a new way
+     * is connected at a pillar node the corresponding edge is split into two edges.
+     * <p>
+     * Edges of deleted ways (or of ways that are no longer accepted) cannot be removed from the graph, so we disable
+     * them instead, i.e. we reset all their edge flags. For modified ways the tag parsers are run again for their
+     * edges, but their geometry is not updated. New ways can only be added if all their nodes are either contained in
+     * the change file or in the {@link OSMNodeCoordinateStore} (see {@link OSMReaderConfig#setStoreOSMNodes}). Changes of turn restrictions are ignored and route relations are only
+     * considered if they are contained in the change file. Therefore, a full import is still required from time to time.
+     */
+    public void applyChanges(File changeFile, IntEncodedValue osmWayIdEnc, LocationIndex locationIndex) throws IOException {
+        if (!baseGraph.isInitialized())
+            throw new IllegalStateException("BaseGraph must be initialized before we can apply changes");
+        if (baseGraph.isFrozen())
+            throw new IllegalStateException("Cannot apply changes if the graph is already frozen");
+
+        Map<Long, ReaderNode> nodes = new HashMap<>();
+        Map<Long, ReaderWay> ways = new LinkedHashMap<>();
+        Set<Long> deletedWays = new HashSet<>();
+        try (OSMChangeFile in = new OSMChangeFile(changeFile).open()) {
+            ReaderElement element;
+            while ((element = in.getNext()) != null) {
+                boolean delete = in.getAction() == OSMChangeFile.Action.DELETE;
+                if (element.getType() == ReaderElement.Type.NODE) {
+                    if (!delete)
+                        nodes.put(element.getId(), (ReaderNode) element);
+                } else if (element.getType() == ReaderElement.Type.WAY) {
+                    ways.remove(element.getId());
+                    deletedWays.remove(element.getId());
+                    if (delete)
+                        deletedWays.add(element.getId());
+                    else
+                        ways.put(element.getId(), (ReaderWay) element);
+                } else if (!delete) {
+                    preprocessRelations((ReaderRelation) element);
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Cannot read change file " + changeFile, ex);
+        }
+
+        // the nodes of new ways that are not contained in the change file can be looked up in the node store, if we
+        // kept one during the import
+        OSMNodeCoordinateStore nodeCoordinateStore = new OSMNodeCoordinateStore(baseGraph.getDirectory());
+        if (!nodeCoordinateStore.loadExisting())
+            nodeCoordinateStore = null;
+        Map<Long, ReaderNode> changedNodes = new TreeMap<>(nodes);
+        if (nodeCoordinateStore != null)
+            for (ReaderWay way : ways.values())
+                for (LongCursor osmNodeId : way.getNodes())
+                    if (!nodes.containsKey(osmNodeId.value)) {
+                        GHPoint point = nodeCoordinateStore.get(osmNodeId.value);
+                        if (point != null)
+                            nodes.put(osmNodeId.value, new ReaderNode(osmNodeId.value, point.lat, point.lon));
+                    }
+
+        Map<Long, IntArrayList> edgesByWay = new HashMap<>();
+        AllEdgesIterator iter = baseGraph.getAllEdges();
+        while (iter.next()) {
+            long wayId = iter.get(osmWayIdEnc);
+            if (ways.containsKey(wayId) || deletedWays.contains(wayId))
+                edgesByWay.computeIfAbsent(wayId, k -> new IntArrayList()).add(iter.getEdge());
+        }
+
+        WaySegmentParser.CoordinateSupplier coordinateSupplier = osmNodeId -> {
+            ReaderNode node = nodes.get(osmNodeId);
+            return node == null ? null : new GHPoint3D(node.getLat(), node.getLon(), nodeAccess.is3D() ? getElevation(node) : Double.NaN);
+        };
+        WaySegmentParser.NodeTagSupplier nodeTagSupplier = osmNodeId -> {
+            ReaderNode node = nodes.get(osmNodeId);
+            return node == null ? emptyMap() : node.getTags();
+        };
+        int disabledEdges = 0, updatedEdges = 0, edgesBefore = baseGraph.getEdges();
+        List<ReaderWay> newWays = new ArrayList<>();
+        for (long wayId : deletedWays)
+            for (IntCursor edge : edgesByWay.getOrDefault(wayId, new IntArrayList())) {
+                disableEdge(baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE));
+                disabledEdges++;
+            }
+        for (ReaderWay way : ways.values()) {
+            IntArrayList edges = edgesByWay.get(way.getId());
+            if (!acceptWay(way)) {
+                if (edges != null)
+                    for (IntCursor edge : edges)
+                        disableEdge(baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE));
+                disabledEdges += edges == null ? 0 : edges.size();
+            } else if (edges == null) {
+                newWays.add(way);
+            } else {
+                preprocessWay(way, coordinateSupplier, nodeTagSupplier);
+                for (IntCursor edge : edges)
+                    updateEdge(baseGraph.getEdgeIteratorState(edge.value, Integer.MIN_VALUE), way);
+                updatedEdges += edges.size();
+            }
+        }
+
+        // nodes that are used by multiple new ways or that already exist in the graph become tower nodes
+        Map<Long, Integer> nodeUsages = new HashMap<>();
+        for (ReaderWay way : newWays)
+            for (LongCursor node : way.getNodes())
+                nodeUsages.merge(node.value, 1, Integer::sum);
+        ChangedNodeResolver nodeResolver = new ChangedNodeResolver(locationIndex);
+        int skippedWays = 0;
+        for (ReaderWay way : newWays) {
+            LongArrayList osmNodeIds = way.getNodes();
+            if (Arrays.stream(osmNodeIds.toArray()).anyMatch(id -> !nodes.containsKey(id))) {
+                skippedWays++;
+                continue;
+            }
+            preprocessWay(way, coordinateSupplier, nodeTagSupplier);
+            PointList pointList = new PointList(osmNodeIds.size(), nodeAccess.is3D());
+            List<Map<String, Object>> nodeTags = new ArrayList<>();
+            int fromIndex = -1;
+            for (int i = 0; i < osmNodeIds.size(); i++) {
+                long osmNodeId = osmNodeIds.get(i);
+                ReaderNode node = nodes.get(osmNodeId);
+                GHPoint3D point = coordinateSupplier.getCoordinate(osmNodeId);
+                pointList.add(point.lat, point.lon, point.ele);
+                nodeTags.add(node.getTags());
+                // the lookup can split an existing edge, so we do it for every node of the way
+                int towerIndex = nodeResolver.findNode(osmNodeId, point);
+                if (towerIndex < 0) {
+                    if (i > 0 && i < osmNodeIds.size() - 1 && nodeUsages.get(osmNodeId) == 1)
+                        continue;
+                    towerIndex = nodeResolver.createNode(osmNodeId, point);
+                }
+                if (i > 0) {
+                    addEdge(fromIndex, towerIndex, pointList, way, nodeTags);
+                    pointList = new PointList(osmNodeIds.size() - i, nodeAccess.is3D());
+                    pointList.add(point.lat, point.lon, point.ele);
+                    nodeTags = new ArrayList<>();
+                    nodeTags.add(node.getTags());
+                }
+                fromIndex = towerIndex;
+            }
+        }
+        if (nodeCoordinateStore != null) {
+            for (ReaderNode node : changedNodes.values())
+                nodeCoordinateStore.set(node.getId(), node.getLat(), node.getLon());
+            nodeCoordinateStore.flush();
+            nodeCoordinateStore.close();
+        }
+        LOGGER.info("Applied changes from {}: {} nodes, {} ways, {} deleted ways -> updated edges: {}, disabled edges: {}, new edges: {}, split edges: {}, skipped new ways with unknown nodes: {}",
+                changeFile.getAbsolutePath(), nf(nodes.size()), nf(ways.size()), nf(deletedWays.size()), nf(updatedEdges),
+                nf(disabledEdges), nf(baseGraph.getEdges() - edgesBefore), nf(nodeResolver.splitEdges.size()), nf(skippedWays));
+    }
+
+    private void updateEdge(EdgeIteratorState edge, ReaderWay way) {
+        PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+        setArtificialWayTags(pointList, way, edge.getDistance(), Collections.nCopies(pointList.size(), emptyMap()));
+        edge.setFlags(new IntsRef(edge.getFlags().length));
+        osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, getRelFlagsMap(way.getId()));
+        edge.setKeyValues(way.getTag("key_values", Collections.emptyMap()));
+    }
+
+    private static void disableEdge(EdgeIteratorState edge) {
+        edge.setFlags(new IntsRef(edge.getFlags().length));
+    }
+
+    /**
+     * Maps the OSM nodes of a change file to graph nodes. Since we do not know the OSM node IDs of the existing graph
+     * nodes we look for tower or pillar nodes with the same coordinates.
+     */
+    private class ChangedNodeResolver {
+        private final LocationIndex locationIndex;
+        private final Map<Long, Integer> graphNodesByOSMNodeId = new HashMap<>();
+        private final Set<Long> unmatchedOSMNodeIds = new HashSet<>();
+        // the edges that were split in two because a new way was connected at one of their pillar nodes
+        private final Map<Integer, IntArrayList> splitEdges = new HashMap<>();
+
+        ChangedNodeResolver(LocationIndex locationIndex) {
+            this.locationIndex = locationIndex;
+        }
+
+        int createNode(long osmNodeId, GHPoint3D point) {
+            int node = createNode(point.lat, point.lon, point.ele);
+            graphNodesByOSMNodeId.put(osmNodeId, node);
+            return node;
+        }
+
+        /**
+         * @return the graph node for the given OSM node or -1 if there is none yet
+         */
+        int findNode(long osmNodeId, GHPoint3D point) {
+            Integer node = graphNodesByOSMNodeId.get(osmNodeId);
+            if (node != null)
+                return node;
+            if (locationIndex == null || unmatchedOSMNodeIds.contains(osmNodeId))
+                return -1;
+            Snap snap = locationIndex.findClosest(point.lat, point.lon, EdgeFilter.ALL_EDGES);
+            int graphNode = snap.isValid() ? findNodeOnEdge(snap.getClosestEdge().getEdge(), point) : -1;
+            if (graphNode < 0)
+                unmatchedOSMNodeIds.add(osmNodeId);
+            else
+                graphNodesByOSMNodeId.put(osmNodeId, graphNode);
+            return graphNode;
+        }
+
+        private int findNodeOnEdge(int edgeId, GHPoint3D point) {
+            IntArrayList pieces = splitEdges.get(edgeId);
+            if (pieces != null) {
+                // the location index still contains the original edge
+                for (IntCursor piece : pieces) {
+                    int node = findNodeOnEdge(piece.value, point);
+                    if (node >= 0)
+                        return node;
+                }
+                return -1;
+            }
+            EdgeIteratorState edge = baseGraph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            PointList pointList = edge.fetchWayGeometry(FetchMode.ALL);
+            for (int i = 0; i < pointList.size(); i++) {
+                if (Math.abs(pointList.getLat(i) - point.lat) > 1.e-6 || Math.abs(pointList.getLon(i) - point.lon) > 1.e-6)
+                    continue;
+                if (i == 0)
+                    return edge.getBaseNode();
+                if (i == pointList.size() - 1)
+                    return edge.getAdjNode();
+                return splitEdge(edge, pointList, i);
+            }
+            // the OSM node might have been removed from the geometry when the way was simplified during the import,
+            // so we also accept points that are close enough to one of the segments
+            double maxDist = distCalc.calcNormalizedDist(Math.max(config.getMaxWayPointDistance(), 0.1));
+            int closestSegment = -1;
+            for (int i = 0; i < pointList.size() - 1; i++) {
+                if (!distCalc.validEdgeDistance(point.lat, point.lon, pointList.getLat(i), pointList.getLon(i), pointList.getLat(i + 1), pointList.getLon(i + 1)))
+                    continue;
+                double dist = distCalc.calcNormalizedEdgeDistance(point.lat, point.lon, pointList.getLat(i), pointList.getLon(i), pointList.getLat(i + 1), pointList.getLon(i + 1));
+                if (dist <= maxDist) {
+                    maxDist = dist;
+                    closestSegment = i;
+                }
+            }
+            if (closestSegment < 0)
+                return -1;
+            PointList withPoint = new PointList(pointList.size() + 1, pointList.is3D());
+            withPoint.add(pointList.shallowCopy(0, closestSegment + 1, false));
+            withPoint.add(point);
+            withPoint.add(pointList.shallowCopy(closestSegment + 1, pointList.size(), false));
+            return splitEdge(edge, withPoint, closestSegment + 1);
+        }
+
+        /**
+         * Splits the given edge at the given index of its geometry and disables it. The turn costs of the edge are
+         * copied to the piece at the same node.
+         *
+         * @return the new node at the split point or -1 if the edge cannot be split
+         */
+        private int splitEdge(EdgeIteratorState edge, PointList pointList, int index) {
+            if (turnCostStorage != null && edge.getBaseNode() == edge.getAdjNode()
+                    && turnCostStorage.getTurnCostsCount(edge.getBaseNode()) > 0) {
+                // we would not know which piece the turn costs of a loop belong to
+                LOGGER.warn("Cannot split loop edge {} with turn costs at node {}", edge.getEdge(), edge.getBaseNode());
+                return -1;
+            }
+            int node = createNode(pointList.getLat(index), pointList.getLon(index), pointList.getEle(index));
+            EdgeIteratorState first = addEdgePiece(edge, edge.getBaseNode(), node, pointList.shallowCopy(0, index + 1, false));
+            EdgeIteratorState second = addEdgePiece(edge, node, edge.getAdjNode(), pointList.shallowCopy(index, pointList.size(), false));
+            if (turnCostStorage != null) {
+                turnCostStorage.copyTurnCosts(edge.getBaseNode(), edge.getEdge(), first.getEdge());
+                turnCostStorage.copyTurnCosts(edge.getAdjNode(), edge.getEdge(), second.getEdge());
+            }
+            splitEdges.put(edge.getEdge(), IntArrayList.from(first.getEdge(), second.getEdge()));
+            disableEdge(edge);
+            return node;
+        }
+
+        private EdgeIteratorState addEdgePiece(EdgeIteratorState edge, int from, int to, PointList pointList) {
+            EdgeIteratorState piece = baseGraph.edge(from, to)
+                    .setDistance(Math.max(0.001, distCalc.calcDistance(pointList)))
+                    .setFlags(edge.getFlags())
+                    .setKeyValues(edge.getKeyValues());
+            if (pointList.size() > 2)
+                piece.setWayGeometry(pointList.shallowCopy(1, pointList.size() - 1, false));
+            return piece;
+        }
+
+        private int createNode(double lat, double lon, double ele) {
+            int node = baseGraph.getNodes();
+            nodeAccess.setNode(node, lat, lon, ele);
+            return node;
+        }
+    }
+
+    /**
+     * This method is called with the OSM file header during the first pass of the {@link WaySegmentParser}, i.e.
+     * before the node coordinates are read.
+     */
+    protected void handleFileHeader(OSMFileHeader fileHeader) {
+        // start loading the elevation data while we are still reading the ways
+        if (fileHeader.getBBox() != null && eleProvider instanceof TileBasedElevationProvider)
+            ((TileBasedElevationProvider) eleProvider).prefetch(fileHeader.getBBox());
+    }
+
     protected double getElevation(ReaderNode node) {
         double ele = eleProvider.getEle(node);
         return Double.isNaN(ele) ? config.getDefaultElevation() : ele;
@@ -54,6 +54,11 @@ import static com.graphhopper.util.Helper.nf;
  * <p>
  * We assume a strict order of the OSM file: nodes, ways, then relations.
  * <p>
+ * For files that are sorted by type and ID (as declared by PBF files with {@link OSMFileHeader#SORT_TYPE_THEN_ID}) the
+ * parser can optionally read the OSM file only once. In this mode all elements are spilled to an {@link OSMElementSpillBuffer} during the first pass and the
+ * second pass replays them from there. This is useful when reading the OSM file is expensive, e.g. because it resides
+ * on a network mount.
+ * <p>
  * The main difficulty is that the OSM ID range is very large (64bit integers) and to be able to provide the full
  * node information for each segment we have to efficiently store the node data temporarily. This is addressed by
  * {@link OSMNodeData}.
@@ -71,15 +76,22 @@ public class WaySegmentParser {
     };
     private RelationProcessor relationProcessor = (relation, map) -> {
     };
+    private Consumer<OSMFileHeader> fileHeaderHandler = fileHeader -> {
+    };
+    private Consumer<ReaderNode> acceptedNodeHandler = node -> {
+    };
     private EdgeHandler edgeHandler = (from, to, pointList, way, nodeTags) ->
             System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
     private int workerThreads = 2;
+    private boolean singlePass = false;
 
     private final OSMNodeData nodeData;
+    private final Directory directory;
     private Date timestamp;
 
-    private WaySegmentParser(OSMNodeData nodeData) {
+    private WaySegmentParser(OSMNodeData nodeData, Directory directory) {
         this.nodeData = nodeData;
+        this.directory = directory;
     }
 
     /**
@@ -89,6 +101,11 @@ public class WaySegmentParser {
         if (nodeData.getNodeCount() > 0)
             throw new IllegalStateException("You can only run way segment parser once");
 
+        if (singlePass) {
+            readOSMSinglePass(osmFile);
+            return;
+        }
+
         LOGGER.info("Start reading OSM file: '" + osmFile + "'");
         LOGGER.info("pass1 - start");
         StopWatch sw1 = StopWatch.started();
@@ -112,6 +129,48 @@ public class WaySegmentParser {
                 " total: " + (int) (sw1.getSeconds() + sw2.getSeconds()) + "s");
     }
 
+    private void readOSMSinglePass(File osmFile) {
+        OSMElementSpillBuffer spillBuffer = new OSMElementSpillBuffer(createSpillFile(osmFile));
+        try {
+            LOGGER.info("Start reading OSM file in single pass mode: '" + osmFile + "'");
+            LOGGER.info("pass1 - start");
+            StopWatch sw1 = StopWatch.started();
+            spillBuffer.create();
+            try {
+                readOSM(osmFile, new SpillingPass1Handler(spillBuffer), SkipOptions.none());
+                spillBuffer.finish();
+            } finally {
+                // does nothing if the buffer was finished, otherwise it must not hide the exception of pass1
+                spillBuffer.close();
+            }
+            LOGGER.info("pass1 - finished, took: {}, spilled elements: {}, spill buffer: {}MB", sw1.stop().getTimeString(),
+                    nf(spillBuffer.getElements()), spillBuffer.getBytes() / Helper.MB);
+
+            LOGGER.info("Creating graph. Node count (pillar+tower): " + nodeData.getNodeCount() + ", " + Helper.getMemInfo());
+
+            LOGGER.info("pass2 - start (replaying spill buffer)");
+            StopWatch sw2 = new StopWatch().start();
+            readOSM(spillBuffer::open, new Pass2Handler(), "spill buffer of " + osmFile.getAbsolutePath());
+            LOGGER.info("pass2 - finished, took: {}", sw2.stop().getTimeString());
+
+            nodeData.release();
+
+            LOGGER.info("Finished reading OSM file." +
+                    " pass1: " + (int) sw1.getSeconds() + "s, " +
+                    " pass2: " + (int) sw2.getSeconds() + "s, " +
+                    " total: " + (int) (sw1.getSeconds() + sw2.getSeconds()) + "s");
+        } finally {
+            spillBuffer.delete();
+        }
+    }
+
+    private File createSpillFile(File osmFile) {
+        File dir = new File(directory.getLocation());
+        if (!dir.isDirectory())
+            dir = new File(System.getProperty("java.io.tmpdir"));
+        return new File(dir, "osm_spill_" + osmFile.getName() + "_" + System.nanoTime());
+    }
+
     /**
      * @return the timestamp read from the OSM file, or null if nothing was read yet
      */
@@ -142,6 +201,7 @@ public class WaySegmentParser {
             if (!wayFilter.test(way))
                 return;
             acceptedWays++;
+            onAcceptedWay(way);
 
             for (LongCursor node : way.getNodes()) {
                 final boolean isEnd = node.index == 0 || node.index == way.getNodes().size() - 1;
@@ -153,6 +213,9 @@ public class WaySegmentParser {
             }
         }
 
+        void onAcceptedWay(ReaderWay way) {
+        }
+
         @Override
         public void handleRelation(ReaderRelation relation) {
             if (!handledRelations) {
@@ -169,6 +232,7 @@ public class WaySegmentParser {
         @Override
         public void handleFileHeader(OSMFileHeader fileHeader) throws ParseException {
             timestamp = Helper.createFormatter().parse(fileHeader.getTag("timestamp"));
+            fileHeaderHandler.accept(fileHeader);
         }
 
         @Override
@@ -179,6 +243,46 @@ public class WaySegmentParser {
         }
     }
 
+    /**
+     * Does the same as {@link Pass1Handler}, but additionally writes all nodes, all accepted ways and all relations to
+     * the given spill buffer, such that the second pass does not need to read the OSM file again.
+     */
+    private class SpillingPass1Handler extends Pass1Handler {
+        private final OSMElementSpillBuffer spillBuffer;
+
+        SpillingPass1Handler(OSMElementSpillBuffer spillBuffer) {
+            this.spillBuffer = spillBuffer;
+        }
+
+        @Override
+        public void handleFileHeader(OSMFileHeader fileHeader) throws ParseException {
+            // we only really need the nodes, ways and relations to be in this order, which is checked while replaying
+            // the buffer, but files sorted by ID are also the ones for which the delta encoding of the buffer works best
+            if (!fileHeader.isSortedByTypeThenId())
+                LOGGER.warn("OSM file does not declare " + OSMFileHeader.SORT_TYPE_THEN_ID + ", single pass import " +
+                        "will fail if nodes, ways and relations are not in this order");
+            super.handleFileHeader(fileHeader);
+        }
+
+        @Override
+        public void handleNode(ReaderNode node) {
+            // we do not know yet which nodes are used by the accepted ways, so we have to keep all of them
+            spillBuffer.add(node);
+        }
+
+        @Override
+        void onAcceptedWay(ReaderWay way) {
+            spillBuffer.add(way);
+        }
+
+        @Override
+        public void handleRelation(ReaderRelation relation) {
+            // the relation preprocessor might modify the relation, so we write it first
+            spillBuffer.add(relation);
+            super.handleRelation(relation);
+        }
+    }
+
     private class Pass2Handler implements ReaderElementHandler {
         private boolean handledNodes;
         private boolean handledWays;
@@ -208,6 +312,7 @@ public class WaySegmentParser {
                 return;
 
             acceptedNodes++;
+            acceptedNodeHandler.accept(node);
 
             // remember which nodes we want to split
             if (splitNodeFilter.test(node)) {
@@ -392,7 +497,11 @@ public class WaySegmentParser {
     }
 
     private void readOSM(File file, ReaderElementHandler handler, SkipOptions skipOptions) {
-        try (OSMInput osmInput = openOsmInputFile(file, skipOptions)) {
+        readOSM(() -> openOsmInputFile(file, skipOptions), handler, "OSM file: " + file.getAbsolutePath());
+    }
+
+    private void readOSM(OSMInputSupplier inputSupplier, ReaderElementHandler handler, String description) {
+        try (OSMInput osmInput = inputSupplier.open()) {
             ReaderElement elem;
             while ((elem = osmInput.getNext()) != null)
                 handler.handleElement(elem);
@@ -400,10 +509,14 @@ public class WaySegmentParser {
             if (osmInput.getUnprocessedElements() > 0)
                 throw new IllegalStateException("There were some remaining elements in the reader queue " + osmInput.getUnprocessedElements());
         } catch (Exception e) {
-            throw new RuntimeException("Could not parse OSM file: " + file.getAbsolutePath(), e);
+            throw new RuntimeException("Could not parse " + description, e);
         }
     }
 
+    private interface OSMInputSupplier {
+        OSMInput open() throws XMLStreamException, IOException;
+    }
+
     protected OSMInput openOsmInputFile(File osmFile, SkipOptions skipOptions) throws XMLStreamException, IOException {
         return new OSMInputFile(osmFile).setWorkerThreads(workerThreads).setSkipOptions(skipOptions).open();
     }
@@ -416,7 +529,7 @@ public class WaySegmentParser {
          * @param directory   the directory to be used to store temporary data
          */
         public Builder(PointAccess pointAccess, Directory directory) {
-            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory));
+            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory), directory);
         }
 
         /**
@@ -467,6 +580,23 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param fileHeaderHandler callback function that receives the OSM file header during the first pass
+         */
+        public Builder setFileHeaderHandler(Consumer<OSMFileHeader> fileHeaderHandler) {
+            waySegmentParser.fileHeaderHandler = fileHeaderHandler;
+            return this;
+        }
+
+        /**
+         * @param acceptedNodeHandler callback function that is called during the second pass for each OSM node that
+         *                            is used by at least one of the accepted ways
+         */
+        public Builder setAcceptedNodeHandler(Consumer<ReaderNode> acceptedNodeHandler) {
+            waySegmentParser.acceptedNodeHandler = acceptedNodeHandler;
+            return this;
+        }
+
         /**
          * @param edgeHandler callback function that is called for each edge (way segment)
          */
@@ -483,6 +613,16 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param singlePass if true the OSM file is read only once and the elements needed for the second pass are
+         *                   buffered on disk. This is meant for files sorted by type and ID, see
+         *                   {@link OSMFileHeader#isSortedByTypeThenId()}
+         */
+        public Builder setSinglePass(boolean singlePass) {
+            waySegmentParser.singlePass = singlePass;
+            return this;
+        }
+
         public WaySegmentParser build() {
             return waySegmentParser;
         }
@@ -10,6 +10,7 @@ import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.osm.OSMFileHeader;
 import com.graphhopper.reader.osm.SkipOptions;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
 import org.openstreetmap.osmosis.osmbinary.Fileformat;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
 import org.slf4j.Logger;
@@ -100,6 +101,14 @@ public class PbfBlobDecoder implements Runnable {
         OSMFileHeader fileheader = new OSMFileHeader();
         long milliSecondDate = header.getOsmosisReplicationTimestamp();
         fileheader.setTag("timestamp", Helper.createFormatter().format(new Date(milliSecondDate * 1000)));
+        if (header.getOptionalFeaturesList().contains(OSMFileHeader.SORT_TYPE_THEN_ID))
+            fileheader.setTag("sorted_type_then_id", true);
+        if (header.hasBbox()) {
+            Osmformat.HeaderBBox bbox = header.getBbox();
+            // the header bbox is given in nanodegrees
+            fileheader.setTag("bbox", new BBox(bbox.getLeft() * 1e-9, bbox.getRight() * 1e-9,
+                    bbox.getBottom() * 1e-9, bbox.getTop() * 1e-9));
+        }
         decodedEntities.add(fileheader);
 
         // Build a new bound object which corresponds to the header.
@@ -110,8 +110,13 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm {
         return maxVisitedNodes < getVisitedNodes();
     }
 
+    /**
+     * @return true if the timeout is exceeded or if the current thread was interrupted, which is used to cancel the
+     * search when its result is no longer needed, e.g. because the client of a request disconnected.
+     */
     protected boolean isTimeoutExceeded() {
-        return finishTimeMillis < Long.MAX_VALUE && System.currentTimeMillis() > finishTimeMillis;
+        return finishTimeMillis < Long.MAX_VALUE && System.currentTimeMillis() > finishTimeMillis
+                || Thread.currentThread().isInterrupted();
     }
 
 }
@@ -33,6 +33,8 @@ public class OSMReaderConfig {
     private int ramerElevationSmoothingMax = 5;
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
+    private boolean singlePass = false;
+    private boolean storeOSMNodes = false;
     private double defaultElevation = 0;
 
     public List<String> getIgnoredHighways() {
@@ -157,6 +159,33 @@ public class OSMReaderConfig {
         return this;
     }
 
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    /**
+     * Enables reading the OSM file only once. The data needed for the second pass is buffered on disk instead. This
+     * is meant for OSM files that are sorted by type and ID.
+     */
+    public OSMReaderConfig setSinglePass(boolean singlePass) {
+        this.singlePass = singlePass;
+        return this;
+    }
+
+    public boolean isStoreOSMNodes() {
+        return storeOSMNodes;
+    }
+
+    /**
+     * Enables storing the coordinates of the OSM nodes used by the imported ways, see {@link
+     * com.graphhopper.reader.osm.OSMNodeCoordinateStore}. This is needed to connect new ways when applying OSM change
+     * files and requires an OSM file where the nodes are sorted by ID.
+     */
+    public OSMReaderConfig setStoreOSMNodes(boolean storeOSMNodes) {
+        this.storeOSMNodes = storeOSMNodes;
+        return this;
+    }
+
     public double getDefaultElevation() {
         return defaultElevation;
     }
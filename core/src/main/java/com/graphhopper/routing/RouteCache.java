@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.details.PathDetail;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * An in-memory cache for the results of route requests that evicts the least recently used entries once the
+ * estimated size of all entries exceeds the given number of bytes. The keys are created by the {@link Router} from
+ * the snapped points instead of the requested coordinates, so requests from slightly different locations that snap
+ * to the same position share an entry. The cache belongs to one graph and must be cleared if the graph changes.
+ */
+public class RouteCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public RouteCache(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive but was " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return a new response with the paths of the cached response for the given key or null if there is none
+     */
+    public synchronized GHResponse get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        GHResponse rsp = new GHResponse();
+        for (ResponsePath path : entry.paths)
+            rsp.add(path);
+        rsp.setHints(new PMap(entry.hints));
+        return rsp;
+    }
+
+    /**
+     * Stores the paths and hints of the given response. The paths must not be modified afterwards, because they are
+     * shared by all responses returned from {@link #get}.
+     */
+    public synchronized void put(Object key, GHResponse rsp) {
+        Entry entry = new Entry(rsp.getAll(), new PMap(rsp.getHints()), estimateBytes(rsp));
+        if (entry.bytes > maxBytes)
+            return;
+        Entry previous = entries.put(key, entry);
+        if (previous != null)
+            bytes -= previous.bytes;
+        bytes += entry.bytes;
+        Iterator<Entry> iter = entries.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= iter.next().bytes;
+            iter.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    static long estimateBytes(GHResponse rsp) {
+        // a rough estimate including the object headers, we do not need to be exact here
+        long bytes = 200;
+        for (ResponsePath path : rsp.getAll()) {
+            bytes += 300;
+            int dim = path.getPoints().is3D() ? 3 : 2;
+            bytes += 8L * dim * (path.getPoints().size() + path.getWaypoints().size());
+            for (Instruction instruction : getInstructions(path)) {
+                bytes += 150 + 2L * instruction.getName().length() + 8L * dim * instruction.getPoints().size();
+            }
+            for (List<PathDetail> details : path.getPathDetails().values())
+                bytes += 64L * details.size();
+            for (String description : path.getDescription())
+                bytes += 40 + 2L * description.length();
+        }
+        return bytes;
+    }
+
+    private static List<Instruction> getInstructions(ResponsePath path) {
+        try {
+            return path.getInstructions();
+        } catch (IllegalArgumentException e) {
+            // the instructions were disabled for this request
+            return Collections.emptyList();
+        }
+    }
+
+    private static class Entry {
+        final List<ResponsePath> paths;
+        final PMap hints;
+        final long bytes;
+
+        Entry(List<ResponsePath> paths, PMap hints, long bytes) {
+            this.paths = paths;
+            this.hints = hints;
+            this.bytes = bytes;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries: " + entries.size() + ", bytes: " + bytes + ", hits: " + hits + ", misses: " + misses;
+    }
+}
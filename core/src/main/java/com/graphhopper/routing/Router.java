@@ -68,6 +68,8 @@ public class Router {
     protected final Map<String, LandmarkStorage> landmarks;
     protected final boolean chEnabled;
     protected final boolean lmEnabled;
+    protected RoutingMetrics routingMetrics = RoutingMetrics.NONE;
+    protected RouteCache routeCache;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -94,6 +96,19 @@ public class Router {
         }
     }
 
+    public Router setRoutingMetrics(RoutingMetrics routingMetrics) {
+        this.routingMetrics = routingMetrics;
+        return this;
+    }
+
+    /**
+     * @param routeCache the cache for the results of speed mode requests or null to disable caching
+     */
+    public Router setRouteCache(RouteCache routeCache) {
+        this.routeCache = routeCache;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -223,16 +238,23 @@ public class Router {
         RoundTripRouting.Params params = new RoundTripRouting.Params(request.getHints(), startHeading, routerConfig.getMaxRoundTripRetries());
         List<Snap> snaps = RoundTripRouting.lookup(request.getPoints(), solver.createSnapFilter(), locationIndex, params);
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        long snapNanos = sw.getNanos();
 
+        long start = System.nanoTime();
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        long queryGraphNanos = System.nanoTime() - start;
         FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
 
+        start = System.nanoTime();
         RoundTripRouting.Result result = RoundTripRouting.calcPaths(snaps, pathCalculator);
+        long searchNanos = System.nanoTime() - start;
         // we merge the different legs of the roundtrip into one response path
         // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
         // to avoid 'unnecessary tails' in the roundtrip algo
-        ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, result.wayPoints);
+        PathMerger pathMerger = createPathMerger(request, solver.weighting, queryGraph);
+        ResponsePath responsePath = pathMerger.doWork(result.wayPoints, result.paths, encodingManager, translationMap.getWithFallBack(request.getLocale()));
         ghRsp.add(responsePath);
+        recordMetrics(solver, snapNanos, queryGraphNanos, searchNanos, result.paths, pathMerger, result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
         return ghRsp;
@@ -247,7 +269,10 @@ public class Router {
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        long snapNanos = sw.getNanos();
+        long start = System.nanoTime();
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        long queryGraphNanos = System.nanoTime() - start;
         PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
         boolean passThrough = getPassThrough(request.getHints());
         String curbsideStrictness = getCurbsideStrictness(request.getHints());
@@ -256,8 +281,10 @@ public class Router {
         if (!request.getCurbsides().isEmpty())
             throw new IllegalArgumentException("Alternative paths do not support the " + CURBSIDE + " parameter yet");
 
+        start = System.nanoTime();
         ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
                 pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough);
+        long searchNanos = System.nanoTime() - start;
         if (result.paths.isEmpty())
             throw new RuntimeException("Empty paths for alternative route calculation not expected");
 
@@ -268,6 +295,7 @@ public class Router {
             ResponsePath responsePath = pathMerger.doWork(waypoints, Collections.singletonList(path), encodingManager, translationMap.getWithFallBack(request.getLocale()));
             ghRsp.add(responsePath);
         }
+        recordMetrics(solver, snapNanos, queryGraphNanos, searchNanos, result.paths, pathMerger, result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
         return ghRsp;
@@ -280,27 +308,72 @@ public class Router {
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
                 request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        long snapNanos = sw.getNanos();
+        // the result of a speed mode request only depends on the snapped points and the request parameters
+        Object cacheKey = null;
+        if (routeCache != null && solver instanceof CHSolver) {
+            cacheKey = createRouteCacheKey(request, snaps);
+            GHResponse cached = routeCache.get(cacheKey);
+            if (cached != null) {
+                cached.addDebugInfo("idLookup:" + sw.getSeconds() + "s, route cache hit");
+                return cached;
+            }
+        }
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
+        long start = System.nanoTime();
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        long queryGraphNanos = System.nanoTime() - start;
         PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
         boolean passThrough = getPassThrough(request.getHints());
         String curbsideStrictness = getCurbsideStrictness(request.getHints());
+        start = System.nanoTime();
         ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
                 pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough);
+        long searchNanos = System.nanoTime() - start;
 
         if (request.getPoints().size() != result.paths.size() + 1)
             throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
 
         // here each path represents one leg of the via-route and we merge them all together into one response path
-        ResponsePath responsePath = concatenatePaths(request, solver.weighting, queryGraph, result.paths, getWaypoints(snaps));
+        PathMerger pathMerger = createPathMerger(request, solver.weighting, queryGraph);
+        ResponsePath responsePath = pathMerger.doWork(getWaypoints(snaps), result.paths, encodingManager, translationMap.getWithFallBack(request.getLocale()));
         responsePath.addDebugInfo(result.debug);
         ghRsp.add(responsePath);
+        recordMetrics(solver, snapNanos, queryGraphNanos, searchNanos, result.paths, pathMerger, result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
+        if (cacheKey != null && !ghRsp.hasErrors())
+            routeCache.put(cacheKey, ghRsp);
         return ghRsp;
     }
 
+    private static Object createRouteCacheKey(GHRequest request, List<Snap> snaps) {
+        PMap hints = new PMap(request.getHints());
+        // these parameters only influence the snapping
+        hints.remove("point");
+        hints.remove(POINT_HINT);
+        hints.remove(SNAP_PREVENTION);
+        List<Object> key = new ArrayList<>(7 + 4 * snaps.size());
+        key.add(request.getProfile());
+        key.add(request.getAlgorithm());
+        key.add(request.getLocale());
+        key.add(request.getHeadings());
+        key.add(request.getCurbsides());
+        key.add(request.getPathDetails());
+        key.add(hints.toMap());
+        for (Snap snap : snaps) {
+            key.add(snap.getClosestEdge().getEdgeKey());
+            key.add(snap.getWayIndex());
+            key.add(snap.getSnappedPosition());
+            // points snapped onto an edge move with the requested coordinates. we round them to about one meter,
+            // which is also the precision of the encoded points in the response
+            key.add(Math.round(snap.getSnappedPoint().lat * 1e5));
+            key.add(Math.round(snap.getSnappedPoint().lon * 1e5));
+        }
+        return key;
+    }
+
     private PathMerger createPathMerger(GHRequest request, Weighting weighting, Graph graph) {
         boolean enableInstructions = request.getHints().getBool(Parameters.Routing.INSTRUCTIONS, routerConfig.isInstructionsEnabled());
         boolean calcPoints = request.getHints().getBool(Parameters.Routing.CALC_POINTS, routerConfig.isCalcPoints());
@@ -322,9 +395,21 @@ public class Router {
         return pathMerger;
     }
 
-    private ResponsePath concatenatePaths(GHRequest request, Weighting weighting, QueryGraph queryGraph, List<Path> paths, PointList waypoints) {
-        PathMerger pathMerger = createPathMerger(request, weighting, queryGraph);
-        return pathMerger.doWork(waypoints, paths, encodingManager, translationMap.getWithFallBack(request.getLocale()));
+    private void recordMetrics(Solver solver, long snapNanos, long queryGraphNanos, long searchNanos, List<Path> paths,
+                               PathMerger pathMerger, long visitedNodes) {
+        String profile = solver.profile.getName();
+        String solverName = solver.getName();
+        long extractionNanos = 0;
+        for (Path path : paths)
+            extractionNanos += path.getExtractionNanos();
+        routingMetrics.recordTime(profile, solverName, RoutingMetrics.Stage.SNAP, snapNanos);
+        routingMetrics.recordTime(profile, solverName, RoutingMetrics.Stage.QUERY_GRAPH, queryGraphNanos);
+        // the path extraction happens during the search, but we want to see it separately
+        routingMetrics.recordTime(profile, solverName, RoutingMetrics.Stage.SEARCH, Math.max(0, searchNanos - extractionNanos));
+        routingMetrics.recordTime(profile, solverName, RoutingMetrics.Stage.PATH_EXTRACTION, extractionNanos);
+        routingMetrics.recordTime(profile, solverName, RoutingMetrics.Stage.INSTRUCTIONS, pathMerger.getInstructionsNanos());
+        routingMetrics.recordTime(profile, solverName, RoutingMetrics.Stage.PATH_DETAILS, pathMerger.getPathDetailsNanos());
+        routingMetrics.recordVisitedNodes(profile, solverName, visitedNodes);
     }
 
     private PointList getWaypoints(List<Snap> snaps) {
@@ -413,6 +498,11 @@ public class Router {
 
         protected abstract Weighting createWeighting();
 
+        /**
+         * @return the name of this solver as used for the {@link RoutingMetrics}
+         */
+        protected abstract String getName();
+
         protected EdgeFilter createSnapFilter() {
             return new DefaultSnapFilter(weighting, lookup.getBooleanEncodedValue(Subnetwork.key(profile.getName())));
         }
@@ -480,6 +570,11 @@ public class Router {
             return getRoutingCHGraph(profile.getName()).getWeighting();
         }
 
+        @Override
+        protected String getName() {
+            return "ch";
+        }
+
         @Override
         protected PathCalculator createPathCalculator(QueryGraph queryGraph) {
             PMap opts = new PMap(request.getHints());
@@ -527,6 +622,11 @@ public class Router {
             return weightingFactory.createWeighting(profile, requestHints, false);
         }
 
+        @Override
+        protected String getName() {
+            return "flex";
+        }
+
         @Override
         protected FlexiblePathCalculator createPathCalculator(QueryGraph queryGraph) {
             RoutingAlgorithmFactory algorithmFactory = new RoutingAlgorithmFactorySimple();
@@ -579,6 +679,11 @@ public class Router {
             this.landmarks = landmarks;
         }
 
+        @Override
+        protected String getName() {
+            return "lm";
+        }
+
         @Override
         protected FlexiblePathCalculator createPathCalculator(QueryGraph queryGraph) {
             // for now do not allow mixing CH&LM #1082,#1889
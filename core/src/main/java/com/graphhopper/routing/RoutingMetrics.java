@@ -0,0 +1,51 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Locale;
+
+/**
+ * Receives the time spent in the different stages of every successful route request, see
+ * {@link Router#setRoutingMetrics}. Implementations are called from many threads at once and should be fast.
+ */
+public interface RoutingMetrics {
+    RoutingMetrics NONE = new RoutingMetrics() {
+        @Override
+        public void recordTime(String profile, String solver, Stage stage, long nanos) {
+        }
+
+        @Override
+        public void recordVisitedNodes(String profile, String solver, long visitedNodes) {
+        }
+    };
+
+    enum Stage {
+        SNAP, QUERY_GRAPH, SEARCH, PATH_EXTRACTION, INSTRUCTIONS, PATH_DETAILS;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @param solver the name of the solver used for the request, i.e. ch, lm or flex
+     */
+    void recordTime(String profile, String solver, Stage stage, long nanos);
+
+    void recordVisitedNodes(String profile, String solver, long visitedNodes);
+}
@@ -0,0 +1,224 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.routing.subnetwork;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.IntArrayDeque;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.subnetwork.EdgeBasedTarjanSCC.EdgeTransitionFilter;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import static com.graphhopper.util.GHUtility.getEdgeFromEdgeKey;
+
+/**
+ * A variant of {@link EdgeBasedTarjanSCC} that needs considerably less memory for very large graphs. It is based on
+ * the space-efficient version of Tarjan's algorithm by Pearce ('A space-efficient algorithm for finding strongly
+ * connected components', 2016): instead of separate index and low-link arrays there is only a single int per edge key
+ * and a bit set that marks the component roots. When the search is finished the int array holds the component of
+ * each edge key, so we do not have to build lists of edge keys for each component either.
+ * <p>
+ * The search is iterative (uses an explicit stack) so it does not depend on the thread stack size. To keep the stack
+ * small we do not store edge iterators on it, but re-iterate the adjacent edges of an edge key when we return to it.
+ * This is cheap for road networks where the node degree is small.
+ *
+ * @see EdgeBasedTarjanSCC
+ */
+public class CompactEdgeBasedTarjanSCC {
+    private final Graph graph;
+    private final EdgeTransitionFilter edgeTransitionFilter;
+    private final EdgeExplorer explorer;
+    // while searching this contains the (temporary) index of each edge key, or zero if the edge key was not visited
+    // yet. once the component of an edge key is found it is set to the component 'id' which counts down from numKeys.
+    private final int[] rindex;
+    private final BitSet root;
+    private final IntArrayDeque tarjanStack;
+    private final IntArrayList dfsEdgeKeys;
+    private final IntArrayList dfsAdjNodes;
+    private final IntArrayList dfsNeighborPositions;
+    private final IntArrayList componentSizes;
+    private int currIndex = 1;
+    private int currComponent;
+
+    /**
+     * Finds the strongly connected components of the entire graph, see
+     * {@link EdgeBasedTarjanSCC#findComponents(Graph, EdgeTransitionFilter, boolean)}.
+     */
+    public static EdgeKeyComponents findComponents(Graph graph, EdgeTransitionFilter edgeTransitionFilter) {
+        return new CompactEdgeBasedTarjanSCC(graph, edgeTransitionFilter).findComponents();
+    }
+
+    private CompactEdgeBasedTarjanSCC(Graph graph, EdgeTransitionFilter edgeTransitionFilter) {
+        this.graph = graph;
+        this.edgeTransitionFilter = edgeTransitionFilter;
+        this.explorer = graph.createEdgeExplorer();
+        int numKeys = 2 * graph.getEdges();
+        rindex = new int[numKeys];
+        root = new BitSet(numKeys);
+        tarjanStack = new IntArrayDeque();
+        dfsEdgeKeys = new IntArrayList();
+        dfsAdjNodes = new IntArrayList();
+        dfsNeighborPositions = new IntArrayList();
+        componentSizes = new IntArrayList();
+        currComponent = numKeys;
+    }
+
+    private EdgeKeyComponents findComponents() {
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            int edgeKeyFwd = iter.getEdgeKey();
+            if (rindex[edgeKeyFwd] == 0)
+                search(edgeKeyFwd, iter.getAdjNode());
+            int edgeKeyBwd = iter.getReverseEdgeKey();
+            if (rindex[edgeKeyBwd] == 0)
+                search(edgeKeyBwd, iter.getBaseNode());
+        }
+        // convert the component 'ids' to zero-based indices into componentSizes
+        for (int i = 0; i < rindex.length; i++)
+            rindex[i] = rindex.length - rindex[i];
+        return new EdgeKeyComponents(rindex, componentSizes);
+    }
+
+    private void search(int startEdgeKey, int adjNode) {
+        beginVisiting(startEdgeKey, adjNode);
+        while (!dfsEdgeKeys.isEmpty()) {
+            int top = dfsEdgeKeys.size() - 1;
+            int p = dfsEdgeKeys.get(top);
+            if (visitNextNeighbor(top, p))
+                continue;
+            finishVisiting(p);
+            if (!dfsEdgeKeys.isEmpty()) {
+                int parent = dfsEdgeKeys.get(dfsEdgeKeys.size() - 1);
+                if (rindex[p] < rindex[parent]) {
+                    rindex[parent] = rindex[p];
+                    root.clear(parent);
+                }
+            }
+        }
+    }
+
+    private void beginVisiting(int p, int adjNode) {
+        rindex[p] = currIndex++;
+        root.set(p);
+        dfsEdgeKeys.add(p);
+        dfsAdjNodes.add(adjNode);
+        dfsNeighborPositions.add(0);
+    }
+
+    /**
+     * Continues iterating the neighbors of edge key p where we left off the last time.
+     *
+     * @return true if we found a neighbor that was not visited yet and pushed it to the stack
+     */
+    private boolean visitNextNeighbor(int top, int p) {
+        final int edge = getEdgeFromEdgeKey(p);
+        final int position = dfsNeighborPositions.get(top);
+        EdgeIterator iter = explorer.setBaseNode(dfsAdjNodes.get(top));
+        int i = 0;
+        while (iter.next()) {
+            if (i++ < position || !edgeTransitionFilter.accept(edge, iter))
+                continue;
+            int q = iter.getEdgeKey();
+            if (rindex[q] == 0) {
+                dfsNeighborPositions.set(top, i);
+                beginVisiting(q, iter.getAdjNode());
+                return true;
+            } else if (rindex[q] < rindex[p]) {
+                rindex[p] = rindex[q];
+                root.clear(p);
+            }
+        }
+        return false;
+    }
+
+    private void finishVisiting(int p) {
+        int top = dfsEdgeKeys.size() - 1;
+        dfsEdgeKeys.remove(top);
+        dfsAdjNodes.remove(top);
+        dfsNeighborPositions.remove(top);
+        if (!root.get(p)) {
+            tarjanStack.addLast(p);
+            return;
+        }
+        currIndex--;
+        int size = 1;
+        while (!tarjanStack.isEmpty() && rindex[p] <= rindex[tarjanStack.getLast()]) {
+            rindex[tarjanStack.removeLast()] = currComponent;
+            currIndex--;
+            size++;
+        }
+        rindex[p] = currComponent;
+        currComponent--;
+        componentSizes.add(size);
+    }
+
+    public static class EdgeKeyComponents {
+        private final int[] components;
+        private final IntArrayList componentSizes;
+        private final int biggestComponent;
+
+        EdgeKeyComponents(int[] components, IntArrayList componentSizes) {
+            this.components = components;
+            this.componentSizes = componentSizes;
+            int biggest = -1;
+            int biggestSize = 1;
+            for (int i = 0; i < componentSizes.size(); i++) {
+                if (componentSizes.get(i) > biggestSize) {
+                    biggest = i;
+                    biggestSize = componentSizes.get(i);
+                }
+            }
+            this.biggestComponent = biggest;
+        }
+
+        /**
+         * @return the component of the given edge key, which is a number in [0, {@link #getTotalComponents()})
+         */
+        public int getComponent(int edgeKey) {
+            return components[edgeKey];
+        }
+
+        /**
+         * @return the number of edge keys in the given component
+         */
+        public int getComponentSize(int component) {
+            return componentSizes.get(component);
+        }
+
+        /**
+         * The total number of strongly connected components. This always includes single-edge components.
+         */
+        public int getTotalComponents() {
+            return componentSizes.size();
+        }
+
+        /**
+         * @return the biggest component with more than one edge key or -1 if there is no such component
+         */
+        public int getBiggestComponent() {
+            return biggestComponent;
+        }
+
+        public int getEdgeKeys() {
+            return components.length;
+        }
+    }
+}
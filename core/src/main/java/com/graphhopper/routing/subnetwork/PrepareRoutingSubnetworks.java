@@ -18,19 +18,20 @@
 package com.graphhopper.routing.subnetwork;
 
 import com.carrotsearch.hppc.BitSet;
-import com.carrotsearch.hppc.BitSetIterator;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.TurnCostStorage;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -57,7 +58,9 @@ import static com.graphhopper.util.GHUtility.getEdgeFromEdgeKey;
  * <p>
  * We always run an edge-based connected component search, because this way we retrieve the edges (not the nodes) that
  * belong to each component and can include turn restrictions as well. Node-based component search is faster, but since
- * the subnetwork search goes relatively fast anyway using it has no real benefit.
+ * the subnetwork search goes relatively fast anyway using it has no real benefit. To keep the memory usage low for
+ * large graphs we use {@link CompactEdgeBasedTarjanSCC} and run the search only once for jobs with equivalent
+ * weightings, see {@link #findEquivalentJobs()}.
  *
  * @author Peter Karich
  * @author easbar
@@ -101,68 +104,146 @@ public class PrepareRoutingSubnetworks {
         StopWatch sw = new StopWatch().start();
         logger.info("Start marking subnetworks, prepare.min_network_size: " + minNetworkSize + ", threads: " + threads + ", nodes: " +
                 Helper.nf(graph.getNodes()) + ", edges: " + Helper.nf(graph.getEdges()) + ", jobs: " + prepareJobs + ", " + Helper.getMemInfo());
+        List<IntArrayList> groups = findEquivalentJobs();
         AtomicInteger total = new AtomicInteger(0);
-        List<BitSet> flags = Stream.generate(() -> new BitSet(graph.getEdges())).limit(prepareJobs.size()).collect(Collectors.toList());
-        Stream<Runnable> runnables = IntStream.range(0, prepareJobs.size()).mapToObj(i -> () -> {
-            PrepareJob job = prepareJobs.get(i);
-            total.addAndGet(setSubnetworks(job.weighting, job.subnetworkEnc.getName().replaceAll("_subnetwork", ""), flags.get(i)));
+        List<BitSet> flags = Stream.generate(() -> new BitSet(graph.getEdges())).limit(groups.size()).collect(Collectors.toList());
+        Stream<Runnable> runnables = IntStream.range(0, groups.size()).mapToObj(i -> () -> {
+            IntArrayList group = groups.get(i);
+            PrepareJob job = prepareJobs.get(group.get(0));
+            String jobName = IntStream.range(0, group.size()).mapToObj(j -> getJobName(prepareJobs.get(group.get(j)))).collect(Collectors.joining(","));
+            total.addAndGet(group.size() * setSubnetworks(job.weighting, jobName, flags.get(i)));
         });
         GHUtility.runConcurrently(runnables, threads);
         AllEdgesIterator iter = graph.getAllEdges();
         while (iter.next()) {
-            for (int i = 0; i < prepareJobs.size(); i++) {
-                PrepareJob prepareJob = prepareJobs.get(i);
-                iter.set(prepareJob.subnetworkEnc, flags.get(i).get(iter.getEdge()));
+            for (int i = 0; i < groups.size(); i++) {
+                boolean subnetwork = flags.get(i).get(iter.getEdge());
+                for (IntCursor job : groups.get(i))
+                    iter.set(prepareJobs.get(job.value).subnetworkEnc, subnetwork);
             }
         }
-        logger.info("Finished finding and marking subnetworks for " + prepareJobs.size() + " jobs, took: " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
+        logger.info("Finished finding and marking subnetworks for " + prepareJobs.size() + " jobs (" + groups.size() + " distinct), took: " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
         return total.get();
     }
 
+    private static String getJobName(PrepareJob job) {
+        return job.subnetworkEnc.getName().replaceAll("_subnetwork", "");
+    }
+
+    /**
+     * The subnetworks only depend on which edges and turns are accessible for a weighting, so for jobs whose weightings
+     * only differ in the (finite) weights we only need to search the subnetworks once. For example this is the case
+     * for profiles that use the same vehicle but prefer different road classes. Jobs are considered to be equivalent
+     * if their weightings agree on the accessibility of all edge keys, all turns stored in the turn cost storage and
+     * u-turns. All other turns are considered to be accessible, as it is the case for
+     * {@link com.graphhopper.routing.weighting.DefaultTurnCostProvider}.
+     *
+     * @return groups of equivalent jobs as indices into prepareJobs
+     */
+    List<IntArrayList> findEquivalentJobs() {
+        // we first calculate a hash of the accessible edge keys and turns for every job and then only compare jobs
+        // with the same hash in detail. this way we do not need to store the accessibility of each job
+        long[] hashes = new long[prepareJobs.size()];
+        GHUtility.runConcurrently(IntStream.range(0, prepareJobs.size()).mapToObj(i -> () ->
+                hashes[i] = calcAccessHash(prepareJobs.get(i).weighting)), threads);
+        List<IntArrayList> groups = new ArrayList<>();
+        for (int i = 0; i < prepareJobs.size(); i++) {
+            IntArrayList group = null;
+            for (IntArrayList g : groups) {
+                int representative = g.get(0);
+                if (hashes[representative] == hashes[i] && hasSameAccess(prepareJobs.get(representative).weighting, prepareJobs.get(i).weighting)) {
+                    group = g;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new IntArrayList();
+                groups.add(group);
+            }
+            group.add(i);
+        }
+        return groups;
+    }
+
+    private long calcAccessHash(Weighting weighting) {
+        long hash = 1;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            hash = 31 * hash + (Double.isFinite(weighting.calcEdgeWeight(iter, false)) ? 1 : 0);
+            hash = 31 * hash + (Double.isFinite(weighting.calcEdgeWeight(iter, true)) ? 1 : 0);
+        }
+        TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
+        if (turnCostStorage != null) {
+            TurnCostStorage.Iterator tcIter = turnCostStorage.getAllTurnCosts();
+            while (tcIter.next())
+                hash = 31 * hash + (Double.isFinite(weighting.calcTurnWeight(tcIter.getFromEdge(), tcIter.getViaNode(), tcIter.getToEdge())) ? 1 : 0);
+        }
+        if (graph.getEdges() > 0)
+            hash = 31 * hash + (Double.isFinite(calcUTurnWeight(weighting)) ? 1 : 0);
+        return hash;
+    }
+
+    private boolean hasSameAccess(Weighting a, Weighting b) {
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (Double.isFinite(a.calcEdgeWeight(iter, false)) != Double.isFinite(b.calcEdgeWeight(iter, false))
+                    || Double.isFinite(a.calcEdgeWeight(iter, true)) != Double.isFinite(b.calcEdgeWeight(iter, true)))
+                return false;
+        }
+        TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
+        if (turnCostStorage != null) {
+            TurnCostStorage.Iterator tcIter = turnCostStorage.getAllTurnCosts();
+            while (tcIter.next()) {
+                if (Double.isFinite(a.calcTurnWeight(tcIter.getFromEdge(), tcIter.getViaNode(), tcIter.getToEdge()))
+                        != Double.isFinite(b.calcTurnWeight(tcIter.getFromEdge(), tcIter.getViaNode(), tcIter.getToEdge())))
+                    return false;
+            }
+        }
+        return graph.getEdges() == 0 || Double.isFinite(calcUTurnWeight(a)) == Double.isFinite(calcUTurnWeight(b));
+    }
+
+    private double calcUTurnWeight(Weighting weighting) {
+        return weighting.calcTurnWeight(0, graph.getEdgeIteratorState(0, Integer.MIN_VALUE).getAdjNode(), 0);
+    }
+
     private int setSubnetworks(Weighting weighting, String jobName, BitSet subnetworkFlags) {
         // partition graph into strongly connected components using Tarjan's algorithm
         StopWatch sw = new StopWatch().start();
-        EdgeBasedTarjanSCC.ConnectedComponents ccs = EdgeBasedTarjanSCC.findComponents(graph,
-                (prev, edge) -> Double.isFinite(GHUtility.calcWeightWithTurnWeight(weighting, edge, false, prev)),
-                false);
-        List<IntArrayList> components = ccs.getComponents();
-        BitSet singleEdgeComponents = ccs.getSingleEdgeComponents();
-        long numSingleEdgeComponents = singleEdgeComponents.cardinality();
+        CompactEdgeBasedTarjanSCC.EdgeKeyComponents ccs = CompactEdgeBasedTarjanSCC.findComponents(graph,
+                (prev, edge) -> Double.isFinite(GHUtility.calcWeightWithTurnWeight(weighting, edge, false, prev)));
+        int numSingleEdgeComponents = 0;
+        for (int c = 0; c < ccs.getTotalComponents(); c++)
+            if (ccs.getComponentSize(c) == 1)
+                numSingleEdgeComponents++;
         logger.info(jobName + " - Found " + ccs.getTotalComponents() + " subnetworks (" + numSingleEdgeComponents + " single edges and "
-                + components.size() + " components with more than one edge, total nodes: " + ccs.getEdgeKeys() + "), took: " + sw.stop().getSeconds() + "s");
+                + (ccs.getTotalComponents() - numSingleEdgeComponents) + " components with more than one edge, total nodes: " + ccs.getEdgeKeys() + "), took: " + sw.stop().getSeconds() + "s");
 
         final int minNetworkSizeEdgeKeys = 2 * minNetworkSize;
 
         // make all small components subnetworks, but keep the biggest (even when its smaller than the given min_network_size)
         sw = new StopWatch().start();
+        final int biggestComponent = ccs.getBiggestComponent();
+        final int biggestComponentSize = biggestComponent < 0 ? 0 : ccs.getComponentSize(biggestComponent);
         int subnetworks = 0;
-        int markedEdges = 0;
-        int smallestNonSubnetwork = ccs.getBiggestComponent().size();
+        int smallestNonSubnetwork = biggestComponentSize;
         int biggestSubnetwork = 0;
-
-        for (IntArrayList component : components) {
-            if (component == ccs.getBiggestComponent())
+        for (int c = 0; c < ccs.getTotalComponents(); c++) {
+            if (c == biggestComponent)
                 continue;
-
-            if (component.size() < minNetworkSizeEdgeKeys) {
-                for (IntCursor cursor : component)
-                    markedEdges += setSubnetworkEdge(cursor.value, weighting, subnetworkFlags);
+            int size = ccs.getComponentSize(c);
+            if (size < minNetworkSizeEdgeKeys) {
                 subnetworks++;
-                biggestSubnetwork = Math.max(biggestSubnetwork, component.size());
+                biggestSubnetwork = Math.max(biggestSubnetwork, size);
             } else {
-                smallestNonSubnetwork = Math.min(smallestNonSubnetwork, component.size());
+                smallestNonSubnetwork = Math.min(smallestNonSubnetwork, size);
             }
         }
 
-        if (minNetworkSizeEdgeKeys > 0) {
-            BitSetIterator iter = singleEdgeComponents.iterator();
-            for (int edgeKey = iter.nextSetBit(); edgeKey >= 0; edgeKey = iter.nextSetBit()) {
+        int markedEdges = 0;
+        for (int edgeKey = 0; edgeKey < ccs.getEdgeKeys(); edgeKey++) {
+            int component = ccs.getComponent(edgeKey);
+            if (component != biggestComponent && ccs.getComponentSize(component) < minNetworkSizeEdgeKeys)
                 markedEdges += setSubnetworkEdge(edgeKey, weighting, subnetworkFlags);
-                subnetworks++;
-                biggestSubnetwork = Math.max(biggestSubnetwork, 1);
-            }
-        } else if (numSingleEdgeComponents > 0) {
-            smallestNonSubnetwork = Math.min(smallestNonSubnetwork, 1);
         }
 
         int allowedMarked = graph.getEdges() / 2;
@@ -171,7 +252,7 @@ public class PrepareRoutingSubnetworks {
                     "The maximum number of subnetwork edges is: " + (2 * allowedMarked));
 
         logger.info(jobName + " - Marked " + subnetworks + " subnetworks (biggest: " + biggestSubnetwork + " edges) -> " +
-                (ccs.getTotalComponents() - subnetworks) + " components(s) remain (smallest: " + smallestNonSubnetwork + ", biggest: " + ccs.getBiggestComponent().size() + " edges)"
+                (ccs.getTotalComponents() - subnetworks) + " components(s) remain (smallest: " + smallestNonSubnetwork + ", biggest: " + biggestComponentSize + " edges)"
                 + ", total marked edges: " + markedEdges + ", took: " + sw.stop().getSeconds() + "s");
         return markedEdges;
     }
@@ -168,6 +168,16 @@ public class BaseGraph implements Graph, Closeable {
         store.setFrozen(true);
     }
 
+    /**
+     * Reverts {@link #freeze()} so edges can be added again. This must only be used if the data that relies on the
+     * frozen graph, like the CH and LM preparations, is discarded.
+     */
+    public synchronized void unfreeze() {
+        if (!isFrozen())
+            throw new IllegalStateException("base graph is not frozen");
+        store.setFrozen(false);
+    }
+
     public synchronized boolean isFrozen() {
         return store.getFrozen();
     }
@@ -171,6 +171,31 @@ public class TurnCostStorage {
         throw new IllegalStateException("Turn cost list for node: " + viaNode + " is longer than expected, max: " + maxEntries);
     }
 
+    /**
+     * Copies the turn costs at the given node from or to the given edge, so that they also apply to the new edge,
+     * e.g. when the edge was split. The entries of the old edge are kept.
+     *
+     * @return the number of copied entries
+     */
+    public int copyTurnCosts(int viaNode, int oldEdge, int newEdge) {
+        int count = 0;
+        int index = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
+        // new entries are added at the front of the list of the node, so they are not visited here
+        while (index != NO_TURN_ENTRY) {
+            long pointer = toPointer(index);
+            int fromEdge = turnCosts.getInt(pointer + TC_FROM);
+            int toEdge = turnCosts.getInt(pointer + TC_TO);
+            int flags = turnCosts.getInt(pointer + TC_FLAGS);
+            index = turnCosts.getInt(pointer + TC_NEXT);
+            if (fromEdge != oldEdge && toEdge != oldEdge)
+                continue;
+            int newIndex = findOrCreateTurnCostEntry(fromEdge == oldEdge ? newEdge : fromEdge, viaNode, toEdge == oldEdge ? newEdge : toEdge);
+            turnCosts.setInt(toPointer(newIndex) + TC_FLAGS, flags);
+            count++;
+        }
+        return count;
+    }
+
     public void sortEdges(IntUnaryOperator getNewEdgeForOldEdge) {
         for (int i = 0; i < turnCostsCount; i++) {
             long pointer = toPointer(i);
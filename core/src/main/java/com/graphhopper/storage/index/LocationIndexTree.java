@@ -94,6 +94,16 @@ public class LocationIndexTree implements LocationIndex {
         return minResolutionInMeter;
     }
 
+    /**
+     * @return the structure of the index including the grid of its tiles, only available after the index was
+     * prepared or loaded
+     */
+    public IndexStructureInfo getIndexStructureInfo() {
+        if (indexStructureInfo == null)
+            throw new IllegalStateException("Call prepareIndex or loadExisting first");
+        return indexStructureInfo;
+    }
+
     /**
      * Minimum width in meter of one tile. Decrease this if you need faster queries, but keep in
      * mind that then queries with different coordinates are more likely to fail.
@@ -56,6 +56,8 @@ public class PathMerger {
     private PathDetailsBuilderFactory pathBuilderFactory;
     private List<String> requestedPathDetails = Collections.emptyList();
     private double favoredHeading = Double.NaN;
+    private long instructionsNanos;
+    private long pathDetailsNanos;
 
     public PathMerger(Graph graph, Weighting weighting) {
         this.graph = graph;
@@ -111,6 +113,7 @@ public class PathMerger {
             fullDistance += path.getDistance();
             fullWeight += path.getWeight();
             if (enableInstructions) {
+                long start = System.nanoTime();
                 InstructionList il = InstructionsFromEdges.calcInstructions(path, graph, weighting, evLookup, tr);
 
                 if (!il.isEmpty()) {
@@ -123,6 +126,7 @@ public class PathMerger {
                         fullInstructions.set(fullInstructions.size() - 1, newInstr);
                     }
                 }
+                instructionsNanos += System.nanoTime() - start;
 
             }
             if (calcPoints || enableInstructions) {
@@ -136,7 +140,9 @@ public class PathMerger {
                 }
 
                 fullPoints.add(tmpPoints);
+                long start = System.nanoTime();
                 responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, origPoints, graph));
+                pathDetailsNanos += System.nanoTime() - start;
                 wayPointIndices.add(origPoints);
                 if (pathIndex == paths.size() - 1)
                     wayPointIndices.add(fullPoints.size() - 1);
@@ -150,7 +156,9 @@ public class PathMerger {
             calcAscendDescend(responsePath, fullPoints);
 
         if (enableInstructions) {
+            long start = System.nanoTime();
             fullInstructions = updateInstructionsWithContext(fullInstructions);
+            instructionsNanos += System.nanoTime() - start;
             responsePath.setInstructions(fullInstructions);
         }
 
@@ -249,4 +257,18 @@ public class PathMerger {
     public void setFavoredHeading(double favoredHeading) {
         this.favoredHeading = favoredHeading;
     }
+
+    /**
+     * @return the time spent for the instructions in all calls of {@link #doWork} so far
+     */
+    public long getInstructionsNanos() {
+        return instructionsNanos;
+    }
+
+    /**
+     * @return the time spent for the path details in all calls of {@link #doWork} so far
+     */
+    public long getPathDetailsNanos() {
+        return pathDetailsNanos;
+    }
 }
\ No newline at end of file
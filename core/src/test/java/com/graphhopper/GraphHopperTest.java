@@ -23,6 +23,8 @@ import com.graphhopper.config.Profile;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.dem.SkadiProvider;
+import com.graphhopper.routing.RouteCache;
+import com.graphhopper.routing.RoutingMetrics;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.AllEdgesIterator;
@@ -827,6 +829,93 @@ public class GraphHopperTest {
         assertEquals(Instruction.FINISH, res.getInstructions().get(1).getSign());
     }
 
+    @Test
+    public void testRoutingMetrics() {
+        final String profile = "profile";
+
+        List<String> recorded = new ArrayList<>();
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("foot_access, foot_priority, foot_average_speed").
+                setProfiles(TestProfiles.accessSpeedAndPriority(profile, "foot")).
+                setStoreOnFlush(true).
+                setRoutingMetrics(new RoutingMetrics() {
+                    @Override
+                    public synchronized void recordTime(String profile, String solver, Stage stage, long nanos) {
+                        assertTrue(nanos >= 0);
+                        recorded.add(profile + "." + solver + "." + stage.getName());
+                    }
+
+                    @Override
+                    public synchronized void recordVisitedNodes(String profile, String solver, long visitedNodes) {
+                        recorded.add(profile + "." + solver + ".visited_nodes:" + visitedNodes);
+                    }
+                });
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(profile));
+        hopper.importOrLoad();
+
+        GHResponse rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(asList("profile.ch.snap", "profile.ch.query_graph", "profile.ch.search", "profile.ch.path_extraction",
+                "profile.ch.instructions", "profile.ch.path_details",
+                "profile.ch.visited_nodes:" + rsp.getHints().getLong("visited_nodes.sum", -1)), recorded);
+
+        recorded.clear();
+        rsp = hopper.route(new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile(profile).
+                putHint(CH.DISABLE, true));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(7, recorded.size());
+        assertEquals("profile.flex.snap", recorded.get(0));
+
+        // failed requests are not recorded
+        recorded.clear();
+        rsp = hopper.route(new GHRequest(0, 0, 1, 1).setProfile(profile));
+        assertTrue(rsp.hasErrors());
+        assertTrue(recorded.isEmpty());
+    }
+
+    @Test
+    public void testRouteCache() {
+        final String profile = "profile";
+
+        GraphHopper hopper = new GraphHopper().init(new GraphHopperConfig().
+                        putObject("datareader.file", MONACO).
+                        putObject("graph.encoded_values", "car_access, car_average_speed").
+                        putObject("import.osm.ignored_highways", "").
+                        putObject("routing.route_cache.max_bytes", 1_000_000).
+                        setProfiles(List.of(TestProfiles.accessAndSpeed(profile, "car"))).
+                        setCHProfiles(List.of(new CHProfile(profile)))).
+                setGraphHopperLocation(GH_LOCATION);
+        hopper.importOrLoad();
+        RouteCache routeCache = hopper.getRouteCache();
+
+        GHResponse rsp = hopper.route(new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile(profile));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(1, routeCache.getSize());
+        assertEquals(0, routeCache.getHits());
+
+        // slightly different coordinates that snap to the same positions lead to a cache hit
+        GHResponse cachedRsp = hopper.route(new GHRequest(43.7307291, 7.4213501, 43.7276971, 7.4191991).setProfile(profile));
+        assertEquals(1, routeCache.getHits());
+        assertTrue(cachedRsp.getDebugInfo().contains("route cache hit"), cachedRsp.getDebugInfo());
+        assertSame(rsp.getBest(), cachedRsp.getBest());
+
+        // different parameters are not mixed up
+        GHResponse noInstructions = hopper.route(new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile(profile).
+                putHint(Routing.INSTRUCTIONS, false));
+        assertEquals(1, routeCache.getHits());
+        assertThrows(IllegalArgumentException.class, () -> noInstructions.getBest().getInstructions());
+        assertEquals(2, routeCache.getSize());
+
+        // flexible requests are not cached
+        hopper.route(new GHRequest(43.730729, 7.42135, 43.727697, 7.419199).setProfile(profile).putHint(CH.DISABLE, true));
+        assertEquals(2, routeCache.getSize());
+
+        hopper.close();
+        assertEquals(0, routeCache.getSize());
+    }
+
     @Test
     public void testMonacoPathDetails() {
         final String profile = "profile";
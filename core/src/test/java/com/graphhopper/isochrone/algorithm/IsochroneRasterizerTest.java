@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.isochrone.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IsochroneRasterizerTest {
+
+    @Test
+    public void testRasterize() {
+        IsochroneRasterizer rasterizer = new IsochroneRasterizer(0.1);
+        // a horizontal segment from west to east and a vertical one from north to south, both starting at zero
+        rasterizer.addSegment(50, 10, 0, 50, 11, 100);
+        rasterizer.addSegment(50, 10, 0, 49, 10, 50);
+        IsochroneRasterizer.Raster raster = rasterizer.rasterize(1000, 1000);
+        assertEquals(11, raster.width);
+        assertEquals(11, raster.height);
+        assertEquals(10, raster.minLon, 1.e-9);
+        assertEquals(50, raster.maxLat, 1.e-9);
+
+        assertEquals(0, raster.getValue(0, 0), 1.e-3);
+        // the values are interpolated along the segments
+        assertEquals(50, raster.getValue(0, 5), 5);
+        assertEquals(25, raster.getValue(5, 0), 2.5);
+        // the smallest value wins
+        assertTrue(raster.getValue(0, 10) > 90);
+        // cells that are not crossed are not reached
+        assertTrue(Float.isNaN(raster.getValue(5, 5)));
+        assertTrue(Float.isNaN(raster.getValue(10, 10)));
+    }
+
+    @Test
+    public void testLimit() {
+        IsochroneRasterizer rasterizer = new IsochroneRasterizer(0.1);
+        rasterizer.addSegment(50, 10, 0, 50, 11, 100);
+        rasterizer.addSegment(50, 11, 100, 50, 12, 200);
+        // the first segment is cut in the middle and the second is not included at all
+        IsochroneRasterizer.Raster raster = rasterizer.rasterize(50, 1000);
+        assertEquals(6, raster.width);
+        assertEquals(1, raster.height);
+        for (int col = 0; col < raster.width; col++)
+            assertTrue(raster.getValue(0, col) <= 50);
+
+        assertThrows(IllegalArgumentException.class, () -> rasterizer.rasterize(1000, 10));
+        assertThrows(IllegalArgumentException.class, () -> new IsochroneRasterizer(0.1).rasterize(1000, 10));
+    }
+
+    @Test
+    public void testTinyCells() {
+        // the number of cells per row does not fit into an int
+        IsochroneRasterizer rasterizer = new IsochroneRasterizer(1.e-12);
+        rasterizer.addSegment(50, 10, 0, 50, 11, 100);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> rasterizer.rasterize(1000, 10_000_000));
+        assertTrue(ex.getMessage().contains("the maximum is 10000000"), ex.getMessage());
+        rasterizer.addSegment(50, 10, 0, 51, 10, 100);
+        assertThrows(IllegalArgumentException.class, () -> rasterizer.rasterize(1000, Integer.MAX_VALUE));
+
+        assertThrows(IllegalArgumentException.class, () -> new IsochroneRasterizer(0));
+        assertThrows(IllegalArgumentException.class, () -> new IsochroneRasterizer(-1));
+        assertThrows(IllegalArgumentException.class, () -> new IsochroneRasterizer(Double.NaN));
+    }
+
+    @Test
+    public void testManyBands() {
+        // more rows than bands, every row must be filled exactly where the segment is
+        IsochroneRasterizer rasterizer = new IsochroneRasterizer(0.001);
+        rasterizer.addSegment(50, 10, 0, 49, 10, 1000);
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            IsochroneRasterizer.Raster raster = rasterizer.rasterize(2000, 10_000, executorService, 7);
+            assertEquals(1, raster.width);
+            assertEquals(1001, raster.height);
+            for (int row = 0; row < raster.height; row++)
+                assertEquals(row, raster.getValue(row, 0), 1.5);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInterrupted() {
+        IsochroneRasterizer rasterizer = new IsochroneRasterizer(0.1);
+        rasterizer.addSegment(50, 10, 0, 50, 11, 100);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, () -> rasterizer.rasterize(1000, 1000));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
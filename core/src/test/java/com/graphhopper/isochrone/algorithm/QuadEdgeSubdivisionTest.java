@@ -3,11 +3,15 @@ package com.graphhopper.isochrone.algorithm;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.triangulate.IncrementalDelaunayTriangulator;
 import org.locationtech.jts.triangulate.quadedge.QuadEdge;
 import org.locationtech.jts.triangulate.quadedge.QuadEdgeSubdivision;
 import org.locationtech.jts.triangulate.quadedge.Vertex;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class QuadEdgeSubdivisionTest {
@@ -69,6 +73,12 @@ public class QuadEdgeSubdivisionTest {
 
         Geometry geometry = contourBuilder.computeIsoline(0.5, triangulation.getEdges());
         assertEquals("MULTIPOLYGON (((1 0, 0.5 -0.5, 1 -2, 1.5 -0.5, 1 0)))", geometry.toString());
+
+        List<Double> zs = Arrays.asList(0.25, 0.5, 0.75);
+        List<MultiPolygon> isolines = contourBuilder.computeIsolines(zs, triangulation.getEdges());
+        assertEquals(3, isolines.size());
+        for (int i = 0; i < zs.size(); i++)
+            assertEquals(contourBuilder.computeIsoline(zs.get(i), triangulation.getEdges()).toString(), isolines.get(i).toString());
     }
 
     @Test
@@ -24,7 +24,9 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.graphhopper.json.Statement.If;
 import static com.graphhopper.json.Statement.Op.MULTIPLY;
@@ -155,6 +157,20 @@ public class ShortestPathTreeTest {
         assertArrayEquals(new int[]{1, 7}, isochroneEdges.stream().mapToInt(l -> l.node).sorted().toArray());
     }
 
+    @Test
+    public void testInterrupted() {
+        ShortestPathTree instance = new ShortestPathTree(graph, createWeighting(), false, TraversalMode.NODE_BASED);
+        instance.setTimeLimit(26_000);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, () -> instance.search(0, l -> {
+            }));
+        } finally {
+            // clear the flag
+            Thread.interrupted();
+        }
+    }
+
     @Test
     public void testSPT26Seconds() {
         List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
@@ -190,6 +206,39 @@ public class ShortestPathTreeTest {
         );
     }
 
+    @Test
+    public void testMultipleSources() {
+        int[] sources = {0, 7, 0};
+        Map<Integer, ShortestPathTree.IsoLabel> result = new HashMap<>();
+        ShortestPathTree instance = new ShortestPathTree(graph, createWeighting(), false, TraversalMode.NODE_BASED);
+        instance.setTimeLimit(Double.MAX_VALUE);
+        instance.search(sources, l -> assertNull(result.put(l.node, l)));
+        assertEquals(9, result.size());
+
+        // every node is reached from the source with the shortest time
+        List<Map<Integer, Long>> timesPerSource = new ArrayList<>();
+        for (int source : sources) {
+            Map<Integer, Long> times = new HashMap<>();
+            ShortestPathTree single = new ShortestPathTree(graph, createWeighting(), false, TraversalMode.NODE_BASED);
+            single.setTimeLimit(Double.MAX_VALUE);
+            single.search(source, l -> times.put(l.node, l.time));
+            timesPerSource.add(times);
+        }
+        for (ShortestPathTree.IsoLabel label : result.values()) {
+            long minTime = timesPerSource.stream().mapToLong(t -> t.getOrDefault(label.node, Long.MAX_VALUE)).min().getAsLong();
+            assertEquals(minTime, label.time, "node " + label.node);
+            assertEquals(label.time, timesPerSource.get(label.source).get(label.node));
+            // the duplicate source is ignored
+            assertNotEquals(2, label.source);
+        }
+        assertEquals(0, result.get(0).source);
+        assertEquals(1, result.get(7).source);
+        assertEquals(0, result.get(7).time);
+        assertEquals(0, result.get(4).source);
+        assertEquals(1, result.get(5).source);
+        assertEquals(1, result.get(6).source);
+    }
+
     @Test
     public void testFerry() {
         AllEdgesIterator allEdges = graph.getAllEdges();
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.util.shapes.BBox;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -56,6 +57,13 @@ public class MultiSourceElevationProviderTest {
         assertEquals(2, instance.getEle(-56.0001, 0), .1);
     }
 
+    @Test
+    public void testPrefetchTilesIsDelegated() {
+        instance = new MultiSourceElevationProvider();
+        // the tiles are prefetched by the underlying providers, this provider submits none itself
+        assertEquals(0, instance.prefetchTiles(new BBox(1.4, 1.8, 42.4, 42.7)));
+    }
+
     /*
     Enabling this test requires you to change the pom.xml and increase the memory limit for running tests.
     Change to: <argLine>-Xmx500m -Xms500m</argLine>
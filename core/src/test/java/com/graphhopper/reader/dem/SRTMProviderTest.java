@@ -17,14 +17,17 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.util.shapes.BBox;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 /**
  * @author Peter Karich
@@ -99,6 +102,31 @@ public class SRTMProviderTest {
         assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
     }
 
+    @Test
+    public void testMaxCachedTiles() {
+        instance = new SRTMProvider("./files/");
+        instance.setMaxCachedTiles(1);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+            assertEquals(1678, instance.getEle(-28.88316, -71.070557), 1e-1);
+        }
+        instance.release();
+        assertFalse(new File("./files/dem" + instance.calcIntKey(49.968651, 11.574869)).exists());
+    }
+
+    @Test
+    public void testPrefetch() {
+        instance = new SRTMProvider("./files/");
+        instance.setPrefetchThreads(2);
+        instance.prefetch(new BBox(11.55, 11.6, 49.95, 49.99));
+        instance.prefetch(new BBox(-71.1, -71.0, -28.9, -28.8));
+        assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        assertEquals(330, instance.getEle(49.958233, 11.558647), 1e-1);
+        assertEquals(1678, instance.getEle(-28.88316, -71.070557), 1e-1);
+        instance.release();
+        assertFalse(new File("./files/dem" + instance.calcIntKey(-28.88316, -71.070557)).exists());
+    }
+
     @Disabled
     @Test
     public void testGetEle() {
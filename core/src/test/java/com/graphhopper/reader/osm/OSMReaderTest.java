@@ -46,10 +46,9 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Supplier;
 
 import static com.graphhopper.routing.util.TransportationMode.CAR;
 import static com.graphhopper.util.GHUtility.readCountries;
@@ -701,6 +700,130 @@ public class OSMReaderTest {
                 edge.fetchWayGeometry(FetchMode.ALL));
     }
 
+    @Test
+    public void testSinglePass() {
+        String andorra = GraphHopperTest.DIR + "/andorra.osm.pbf";
+        GraphHopper twoPass = createCarHopper(andorra, dir + "/two-pass", false).importOrLoad();
+        GraphHopper singlePass = createCarHopper(andorra, dir + "/single-pass", true).importOrLoad();
+        BaseGraph expected = twoPass.getBaseGraph();
+        BaseGraph graph = singlePass.getBaseGraph();
+        assertEquals(expected.getNodes(), graph.getNodes());
+        assertEquals(expected.getEdges(), graph.getEdges());
+        assertEquals(expected.getTurnCostStorage().getTurnCostsCount(), graph.getTurnCostStorage().getTurnCostsCount());
+        for (int edge = 0; edge < graph.getEdges(); edge += 97) {
+            EdgeIteratorState expectedEdge = expected.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertEquals(expectedEdge.getName(), edgeState.getName());
+            assertEquals(expectedEdge.getDistance(), edgeState.getDistance(), 1.e-6);
+            assertEquals(expectedEdge.fetchWayGeometry(FetchMode.ALL), edgeState.fetchWayGeometry(FetchMode.ALL));
+        }
+    }
+
+    @Test
+    public void testSinglePassBrokenFile() throws IOException {
+        File location = new File(dir + "/single-pass-broken");
+        location.mkdirs();
+        File osmFile = new File(location, "broken.osm");
+        Files.writeString(osmFile.toPath(), "<osm><node id=\"1\" lat=\"42.5\" lon=\"1.5\"></osm>");
+        GraphHopper hopper = createCarHopper(osmFile.getAbsolutePath(), location.getAbsolutePath(), true);
+        Exception e = assertThrows(RuntimeException.class, hopper::importOrLoad);
+        // the exception of the reader is not hidden by the spill buffer
+        assertFalse(e.getMessage() != null && e.getMessage().contains("spill buffer"), e.getMessage());
+        String[] spillFiles = location.list((d, name) -> name.startsWith("osm_spill_"));
+        assertNotNull(spillFiles);
+        assertEquals(0, spillFiles.length);
+    }
+
+    private GraphHopper createCarHopper(String osmFile, String location, boolean singlePass) {
+        GraphHopper hopper = new GraphHopper().
+                setOSMFile(osmFile).
+                setGraphHopperLocation(location).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("car").setTurnCostsConfig(new TurnCostsConfig(List.of("motorcar", "motor_vehicle")))).
+                setStoreOnFlush(false);
+        hopper.getReaderConfig().setSinglePass(singlePass);
+        return hopper;
+    }
+
+    @Test
+    public void testApplyChanges() {
+        Supplier<GraphHopper> hopperSupplier = () -> {
+            GraphHopper hopper = new GraphHopper().
+                    setOSMFile(getClass().getResource("test-osm-changes.xml").getFile()).
+                    setGraphHopperLocation(dir).
+                    setEncodedValuesString("car_access, car_average_speed, osm_way_id").
+                    setProfiles(TestProfiles.accessAndSpeed("car")).
+                    setMinNetworkSize(0);
+            hopper.getReaderConfig().setStoreOSMNodes(true);
+            return hopper;
+        };
+        GraphHopper hopper = hopperSupplier.get().importOrLoad();
+        assertEquals(4, hopper.getBaseGraph().getNodes());
+        assertEquals(3, hopper.getBaseGraph().getEdges());
+        hopper.close();
+
+        hopperSupplier.get().importChangesAndClose(getClass().getResource("test-osm-changes.osc").getFile());
+
+        hopper = hopperSupplier.get().importOrLoad();
+        BaseGraph graph = hopper.getBaseGraph();
+        // way 100 was split at node 2 where the new way 103 is connected
+        assertEquals(6, graph.getNodes());
+        assertEquals(6, graph.getEdges());
+        BooleanEncodedValue accessEnc = hopper.getEncodingManager().getBooleanEncodedValue(VehicleAccess.key("car"));
+        IntEncodedValue osmWayIdEnc = hopper.getEncodingManager().getIntEncodedValue(OSMWayID.KEY);
+        Map<Integer, List<String>> accessibleEdgesByWay = new HashMap<>();
+        int disabledEdges = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (iter.get(accessEnc) || iter.getReverse(accessEnc))
+                accessibleEdgesByWay.computeIfAbsent(iter.get(osmWayIdEnc), k -> new ArrayList<>()).add(iter.getName());
+            else {
+                // the edge of the deleted way and the edge that was split are disabled, so all their flags are reset
+                assertEquals(0, iter.get(osmWayIdEnc));
+                disabledEdges++;
+            }
+        }
+        assertEquals(2, disabledEdges);
+        assertEquals(Map.of(
+                100, List.of("first", "first"),
+                101, List.of("second renamed"),
+                103, List.of("fourth")), accessibleEdgesByWay);
+        assertTrue(hopper.getProperties().get("datareader.changes.date").length() > 0);
+
+        GHResponse rsp = hopper.route(new GHRequest(50.000, 10.000, 49.999, 10.001).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        assertEquals(2, rsp.getBest().getInstructions().size() - 1);
+    }
+
+    @Test
+    public void testApplyChangesKeepsTurnRestrictionsOfSplitEdges() {
+        Supplier<GraphHopper> hopperSupplier = () -> {
+            GraphHopper hopper = new GraphHopper().
+                    setOSMFile(getClass().getResource("test-osm-changes-restriction.xml").getFile()).
+                    setGraphHopperLocation(dir).
+                    setEncodedValuesString("car_access, car_average_speed, osm_way_id").
+                    setProfiles(TestProfiles.accessAndSpeed("car").setTurnCostsConfig(new TurnCostsConfig(List.of("motorcar", "motor_vehicle")))).
+                    setMinNetworkSize(0);
+            hopper.getReaderConfig().setStoreOSMNodes(true);
+            return hopper;
+        };
+        GraphHopper hopper = hopperSupplier.get().importOrLoad();
+        // the left turn from way 100 into way 101 is forbidden
+        GHRequest request = new GHRequest(50.000, 10.000, 50.001, 10.002).setProfile("car");
+        assertTrue(hopper.route(request).hasErrors());
+        hopper.close();
+
+        hopperSupplier.get().importChangesAndClose(getClass().getResource("test-osm-changes.osc").getFile());
+
+        hopper = hopperSupplier.get().importOrLoad();
+        // way 100 was split at node 2, but the restriction still applies to the piece that ends at node 3
+        assertEquals(6, hopper.getBaseGraph().getEdges());
+        assertTrue(hopper.route(request).hasErrors());
+        GHResponse rsp = hopper.route(new GHRequest(50.000, 10.000, 49.999, 10.001).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        hopper.close();
+    }
+
     /**
      * Tests the combination of different turn cost flags by different encoders.
      */
@@ -0,0 +1,88 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+
+    private static GHResponse createResponse(int points) {
+        PointList pointList = new PointList(points, false);
+        for (int i = 0; i < points; i++)
+            pointList.add(50 + i * 0.001, 10);
+        ResponsePath path = new ResponsePath();
+        path.setPoints(pointList);
+        path.setDistance(points);
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().putObject("visited_nodes.sum", 42);
+        return rsp;
+    }
+
+    @Test
+    void getAndPut() {
+        RouteCache cache = new RouteCache(1_000_000);
+        assertNull(cache.get("a"));
+        GHResponse rsp = createResponse(10);
+        cache.put("a", rsp);
+        GHResponse cached = cache.get("a");
+        assertNotSame(rsp, cached);
+        assertSame(rsp.getBest(), cached.getBest());
+        assertEquals(42, cached.getHints().getInt("visited_nodes.sum", 0));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        // the hints of the returned responses can be changed without affecting the cache
+        cached.getHints().putObject("visited_nodes.sum", 0);
+        assertEquals(42, cache.get("a").getHints().getInt("visited_nodes.sum", 0));
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        long bytes = RouteCache.estimateBytes(createResponse(100));
+        RouteCache cache = new RouteCache(3 * bytes);
+        cache.put("a", createResponse(100));
+        cache.put("b", createResponse(100));
+        cache.put("c", createResponse(100));
+        assertEquals(3, cache.getSize());
+        // now 'b' is the least recently used entry
+        assertNotNull(cache.get("a"));
+        cache.put("d", createResponse(100));
+        assertEquals(3, cache.getSize());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(3 * bytes, cache.getBytes());
+
+        // a large entry replaces multiple small ones and responses larger than the cache are not stored
+        cache.put("e", createResponse(250));
+        assertEquals(1, cache.getSize());
+        cache.put("f", createResponse(1000));
+        assertNull(cache.get("f"));
+        assertNotNull(cache.get("e"));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+}
@@ -20,6 +20,7 @@ package com.graphhopper.routing.subnetwork;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.procedures.IntProcedure;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
 import com.graphhopper.routing.ev.EncodedValue;
@@ -257,6 +258,27 @@ class EdgeBasedTarjanSCCTest {
         compareResults(g, seed, implicit, explicit);
     }
 
+    @RepeatedTest(20)
+    public void compactVsExplicit() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(g, rnd, 500, 2, true, speedEnc, 60d, 0.7, 0);
+        ConnectedComponents explicit = EdgeBasedTarjanSCC.findComponents(g, fwdAccessFilter, false);
+        CompactEdgeBasedTarjanSCC.EdgeKeyComponents compact = CompactEdgeBasedTarjanSCC.findComponents(g, fwdAccessFilter);
+        assertEquals(explicit.getEdgeKeys(), compact.getEdgeKeys(), "seed: " + seed);
+        assertEquals(explicit.getTotalComponents(), compact.getTotalComponents(), "seed: " + seed);
+        for (IntArrayList component : explicit.getComponents()) {
+            int c = compact.getComponent(component.get(0));
+            assertEquals(component.size(), compact.getComponentSize(c), "seed: " + seed);
+            for (IntCursor edgeKey : component)
+                assertEquals(c, compact.getComponent(edgeKey.value), "seed: " + seed);
+        }
+        explicit.getSingleEdgeComponents().asIntLookupContainer().forEach((IntProcedure) edgeKey ->
+                assertEquals(1, compact.getComponentSize(compact.getComponent(edgeKey)), "seed: " + seed));
+        int biggest = compact.getBiggestComponent();
+        assertEquals(explicit.getBiggestComponent().size(), biggest < 0 ? 0 : compact.getComponentSize(biggest), "seed: " + seed);
+    }
+
     @Test
     public void withStartEdges_simple() {
         // 0 - 1   4 - 5 - 6 - 7
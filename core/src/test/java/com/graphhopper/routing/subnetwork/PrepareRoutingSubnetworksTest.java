@@ -169,6 +169,39 @@ public class PrepareRoutingSubnetworksTest {
         assertEquals(IntArrayList.from(7, 8, 9), getSubnetworkEdges(g, subnetworkEnc));
     }
 
+    @Test
+    public void testPrepareSubnetworks_equivalentJobs() {
+        DecimalEncodedValue carSpeedEnc = new DecimalEncodedValueImpl("car_speed", 5, 5, true);
+        BooleanEncodedValue carSubnetworkEnc = Subnetwork.create("car");
+        DecimalEncodedValue fastCarSpeedEnc = new DecimalEncodedValueImpl("car_fast_speed", 5, 5, true);
+        BooleanEncodedValue fastCarSubnetworkEnc = Subnetwork.create("car_fast");
+        BooleanEncodedValue turnCarSubnetworkEnc = Subnetwork.create("car_turn");
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 1);
+        EncodingManager em = EncodingManager.start()
+                .add(carSpeedEnc).add(carSubnetworkEnc)
+                .add(fastCarSpeedEnc).add(fastCarSubnetworkEnc)
+                .add(turnCarSubnetworkEnc).addTurnCostEncodedValue(turnCostEnc)
+                .build();
+        BaseGraph g = createSubnetworkTestStorage(em, carSpeedEnc, fastCarSpeedEnc);
+        // the speeds differ, but the same edges are accessible
+        GHUtility.getEdge(g, 7, 8).set(fastCarSpeedEnc, 20, 20);
+        GHUtility.getEdge(g, 3, 4).set(carSpeedEnc, 10, 10).set(fastCarSpeedEnc, 20, 20);
+        // with turn restrictions the upper network is not reachable anymore
+        g.getTurnCostStorage().set(turnCostEnc, 0, 4, 7, Double.POSITIVE_INFINITY);
+        g.getTurnCostStorage().set(turnCostEnc, 0, 4, 9, Double.POSITIVE_INFINITY);
+        List<PrepareRoutingSubnetworks.PrepareJob> prepareJobs = Arrays.asList(
+                createJob(carSubnetworkEnc, carSpeedEnc),
+                createJob(turnCarSubnetworkEnc, carSpeedEnc, turnCostEnc, g.getTurnCostStorage(), 0),
+                createJob(fastCarSubnetworkEnc, fastCarSpeedEnc)
+        );
+        PrepareRoutingSubnetworks instance = new PrepareRoutingSubnetworks(g, prepareJobs).setMinNetworkSize(4);
+        assertEquals(Arrays.asList(IntArrayList.from(0, 2), IntArrayList.from(1)), instance.findEquivalentJobs());
+        assertEquals(3, instance.doWork());
+        assertEquals(IntArrayList.from(), getSubnetworkEdges(g, carSubnetworkEnc));
+        assertEquals(IntArrayList.from(), getSubnetworkEdges(g, fastCarSubnetworkEnc));
+        assertEquals(IntArrayList.from(7, 8, 9), getSubnetworkEdges(g, turnCarSubnetworkEnc));
+    }
+
     private BaseGraph createSubnetworkTestStorageWithOneWays(EncodingManager em, DecimalEncodedValue speedEnc) {
         BaseGraph g = new BaseGraph.Builder(em).create();
         // 0 - 1 - 2 - 3 - 4 <- 5 - 6
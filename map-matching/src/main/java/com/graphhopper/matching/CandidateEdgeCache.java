@@ -0,0 +1,192 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.storage.index.IndexStructureInfo;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.shapes.BBox;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Caches the edges of the tiles of the location index, so that the candidate edges of observations that are close to
+ * each other are looked up only once. This helps within a track, where consecutive observations usually fall into the
+ * same tile, for the repeated matching of the same window in a {@link MapMatchingSession} and, if the cache is shared,
+ * for tracks that drive the same roads. Every cell of the cache is exactly one tile of the lowest level of the index,
+ * so a cell contains the same edges that the index visits for a query within this tile.
+ * <p>
+ * At most maxCells cells are kept. The cells are split into segments with their own lock, so that threads that match
+ * in parallel rarely wait for each other, and every segment removes its least recently used cells first. The cache
+ * belongs to a location index and is cleared when it is used with another one, e.g. after the graph was reloaded.
+ * This class is thread-safe, so the same cache can be used by multiple {@link MapMatching} instances.
+ */
+public class CandidateEdgeCache {
+    private final int segmentBits;
+    private final Segment[] segments;
+    private volatile Grid grid;
+
+    public CandidateEdgeCache(int maxCells) {
+        if (maxCells < 1)
+            throw new IllegalArgumentException("maxCells must be positive but was " + maxCells);
+        // up to 16 segments, but every segment needs at least one cell
+        segmentBits = Math.min(4, 31 - Integer.numberOfLeadingZeros(maxCells));
+        segments = new Segment[1 << segmentBits];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment(maxCells / segments.length);
+    }
+
+    /**
+     * Calls the given consumer for every edge of the location index that might intersect the given bounding box.
+     * Unlike {@link LocationIndexTree#query} the same edge can be visited multiple times.
+     */
+    public void query(LocationIndexTree locationIndex, BBox bbox, IntConsumer consumer) {
+        Grid grid = getGrid(locationIndex);
+        int minX = grid.x(bbox.minLon), maxX = grid.x(bbox.maxLon);
+        int minY = grid.y(bbox.minLat), maxY = grid.y(bbox.maxLat);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int edge : getCell(grid, x, y))
+                    consumer.accept(edge);
+            }
+        }
+    }
+
+    private Grid getGrid(LocationIndexTree locationIndex) {
+        Grid grid = this.grid;
+        if (grid != null && grid.locationIndex == locationIndex)
+            return grid;
+        synchronized (this) {
+            if (this.grid == null || this.grid.locationIndex != locationIndex) {
+                this.grid = new Grid(locationIndex);
+                clear();
+            }
+            return this.grid;
+        }
+    }
+
+    private int[] getCell(Grid grid, int x, int y) {
+        long key = ((long) x << 32) | (y & 0xFFFF_FFFFL);
+        Segment segment = segments[segmentBits == 0 ? 0 : (Long.hashCode(key) * 0x9E3779B9) >>> (32 - segmentBits)];
+        synchronized (segment) {
+            int[] edges = segment.get(key);
+            if (edges != null)
+                return edges;
+        }
+        // the index is queried without the lock, so two threads might query the same cell, which does no harm
+        IntArrayList list = new IntArrayList();
+        grid.locationIndex.query(grid.createTileFilter(x, y), list::add);
+        int[] edges = list.toArray();
+        Arrays.sort(edges);
+        synchronized (segment) {
+            // do not fill the cache with cells of an old index
+            if (this.grid == grid)
+                segment.put(key, edges);
+        }
+        return edges;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static class Segment extends LinkedHashMap<Long, int[]> {
+        private final int maxCells;
+
+        Segment(int maxCells) {
+            // in access order, so the least recently used cell comes first
+            super(16, 0.75f, true);
+            this.maxCells = maxCells;
+        }
+
+        @Override
+        public int[] put(Long key, int[] value) {
+            int[] old = super.put(key, value);
+            Iterator<int[]> iter = values().iterator();
+            while (size() > maxCells) {
+                iter.next();
+                iter.remove();
+            }
+            return old;
+        }
+    }
+
+    /**
+     * The tiles of the lowest level of the location index.
+     */
+    private static class Grid {
+        final LocationIndexTree locationIndex;
+        final BBox bounds;
+        final double deltaLat, deltaLon;
+
+        Grid(LocationIndexTree locationIndex) {
+            IndexStructureInfo info = locationIndex.getIndexStructureInfo();
+            this.locationIndex = locationIndex;
+            this.bounds = info.getBounds();
+            this.deltaLat = info.getDeltaLat();
+            this.deltaLon = info.getDeltaLon();
+        }
+
+        int x(double lon) {
+            return (int) Math.floor((lon - bounds.minLon) / deltaLon);
+        }
+
+        int y(double lat) {
+            return (int) Math.floor((lat - bounds.minLat) / deltaLat);
+        }
+
+        /**
+         * Accepts only the tiles that contain the center of the given cell, i.e. the tile that is the cell and the
+         * tiles of the higher levels above it. The tile boundaries are half a tile away from the center, so rounding
+         * errors of the tile boundaries do not matter.
+         */
+        LocationIndex.TileFilter createTileFilter(int x, int y) {
+            double lat = bounds.minLat + (y + 0.5) * deltaLat;
+            double lon = bounds.minLon + (x + 0.5) * deltaLon;
+            return new LocationIndex.TileFilter() {
+                @Override
+                public boolean acceptAll(BBox tile) {
+                    return false;
+                }
+
+                @Override
+                public boolean acceptPartially(BBox tile) {
+                    return tile.contains(lat, lon);
+                }
+            };
+        }
+    }
+}
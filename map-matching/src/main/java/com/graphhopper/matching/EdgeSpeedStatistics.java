@@ -0,0 +1,214 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Collects how often the edges were traversed by the matched tracks and a histogram of the observed speeds per edge,
+ * e.g. to derive historical speeds. The speed on an edge is calculated from the times of the observations before
+ * and after it and the distance between them along the matched edges. Edges that are not traversed by any track do
+ * not need memory.
+ * <p>
+ * The statistics are written in a simple binary format with big-endian ints: the width of the speed buckets in km/h,
+ * the number of buckets and the number of edges. Then follows for every edge its key (which contains the direction,
+ * see {@link EdgeIteratorState#getEdgeKey()}), the number of traversals and the number of speeds in every bucket. The
+ * last bucket contains all larger speeds.
+ * <p>
+ * This class is thread-safe, so multiple tracks can be matched and added in parallel.
+ */
+public class EdgeSpeedStatistics {
+    private final DistanceCalc distanceCalc = DistancePlaneProjection.DIST_PLANE;
+    private final int bucketWidthKmh;
+    private final int buckets;
+    // the number of traversals followed by the speed histogram per edge key
+    private final GHIntObjectHashMap<int[]> stats = new GHIntObjectHashMap<>();
+
+    public EdgeSpeedStatistics(int bucketWidthKmh, int buckets) {
+        if (bucketWidthKmh < 1 || buckets < 1)
+            throw new IllegalArgumentException("bucket width and number of buckets must be positive");
+        this.bucketWidthKmh = bucketWidthKmh;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Adds the edges of the given result. Only the observations with a time are used to calculate the speeds.
+     */
+    public void add(MatchResult result) {
+        List<EdgeMatch> edgeMatches = result.getEdgeMatches();
+        int size = edgeMatches.size();
+        // the distance from the start of the matched edges to the start of every edge
+        double[] start = new double[size + 1];
+        for (int i = 0; i < size; i++)
+            start[i + 1] = start[i] + edgeMatches.get(i).getEdgeState().getDistance();
+
+        DoubleArrayList positions = new DoubleArrayList();
+        LongArrayList times = new LongArrayList();
+        for (int i = 0; i < size; i++) {
+            EdgeMatch edgeMatch = edgeMatches.get(i);
+            for (State state : edgeMatch.getStates()) {
+                if (state.getEntry().getTime() < 0)
+                    continue;
+                positions.add(start[i] + calcPositionOnEdge(edgeMatch.getEdgeState(), state.getSnap().getSnappedPoint()));
+                times.add(state.getEntry().getTime());
+            }
+        }
+
+        // the distance and the time on every edge between two observations
+        double[] distances = new double[size];
+        double[] seconds = new double[size];
+        // the edge that contains the previous observation, the positions are mostly increasing, so we do not need to
+        // search all edges for every observation
+        int edge = 0;
+        for (int j = 1; j < positions.size(); j++) {
+            double from = positions.get(j - 1), to = positions.get(j);
+            while (edge > 0 && start[edge] > from)
+                edge--;
+            while (edge < size - 1 && start[edge + 1] <= from)
+                edge++;
+            double deltaSeconds = (times.get(j) - times.get(j - 1)) / 1000.0;
+            // skip observations without progress, e.g. from the inaccuracy of the positions on the same edge
+            if (deltaSeconds <= 0 || to <= from)
+                continue;
+            double speed = (to - from) / deltaSeconds;
+            for (int i = edge; i < size && start[i] < to; i++) {
+                double overlap = Math.min(to, start[i + 1]) - Math.max(from, start[i]);
+                if (overlap > 0) {
+                    distances[i] += overlap;
+                    seconds[i] += overlap / speed;
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < size; i++) {
+                int edgeKey = edgeMatches.get(i).getEdgeState().getEdgeKey();
+                int[] values = stats.get(edgeKey);
+                if (values == null) {
+                    values = new int[1 + buckets];
+                    stats.put(edgeKey, values);
+                }
+                values[0]++;
+                if (seconds[i] > 0)
+                    values[1 + getBucket(distances[i] / seconds[i] * 3.6)]++;
+            }
+        }
+    }
+
+    /**
+     * @return the distance from the start of the given edge to the position of the given point on it
+     */
+    private double calcPositionOnEdge(EdgeIteratorState edge, GHPoint point) {
+        PointList points = edge.fetchWayGeometry(FetchMode.ALL);
+        double bestDistance = Double.MAX_VALUE;
+        double bestPosition = 0;
+        double position = 0;
+        for (int i = 1; i < points.size(); i++) {
+            double lat1 = points.getLat(i - 1), lon1 = points.getLon(i - 1), lat2 = points.getLat(i), lon2 = points.getLon(i);
+            double lat = lat1, lon = lon1;
+            if (distanceCalc.validEdgeDistance(point.lat, point.lon, lat1, lon1, lat2, lon2)) {
+                GHPoint crossing = distanceCalc.calcCrossingPointToEdge(point.lat, point.lon, lat1, lon1, lat2, lon2);
+                lat = crossing.lat;
+                lon = crossing.lon;
+            } else if (distanceCalc.calcNormalizedDist(point.lat, point.lon, lat2, lon2) < distanceCalc.calcNormalizedDist(point.lat, point.lon, lat1, lon1)) {
+                lat = lat2;
+                lon = lon2;
+            }
+            double distance = distanceCalc.calcNormalizedDist(point.lat, point.lon, lat, lon);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestPosition = position + distanceCalc.calcDist(lat1, lon1, lat, lon);
+            }
+            position += distanceCalc.calcDist(lat1, lon1, lat2, lon2);
+        }
+        // the geometry and the distance of the edge can differ slightly
+        return position > 0 ? bestPosition * edge.getDistance() / position : 0;
+    }
+
+    private int getBucket(double speedKmh) {
+        return Math.min(buckets - 1, (int) (speedKmh / bucketWidthKmh));
+    }
+
+    public synchronized int getTraversals(int edgeKey) {
+        int[] values = stats.get(edgeKey);
+        return values == null ? 0 : values[0];
+    }
+
+    /**
+     * @return the number of speeds per bucket of the given edge, the bucket i contains the speeds from
+     * i * bucketWidthKmh to (i + 1) * bucketWidthKmh
+     */
+    public synchronized int[] getSpeedHistogram(int edgeKey) {
+        int[] histogram = new int[buckets];
+        int[] values = stats.get(edgeKey);
+        if (values != null)
+            System.arraycopy(values, 1, histogram, 0, buckets);
+        return histogram;
+    }
+
+    /**
+     * @return the number of edges that were traversed at least once
+     */
+    public synchronized int getEdges() {
+        return stats.size();
+    }
+
+    public int getBucketWidthKmh() {
+        return bucketWidthKmh;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public synchronized void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(bucketWidthKmh);
+            out.writeInt(buckets);
+            out.writeInt(stats.size());
+            for (IntObjectCursor<int[]> cursor : stats) {
+                out.writeInt(cursor.key);
+                for (int value : cursor.value)
+                    out.writeInt(value);
+            }
+        }
+    }
+
+    public static EdgeSpeedStatistics read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            EdgeSpeedStatistics statistics = new EdgeSpeedStatistics(in.readInt(), in.readInt());
+            int edges = in.readInt();
+            for (int i = 0; i < edges; i++) {
+                int edgeKey = in.readInt();
+                int[] values = new int[1 + statistics.buckets];
+                for (int j = 0; j < values.length; j++)
+                    values[j] = in.readInt();
+                statistics.stats.put(edgeKey, values);
+            }
+            return statistics;
+        }
+    }
+}
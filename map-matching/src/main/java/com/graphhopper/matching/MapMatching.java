@@ -21,7 +21,6 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
@@ -73,6 +72,7 @@ public class MapMatching {
     private double transitionProbabilityBeta = 2.0;
     private final DistanceCalc distanceCalc = new DistancePlaneProjection();
     private QueryGraph queryGraph;
+    private CandidateEdgeCache candidateEdgeCache;
 
     private Map<String, Object> statistics = new HashMap<>();
 
@@ -132,6 +132,13 @@ public class MapMatching {
             @Override
             public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
                 assert (toNodes.length == toInEdges.length);
+                if (landmarks == null) {
+                    // without landmarks a single search that stops when all candidates are found is much faster than
+                    // one bidirectional search per candidate
+                    OneToManyDijkstra dijkstra = new OneToManyDijkstra(queryGraph, queryGraph.wrapWeighting(weighting));
+                    dijkstra.setMaxVisitedNodes(maxVisitedNodes);
+                    return dijkstra.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges);
+                }
                 List<Path> result = new ArrayList<>();
                 for (int i = 0; i < toNodes.length; i++) {
                     result.add(calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
@@ -141,28 +148,17 @@ public class MapMatching {
 
             private Path calcOnePath(QueryGraph queryGraph, int fromNode, int toNode, int fromOutEdge, int toInEdge) {
                 Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
-                if (landmarks != null) {
-                    AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    int activeLM = Math.min(8, landmarks.getLandmarkCount());
-                    LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
-                    aStarBidirection.setApproximation(lmApproximator);
-                    aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
-                    return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                } else {
-                    DijkstraBidirectionRef dijkstraBidirectionRef = new DijkstraBidirectionRef(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    dijkstraBidirectionRef.setMaxVisitedNodes(maxVisitedNodes);
-                    return dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                }
+                AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
+                    @Override
+                    protected void initCollections(int size) {
+                        super.initCollections(50);
+                    }
+                };
+                int activeLM = Math.min(8, landmarks.getLandmarkCount());
+                LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
+                aStarBidirection.setApproximation(lmApproximator);
+                aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
+                return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
             }
 
             @Override
@@ -195,6 +191,18 @@ public class MapMatching {
         this.measurementErrorSigma = measurementErrorSigma;
     }
 
+    public double getMeasurementErrorSigma() {
+        return measurementErrorSigma;
+    }
+
+    /**
+     * Sets the cache for the candidate edges of the observations, e.g. to share it between the MapMatching instances
+     * of many tracks. By default every instance creates its own cache when it is needed.
+     */
+    public void setCandidateEdgeCache(CandidateEdgeCache candidateEdgeCache) {
+        this.candidateEdgeCache = candidateEdgeCache;
+    }
+
     public MatchResult match(List<Observation> observations) {
         List<Observation> filteredObservations = filterObservations(observations);
         statistics.put("filteredObservations", filteredObservations.size());
@@ -294,7 +302,9 @@ public class MapMatching {
         List<Snap> snaps = new ArrayList<>();
         IntHashSet seenEdges = new IntHashSet();
         IntHashSet seenNodes = new IntHashSet();
-        locationIndex.query(queryShape, edgeId -> {
+        if (candidateEdgeCache == null)
+            candidateEdgeCache = new CandidateEdgeCache(1_000);
+        candidateEdgeCache.query(locationIndex, queryShape, edgeId -> {
             EdgeIteratorState edge = graph.getEdgeIteratorStateForKey(edgeId * 2);
             if (seenEdges.add(edgeId) && edgeFilter.accept(edge)) {
                 Snap snap = new Snap(queryLat, queryLon);
@@ -400,6 +410,9 @@ public class MapMatching {
         }
         Label qe = null;
         while (!q.isEmpty()) {
+            // the routing algorithms stop early if the thread is interrupted, so we cannot trust the result anymore
+            if (Thread.currentThread().isInterrupted())
+                throw new IllegalStateException("Map matching was cancelled at time step " + (qe == null ? 0 : qe.timeStep));
             qe = q.poll();
             if (qe.isDeleted)
                 continue;
@@ -426,7 +439,10 @@ public class MapMatching {
                     double minusLogProbability = qe.minusLogProbability - probabilities.emissionLogProbability(to.getSnap().getQueryDistance()) - transitionLogProbability;
                     Label label1 = labels.get(to);
                     if (label1 == null || minusLogProbability < label1.minusLogProbability) {
-                        q.stream().filter(oldQe -> !oldQe.isDeleted && oldQe.state == to).findFirst().ifPresent(oldQe -> oldQe.isDeleted = true);
+                        // the labels map always points to the most recent label of a state, so we do not need to
+                        // search the queue for the old label. marking it deleted is harmless if it was already polled.
+                        if (label1 != null)
+                            label1.isDeleted = true;
                         Label label = new Label();
                         label.state = to;
                         label.timeStep = qe.timeStep + 1;
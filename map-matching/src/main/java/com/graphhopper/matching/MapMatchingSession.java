@@ -0,0 +1,198 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matches a track that is not known upfront, e.g. the positions of a vehicle that arrive one after the other. Only a
+ * sliding window of the most recent observations is kept, so the memory does not grow with the length of the track.
+ * The window is matched with {@link MapMatching#match(List)} whenever a new observation arrives, and the edges of an
+ * observation are final once the given number of later observations (the lag) were matched together with it, i.e. the
+ * decision of the Viterbi algorithm is fixed after this lag instead of waiting for the end of the track. A larger lag
+ * gives more stable results but delays them and increases the work per observation.
+ * <p>
+ * The last final observation stays at the start of the window, so the following edges connect to the already returned
+ * ones. Observations without candidate edges are ignored. If the window cannot be matched anyway, e.g. because there
+ * is no route to the new observation, the pending observations are matched without the new one and matching starts
+ * again with the new observation.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class MapMatchingSession {
+    private final MapMatching mapMatching;
+    private final int lag;
+    private final DistanceCalc distanceCalc = new DistancePlaneProjection();
+    // the first observation is the last final observation, if there is one
+    private final List<Observation> window = new ArrayList<>();
+    private boolean firstIsFinal;
+    // the key of the last edge that was returned or -1
+    private int lastEdgeKey = -1;
+    private long observations;
+
+    public MapMatchingSession(MapMatching mapMatching, int lag) {
+        if (lag < 1)
+            throw new IllegalArgumentException("lag must be positive but was " + lag);
+        this.mapMatching = mapMatching;
+        this.lag = lag;
+    }
+
+    /**
+     * Adds the next observation of the track.
+     *
+     * @return the edges that became final with this observation, in the order of the track
+     */
+    public List<EdgeMatch> add(Observation observation) {
+        observations++;
+        // like MapMatching.filterObservations we ignore observations that are too close to the previous one, which
+        // also keeps the window small while the vehicle is not moving
+        if (!window.isEmpty()) {
+            Observation prev = window.get(window.size() - 1);
+            if (distanceCalc.calcDist(prev.getPoint().lat, prev.getPoint().lon, observation.getPoint().lat, observation.getPoint().lon)
+                    <= 2 * mapMatching.getMeasurementErrorSigma())
+                return Collections.emptyList();
+        }
+        window.add(observation);
+        return matchWindow();
+    }
+
+    private List<EdgeMatch> matchWindow() {
+        // the observations after the first one and before the last 'lag' ones become final
+        if (window.size() - 1 - lag < 1)
+            return Collections.emptyList();
+
+        MatchResult result = tryMatch();
+        if (result == null && window.isEmpty())
+            return Collections.emptyList();
+        if (result == null) {
+            Observation last = window.remove(window.size() - 1);
+            List<EdgeMatch> edges = finish();
+            window.add(last);
+            return edges;
+        }
+        // observations without candidates might have been removed
+        int lastFinal = window.size() - 1 - lag;
+        if (lastFinal < 1)
+            return Collections.emptyList();
+        List<EdgeMatch> edges = getEdges(result, window.get(lastFinal));
+        window.subList(0, lastFinal).clear();
+        firstIsFinal = true;
+        return edges;
+    }
+
+    /**
+     * Matches the window. An observation without candidates breaks the sequence of the whole window, so such
+     * observations are removed. We only look for them if the window cannot be matched, because match already snaps
+     * all observations and snapping them here as well would double the work for every new observation.
+     *
+     * @return the result or null if the window cannot be matched
+     */
+    private MatchResult tryMatch() {
+        try {
+            return mapMatching.match(window);
+        } catch (IllegalArgumentException ex) {
+            return removeObservationsWithoutCandidates() && !window.isEmpty() ? tryMatch() : null;
+        }
+    }
+
+    /**
+     * @return true if at least one pending observation was removed because it has no candidate edges
+     */
+    private boolean removeObservationsWithoutCandidates() {
+        int size = window.size();
+        // the last final observation was matched already, so it has candidates
+        int first = firstIsFinal ? 1 : 0;
+        window.subList(first, window.size()).removeIf(o -> mapMatching.findCandidateSnaps(o.getPoint().lat, o.getPoint().lon).isEmpty());
+        return window.size() < size;
+    }
+
+    /**
+     * Matches all pending observations, e.g. when the track ended, and starts a new track.
+     *
+     * @return the remaining edges of the track
+     */
+    public List<EdgeMatch> finish() {
+        List<EdgeMatch> edges = Collections.emptyList();
+        // a single observation does not need to be matched if it is final already
+        if (window.size() > 1 || (window.size() == 1 && !firstIsFinal)) {
+            MatchResult result = tryMatch();
+            // if the pending observations cannot be matched there are no edges for them
+            if (result != null)
+                edges = getEdges(result, window.get(window.size() - 1));
+        }
+        window.clear();
+        firstIsFinal = false;
+        lastEdgeKey = -1;
+        return edges;
+    }
+
+    /**
+     * @return the edges of the result up to and including the edge of the given observation, but without the edges
+     * up to the first observation of the window if they were returned already
+     */
+    private List<EdgeMatch> getEdges(MatchResult result, Observation lastObservation) {
+        List<EdgeMatch> edgeMatches = result.getEdgeMatches();
+        int from = 0;
+        if (firstIsFinal) {
+            // usually the edge of the first observation was returned already, but an observation at a junction
+            // belongs to the edge before it, unless it is the first observation of the window. so we continue after
+            // the last returned edge or at the edge of the first observation if the last returned edge is not there.
+            int first = indexOf(edgeMatches, window.get(0));
+            from = Math.max(0, first);
+            for (int i = first; i >= 0; i--) {
+                if (edgeMatches.get(i).getEdgeState().getEdgeKey() == lastEdgeKey) {
+                    from = i + 1;
+                    break;
+                }
+            }
+        }
+        int to = indexOf(edgeMatches, lastObservation);
+        if (to < from)
+            return Collections.emptyList();
+        lastEdgeKey = edgeMatches.get(to).getEdgeState().getEdgeKey();
+        return new ArrayList<>(edgeMatches.subList(from, to + 1));
+    }
+
+    private static int indexOf(List<EdgeMatch> edgeMatches, Observation observation) {
+        for (int i = edgeMatches.size() - 1; i >= 0; i--)
+            for (State state : edgeMatches.get(i).getStates())
+                // Observation.equals only compares the points, but the same position can occur multiple times
+                if (state.getEntry() == observation)
+                    return i;
+        return -1;
+    }
+
+    /**
+     * @return the number of observations that are not final yet
+     */
+    public int getPendingObservations() {
+        return firstIsFinal ? window.size() - 1 : window.size();
+    }
+
+    /**
+     * @return the number of observations that were added to this session, including the ignored ones
+     */
+    public long getObservations() {
+        return observations;
+    }
+}
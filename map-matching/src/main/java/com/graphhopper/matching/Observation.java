@@ -23,16 +23,32 @@ import java.util.Objects;
 
 public class Observation {
     private GHPoint point;
+    private long time = -1;
     private double accumulatedLinearDistanceToPrevious;
 
     public Observation(GHPoint p) {
         this.point = p;
     }
 
+    /**
+     * @param time the time of the observation in milliseconds, e.g. since the epoch
+     */
+    public Observation(GHPoint p, long time) {
+        this.point = p;
+        this.time = time;
+    }
+
     public GHPoint getPoint() {
         return point;
     }
 
+    /**
+     * @return the time of the observation in milliseconds or -1 if it is unknown. It is not used for the matching.
+     */
+    public long getTime() {
+        return time;
+    }
+
     public double getAccumulatedLinearDistanceToPrevious() {
         return accumulatedLinearDistanceToPrevious;
     }
@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathExtractor;
+import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * Calculates the paths from one start node to many target nodes with a single edge-based Dijkstra search, instead of
+ * one search per target. The first and the last edges of the paths can be restricted like for
+ * {@link com.graphhopper.routing.AStar#calcPath(int, int, int, int)}. The search stops as soon as all targets are
+ * found, so it only explores the area up to the farthest target. This is used for the transitions between the
+ * candidates of two consecutive observations, which are usually close to each other.
+ */
+public class OneToManyDijkstra extends AbstractRoutingAlgorithm {
+    private final IntObjectMap<SPTEntry> fromMap;
+    private final PriorityQueue<SPTEntry> fromHeap;
+    private int visitedNodes;
+
+    public OneToManyDijkstra(Graph graph, Weighting weighting) {
+        super(graph, weighting, TraversalMode.EDGE_BASED);
+        fromMap = new GHIntObjectHashMap<>(50);
+        fromHeap = new PriorityQueue<>(50);
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPaths(from, ANY_EDGE, new int[]{to}, new int[]{ANY_EDGE}).get(0);
+    }
+
+    /**
+     * @param fromOutEdge the first edge of all paths or {@link EdgeIterator#ANY_EDGE}
+     * @param toNodes     the target nodes
+     * @param toInEdges   the last edge of the path to the target at the same index or {@link EdgeIterator#ANY_EDGE}
+     * @return the path to every target in the same order as the targets. Paths that were not found are empty.
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("toNodes and toInEdges must have the same length");
+        checkAlreadyRun();
+        setupFinishTime();
+        SPTEntry[] targetEntries = new SPTEntry[toNodes.length];
+        // the indices of the targets per target node, there can be multiple targets with different incoming edges
+        IntObjectMap<IntArrayList> targetsByNode = new GHIntObjectHashMap<>(toNodes.length);
+        int remaining = 0;
+        for (int i = 0; i < toNodes.length; i++) {
+            if (toInEdges[i] == NO_EDGE)
+                continue;
+            IntArrayList targets = targetsByNode.get(toNodes[i]);
+            if (targets == null) {
+                targets = new IntArrayList(2);
+                targetsByNode.put(toNodes[i], targets);
+            }
+            targets.add(i);
+            remaining++;
+        }
+        if (fromOutEdge != NO_EDGE && remaining > 0)
+            fromHeap.add(new SPTEntry(from, 0));
+
+        while (!fromHeap.isEmpty()) {
+            SPTEntry currEdge = fromHeap.poll();
+            if (currEdge.isDeleted())
+                continue;
+            visitedNodes++;
+            if (isMaxVisitedNodesExceeded() || isTimeoutExceeded())
+                break;
+
+            IntArrayList targets = targetsByNode.get(currEdge.adjNode);
+            // if the first edge is restricted the start entry itself cannot be the end of a path
+            if (targets != null && (fromOutEdge == ANY_EDGE || currEdge.edge != NO_EDGE)) {
+                for (int j = 0; j < targets.size(); j++) {
+                    int target = targets.get(j);
+                    if (targetEntries[target] == null && (toInEdges[target] == ANY_EDGE || currEdge.edge == toInEdges[target])) {
+                        targetEntries[target] = currEdge;
+                        remaining--;
+                    }
+                }
+                if (remaining == 0)
+                    break;
+            }
+
+            EdgeIterator iter = edgeExplorer.setBaseNode(currEdge.adjNode);
+            while (iter.next()) {
+                if (currEdge.edge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge)
+                    continue;
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weight;
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+                int traversalId = traversalMode.createTraversalId(iter, false);
+                SPTEntry nEdge = fromMap.get(traversalId);
+                if (nEdge == null || nEdge.weight > tmpWeight) {
+                    if (nEdge != null)
+                        nEdge.setDeleted();
+                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight, currEdge);
+                    fromMap.put(traversalId, nEdge);
+                    fromHeap.add(nEdge);
+                }
+            }
+        }
+
+        List<Path> paths = new ArrayList<>(toNodes.length);
+        for (SPTEntry targetEntry : targetEntries)
+            paths.add(targetEntry == null ? createEmptyPath() : PathExtractor.extractPath(graph, weighting, targetEntry));
+        return paths;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
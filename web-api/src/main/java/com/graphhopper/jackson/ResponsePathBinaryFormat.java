@@ -0,0 +1,411 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jackson;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A compact binary alternative to the JSON response of the routing API, meant for machine clients where encoding and
+ * parsing JSON is too expensive. It contains the same information as the JSON response except for the public transit
+ * legs. All integers are written as (zigzag) varints, the coordinates of the points and snapped waypoints are delta
+ * encoded like for the encoded polyline, i.e. multiplied by points_encoded_multiplier and the elevation by 100.
+ * <p>
+ * The layout is: the magic bytes 'G', 'H', 'R' and the version, the hints, the info object, the multiplier, a flag
+ * byte (calc_points, instructions, elevation) and then all paths. Each path consists of distance, weight, time,
+ * transfers, description and fare followed by points, ascend, descend, instructions and details if calc_points is
+ * enabled and finally the snapped waypoints. Hints, instruction extra information and path detail values are tagged
+ * values, see {@link #writeValue}.
+ */
+public class ResponsePathBinaryFormat {
+    public static final String MEDIA_TYPE = "application/vnd.graphhopper.route+binary";
+    private static final byte[] MAGIC = {'G', 'H', 'R'};
+    private static final int VERSION = 1;
+
+    private static final int CALC_POINTS = 1, INSTRUCTIONS = 2, ELEVATION = 4;
+    private static final int NULL = 0, FALSE = 1, TRUE = 2, LONG = 3, DOUBLE = 4, STRING = 5, MAP = 6;
+
+    /**
+     * Writes the given response. Unlike for JSON the points are always encoded, so
+     * {@link ResponsePathSerializer.JsonResponse#pointsEncoded()} is ignored.
+     */
+    public static void write(OutputStream outputStream, ResponsePathSerializer.JsonResponse rsp) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 16 * 1024));
+        double multiplier = rsp.pointsMultiplier();
+        if (multiplier < 1)
+            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        writeMap(out, rsp.ghResponse().getHints().toMap());
+        ResponsePathSerializer.Info info = rsp.info();
+        writeVarLong(out, info.took());
+        writeString(out, info.roadDataTimestamp());
+        writeStrings(out, info.copyrights() == null ? List.of() : info.copyrights());
+        out.writeDouble(multiplier);
+        out.writeByte((rsp.calcPoints() ? CALC_POINTS : 0) | (rsp.enableInstructions() ? INSTRUCTIONS : 0)
+                | (rsp.enableElevation() ? ELEVATION : 0));
+
+        List<ResponsePath> paths = rsp.ghResponse().getAll();
+        writeVarInt(out, paths.size());
+        for (ResponsePath p : paths) {
+            out.writeDouble(Helper.round(p.getDistance(), 3));
+            out.writeDouble(Helper.round6(p.getRouteWeight()));
+            writeVarLong(out, p.getTime());
+            writeVarInt(out, p.getNumChanges());
+            writeStrings(out, p.getDescription());
+            writeString(out, p.getFare() == null ? null : p.getFare().toPlainString());
+            if (rsp.calcPoints()) {
+                writePoints(out, p.getPoints(), rsp.enableElevation(), multiplier);
+                out.writeDouble(p.getAscend());
+                out.writeDouble(p.getDescend());
+                if (rsp.enableInstructions())
+                    writeInstructions(out, p.getInstructions());
+                writeDetails(out, p.getPathDetails());
+            }
+            writePoints(out, p.getWaypoints(), rsp.enableElevation(), multiplier);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a response written by {@link #write}. The info object is added to the hints as took, road_data_timestamp
+     * (if present) and copyrights, like the headers of the response are added by the client.
+     *
+     * @param turnDescription if true the instructions contain the translated turn descriptions as name, otherwise
+     *                        the street names, see {@link ResponsePathDeserializerHelper#createResponsePath}
+     */
+    public static GHResponse read(InputStream inputStream, boolean turnDescription) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 16 * 1024));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a binary route response");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported version of the binary route response: " + version);
+
+        GHResponse res = new GHResponse();
+        readMap(in).forEach((key, value) -> res.getHints().putObject(key, value));
+        res.getHints().putObject("took", readVarLong(in));
+        String roadDataTimestamp = readString(in);
+        if (roadDataTimestamp != null)
+            res.getHints().putObject("road_data_timestamp", roadDataTimestamp);
+        res.getHints().putObject("copyrights", readStrings(in));
+        double multiplier = in.readDouble();
+        int flags = in.readUnsignedByte();
+        boolean calcPoints = (flags & CALC_POINTS) != 0;
+        boolean instructions = (flags & INSTRUCTIONS) != 0;
+        boolean elevation = (flags & ELEVATION) != 0;
+
+        int paths = readVarInt(in);
+        for (int i = 0; i < paths; i++) {
+            ResponsePath p = new ResponsePath();
+            p.setDistance(in.readDouble());
+            p.setRouteWeight(in.readDouble());
+            p.setTime(readVarLong(in));
+            p.setNumChanges(readVarInt(in));
+            List<String> description = readStrings(in);
+            if (!description.isEmpty())
+                p.setDescription(description);
+            String fare = readString(in);
+            if (fare != null)
+                p.setFare(new BigDecimal(fare));
+            if (calcPoints) {
+                p.setPoints(readPoints(in, elevation, multiplier));
+                p.setAscend(in.readDouble());
+                p.setDescend(in.readDouble());
+                if (instructions)
+                    p.setInstructions(readInstructions(in, p.getPoints(), turnDescription));
+                p.addPathDetails(readDetails(in));
+            }
+            p.setWaypoints(readPoints(in, elevation, multiplier));
+            List<Integer> pointsOrder = new ArrayList<>(p.getWaypoints().size());
+            for (int j = 0; j < p.getWaypoints().size(); j++) {
+                pointsOrder.add(j);
+            }
+            p.setPointsOrder(pointsOrder);
+            res.add(p);
+        }
+        return res;
+    }
+
+    private static void writePoints(DataOutputStream out, PointList points, boolean elevation, double multiplier) throws IOException {
+        writeVarInt(out, points.size());
+        int prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < points.size(); i++) {
+            int lat = (int) Math.round(points.getLat(i) * multiplier);
+            int lon = (int) Math.round(points.getLon(i) * multiplier);
+            writeVarLong(out, lat - prevLat);
+            writeVarLong(out, lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (elevation) {
+                int ele = (int) Math.round(points.getEle(i) * 100);
+                writeVarLong(out, ele - prevEle);
+                prevEle = ele;
+            }
+        }
+    }
+
+    private static PointList readPoints(DataInputStream in, boolean elevation, double multiplier) throws IOException {
+        int size = readVarInt(in);
+        PointList points = new PointList(size, elevation);
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < size; i++) {
+            lat += (int) readVarLong(in);
+            lon += (int) readVarLong(in);
+            if (elevation) {
+                ele += (int) readVarLong(in);
+                points.add(lat / multiplier, lon / multiplier, ele / 100.0);
+            } else {
+                points.add(lat / multiplier, lon / multiplier);
+            }
+        }
+        return points;
+    }
+
+    private static void writeInstructions(DataOutputStream out, InstructionList instructions) throws IOException {
+        writeVarInt(out, instructions.size());
+        for (Instruction instruction : instructions) {
+            writeVarLong(out, instruction.getSign());
+            writeString(out, Helper.firstBig(instruction.getTurnDescription(instructions.getTr())));
+            writeString(out, instruction.getName());
+            out.writeDouble(Helper.round(instruction.getDistance(), 3));
+            writeVarLong(out, instruction.getTime());
+            writeVarInt(out, instruction.getLength());
+            writeMap(out, instruction.getExtraInfoJSON());
+        }
+    }
+
+    private static InstructionList readInstructions(DataInputStream in, PointList points, boolean turnDescription) throws IOException {
+        int size = readVarInt(in);
+        InstructionList il = new InstructionList(size, null);
+        int from = 0;
+        int viaCount = 1;
+        for (int i = 0; i < size; i++) {
+            int sign = (int) readVarLong(in);
+            String text = readString(in);
+            String streetName = readString(in);
+            String name = turnDescription ? text : streetName;
+            double distance = in.readDouble();
+            long time = readVarLong(in);
+            int to = from + readVarInt(in);
+            Map<String, Object> extraInfo = readMap(in);
+            PointList instPL = new PointList(to - from, points.is3D());
+            for (int j = from; j <= to && j < points.size(); j++) {
+                instPL.add(points, j);
+            }
+            from = to;
+
+            Instruction instr;
+            if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+                RoundaboutInstruction ri = new RoundaboutInstruction(sign, name, instPL);
+                if (extraInfo.get("exit_number") instanceof Long exitNumber)
+                    ri.setExitNumber(exitNumber.intValue());
+                if (Boolean.TRUE.equals(extraInfo.get("exited")))
+                    ri.setExited();
+                if (extraInfo.get("turn_angle") instanceof Double angle) {
+                    ri.setDirOfRotation(angle);
+                    ri.setRadian((angle < 0 ? -Math.PI : Math.PI) - angle);
+                }
+                instr = ri;
+            } else if (sign == Instruction.REACHED_VIA) {
+                ViaInstruction via = new ViaInstruction(name, instPL);
+                via.setViaCount(viaCount);
+                viaCount++;
+                instr = via;
+            } else if (sign == Instruction.FINISH) {
+                instr = new FinishInstruction(name, instPL, 0);
+            } else {
+                instr = new Instruction(sign, name, instPL);
+                extraInfo.forEach(instr::setExtraInfo);
+            }
+            if (turnDescription)
+                instr.setUseRawName();
+            instr.setDistance(distance).setTime(time);
+            il.add(instr);
+        }
+        return il;
+    }
+
+    private static void writeDetails(DataOutputStream out, Map<String, List<PathDetail>> details) throws IOException {
+        writeVarInt(out, details.size());
+        for (Map.Entry<String, List<PathDetail>> entry : details.entrySet()) {
+            writeString(out, entry.getKey());
+            writeVarInt(out, entry.getValue().size());
+            int prevLast = 0;
+            for (PathDetail pd : entry.getValue()) {
+                // the intervals are usually adjacent, so the deltas are small
+                writeVarLong(out, pd.getFirst() - prevLast);
+                writeVarInt(out, pd.getLast() - pd.getFirst());
+                writeValue(out, pd.getValue());
+                prevLast = pd.getLast();
+            }
+        }
+    }
+
+    private static Map<String, List<PathDetail>> readDetails(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        Map<String, List<PathDetail>> details = new LinkedHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            int count = readVarInt(in);
+            List<PathDetail> list = new ArrayList<>(count);
+            int prevLast = 0;
+            for (int j = 0; j < count; j++) {
+                int first = prevLast + (int) readVarLong(in);
+                int last = first + readVarInt(in);
+                PathDetail pd = new PathDetail(readValue(in));
+                pd.setFirst(first);
+                pd.setLast(last);
+                list.add(pd);
+                prevLast = last;
+            }
+            details.put(key, list);
+        }
+        return details;
+    }
+
+    /**
+     * Writes a tag byte followed by the value. Integral numbers are written as long and read as Long, like they
+     * would be for JSON, and values of other types are written as their string representation.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(LONG);
+            writeVarLong(out, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case LONG:
+                return readVarLong(in);
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return readString(in);
+            case MAP:
+                return readMap(in);
+            default:
+                throw new IOException("Unknown value type " + tag);
+        }
+    }
+
+    private static void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        writeVarInt(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeString(out, entry.getKey().toString());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> readMap(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        Map<String, Object> map = new LinkedHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        writeVarInt(out, strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    /**
+     * Writes the length + 1 followed by the UTF-8 bytes, a length of 0 means null.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        VarIntHelper.writeSigned(out, value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        return VarIntHelper.readSigned(in);
+    }
+
+    private static void writeVarInt(DataOutputStream out, long value) throws IOException {
+        VarIntHelper.writeUnsigned(out, value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = VarIntHelper.readUnsigned(in);
+        if (value > Integer.MAX_VALUE)
+            throw new IOException("Invalid length " + value);
+        return (int) value;
+    }
+}
@@ -18,6 +18,7 @@
 
 package com.graphhopper.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -26,6 +27,8 @@ import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.text.NumberFormat;
 import java.util.List;
 import java.util.Locale;
@@ -47,38 +50,116 @@ public class ResponsePathSerializer {
             throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
 
         StringBuilder sb = new StringBuilder(Math.max(20, poly.size() * 3));
-        int size = poly.size();
-        int prevLat = 0;
-        int prevLon = 0;
-        int prevEle = 0;
+        PolylineReader reader = new PolylineReader(poly, includeElevation, multiplier);
+        char[] buffer = new char[256];
+        int len;
+        while ((len = reader.read(buffer, 0, buffer.length)) > 0)
+            sb.append(buffer, 0, len);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the encoded polyline as JSON string, without creating the String returned by
+     * {@link #encodePolyline(PointList, boolean, double)}.
+     */
+    public static void writePolyline(JsonGenerator gen, PointList poly, boolean includeElevation, double multiplier) throws IOException {
+        if (multiplier < 1)
+            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
+        gen.writeString(new PolylineReader(poly, includeElevation, multiplier), -1);
+    }
+
+    /**
+     * Writes the points as GeoJSON LineString, the same way as {@link PointList#toLineString(boolean)} would be
+     * serialized, but without creating the intermediate geometry.
+     */
+    public static void writeLineString(JsonGenerator gen, PointList poly, boolean includeElevation) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", "LineString");
+        gen.writeArrayFieldStart("coordinates");
+        // special case as just 1 point is not supported in the specification #1412
+        int size = poly.size() == 1 ? 2 : poly.size();
         for (int i = 0; i < size; i++) {
-            int num = (int) Math.round(poly.getLat(i) * multiplier);
-            encodeNumber(sb, num - prevLat);
+            int index = Math.min(i, poly.size() - 1);
+            gen.writeStartArray();
+            gen.writeNumber(Helper.round6(poly.getLon(index)));
+            gen.writeNumber(Helper.round6(poly.getLat(index)));
+            if (includeElevation && !Double.isNaN(poly.getEle(index)))
+                gen.writeNumber(Helper.round2(poly.getEle(index)));
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * Encodes the points of a polyline lazily, i.e. point by point when the characters are requested.
+     */
+    private static class PolylineReader extends Reader {
+        // enough for three numbers with up to seven characters each
+        private final char[] pending = new char[21];
+        private final PointList poly;
+        private final boolean includeElevation;
+        private final double multiplier;
+        private int pendingStart, pendingEnd;
+        private int index;
+        private int prevLat, prevLon, prevEle;
+
+        PolylineReader(PointList poly, boolean includeElevation, double multiplier) {
+            this.poly = poly;
+            this.includeElevation = includeElevation;
+            this.multiplier = multiplier;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            int read = 0;
+            while (read < len) {
+                if (pendingStart == pendingEnd && !encodeNextPoint())
+                    break;
+                int n = Math.min(len - read, pendingEnd - pendingStart);
+                System.arraycopy(pending, pendingStart, cbuf, off + read, n);
+                pendingStart += n;
+                read += n;
+            }
+            return read == 0 && len > 0 ? -1 : read;
+        }
+
+        private boolean encodeNextPoint() {
+            if (index >= poly.size())
+                return false;
+            pendingStart = pendingEnd = 0;
+            int num = (int) Math.round(poly.getLat(index) * multiplier);
+            encodeNumber(num - prevLat);
             prevLat = num;
-            num = (int) Math.round(poly.getLon(i) * multiplier);
-            encodeNumber(sb, num - prevLon);
+            num = (int) Math.round(poly.getLon(index) * multiplier);
+            encodeNumber(num - prevLon);
             prevLon = num;
             if (includeElevation) {
-                num = (int) Math.round(poly.getEle(i) * 100);
-                encodeNumber(sb, num - prevEle);
+                num = (int) Math.round(poly.getEle(index) * 100);
+                encodeNumber(num - prevEle);
                 prevEle = num;
             }
+            index++;
+            return true;
         }
-        return sb.toString();
-    }
 
-    private static void encodeNumber(StringBuilder sb, int num) {
-        num = num << 1;
-        if (num < 0) {
-            num = ~num;
+        private void encodeNumber(int num) {
+            num = num << 1;
+            if (num < 0) {
+                num = ~num;
+            }
+            while (num >= 0x20) {
+                int nextValue = (0x20 | (num & 0x1f)) + 63;
+                pending[pendingEnd++] = (char) (nextValue);
+                num >>= 5;
+            }
+            num += 63;
+            pending[pendingEnd++] = (char) (num);
         }
-        while (num >= 0x20) {
-            int nextValue = (0x20 | (num & 0x1f)) + 63;
-            sb.append((char) (nextValue));
-            num >>= 5;
+
+        @Override
+        public void close() {
         }
-        num += 63;
-        sb.append((char) (num));
     }
 
     public record Info(List<String> copyrights, long took, String roadDataTimestamp) {
@@ -122,4 +203,63 @@ public class ResponsePathSerializer {
         }
         return json;
     }
+
+    /**
+     * The parameters needed to write the JSON response of the routing API. Unlike {@link #jsonObject} this does not
+     * create a JSON tree in memory, but {@link JsonResponseSerializer} writes the response directly to the output.
+     */
+    public record JsonResponse(GHResponse ghResponse, Info info, boolean enableInstructions, boolean calcPoints,
+                               boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
+    }
+
+    /**
+     * Writes the same JSON as {@link #jsonObject} does, but directly to the given generator.
+     */
+    public static void writeJson(JsonGenerator gen, JsonResponse rsp) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectField("hints", rsp.ghResponse().getHints().toMap());
+        gen.writeObjectField("info", rsp.info());
+        gen.writeArrayFieldStart("paths");
+        for (ResponsePath p : rsp.ghResponse().getAll()) {
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(p.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(p.getRouteWeight()));
+            gen.writeNumberField("time", p.getTime());
+            gen.writeNumberField("transfers", p.getNumChanges());
+            gen.writeObjectField("legs", p.getLegs());
+            if (!p.getDescription().isEmpty()) {
+                gen.writeObjectField("description", p.getDescription());
+            }
+
+            // for points and snapped_waypoints:
+            gen.writeBooleanField("points_encoded", rsp.pointsEncoded());
+            if (rsp.pointsEncoded()) gen.writeNumberField("points_encoded_multiplier", rsp.pointsMultiplier());
+
+            if (rsp.calcPoints()) {
+                gen.writeObjectField("bbox", p.calcBBox2D());
+                writePoints(gen, "points", p.getPoints(), rsp);
+                if (rsp.enableInstructions()) {
+                    gen.writeObjectField("instructions", p.getInstructions());
+                }
+                gen.writeObjectField("details", p.getPathDetails());
+                gen.writeNumberField("ascend", p.getAscend());
+                gen.writeNumberField("descend", p.getDescend());
+            }
+            writePoints(gen, "snapped_waypoints", p.getWaypoints(), rsp);
+            if (p.getFare() != null) {
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static void writePoints(JsonGenerator gen, String fieldName, PointList points, JsonResponse rsp) throws IOException {
+        gen.writeFieldName(fieldName);
+        if (rsp.pointsEncoded())
+            writePolyline(gen, points, rsp.enableElevation(), rsp.pointsMultiplier());
+        else
+            writeLineString(gen, points, rsp.enableElevation());
+    }
 }
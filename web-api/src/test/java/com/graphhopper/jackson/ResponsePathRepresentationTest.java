@@ -17,11 +17,21 @@
  */
 package com.graphhopper.jackson;
 
-import com.graphhopper.util.Helper;
-import com.graphhopper.util.PointList;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -79,4 +89,133 @@ public class ResponsePathRepresentationTest {
     public void testEncode1e6() {
         assertEquals("ohdfzAgt}bVoEL", ResponsePathSerializer.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testStreamingJsonEqualsJsonObject() throws Exception {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        ResponsePath path = new ResponsePath().
+                setPoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234)).
+                setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 43.252, -126.453, 1234)).
+                setDistance(1234.5678).setTime(56789).setRouteWeight(12.3456789).setAscend(1224).setDescend(0).
+                setDescription(List.of("a", "b"));
+        PathDetail detail = new PathDetail("primary");
+        detail.setFirst(0);
+        detail.setLast(2);
+        path.addPathDetails(Map.of("road_class", List.of(detail)));
+        GHResponse ghResponse = new GHResponse();
+        ghResponse.add(path);
+        ghResponse.getHints().putObject("visited_nodes.sum", 42);
+        ResponsePathSerializer.Info info = new ResponsePathSerializer.Info(List.of("GraphHopper"), 5, "2024-01-01T00:00:00Z");
+
+        for (boolean pointsEncoded : new boolean[]{true, false}) {
+            for (boolean elevation : new boolean[]{true, false}) {
+                String expected = objectMapper.writeValueAsString(ResponsePathSerializer.jsonObject(ghResponse, info, false, true, elevation, pointsEncoded, 1e5));
+                String streamed = objectMapper.writeValueAsString(new ResponsePathSerializer.JsonResponse(ghResponse, info, false, true, elevation, pointsEncoded, 1e5));
+                assertEquals(expected, streamed);
+            }
+        }
+        // a single point is written as line string with two points
+        PointList single = Helper.createPointList(38.5, -120.2);
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = objectMapper.createGenerator(writer)) {
+            ResponsePathSerializer.writeLineString(gen, single, false);
+        }
+        assertEquals(objectMapper.writeValueAsString(single.toLineString(false)), writer.toString());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        PointList points = Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234);
+        ResponsePath path = new ResponsePath().
+                setPoints(points).
+                setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 43.252, -126.453, 1234)).
+                setDistance(1234.5678).setTime(56789).setRouteWeight(12.3456789).setAscend(1224).setDescend(0).
+                setDescription(List.of("a", "b"));
+        InstructionList instructions = new InstructionList(null);
+        Instruction continueInstr = new Instruction(Instruction.CONTINUE_ON_STREET, "Main Street", points.copy(0, 1));
+        continueInstr.setExtraInfo("heading", 12.5);
+        continueInstr.setExtraInfo("street_ref", "B1");
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "Ring", points.copy(1, 2));
+        roundabout.setExitNumber(2).setExited();
+        FinishInstruction finish = new FinishInstruction("Arrive", points, 2);
+        for (Instruction instr : List.of(continueInstr, roundabout, finish)) {
+            instr.setUseRawName();
+            instr.setDistance(100).setTime(1000);
+            instructions.add(instr);
+        }
+        path.setInstructions(instructions);
+        PathDetail primary = new PathDetail("primary");
+        primary.setFirst(0);
+        primary.setLast(1);
+        PathDetail secondary = new PathDetail("secondary");
+        secondary.setFirst(1);
+        secondary.setLast(2);
+        PathDetail speed = new PathDetail(50.5);
+        speed.setFirst(0);
+        speed.setLast(2);
+        path.addPathDetails(Map.of("road_class", List.of(primary, secondary), "max_speed", List.of(speed)));
+        GHResponse ghResponse = new GHResponse();
+        ghResponse.add(path);
+        ghResponse.getHints().putObject("visited_nodes.sum", 42);
+        ResponsePathSerializer.Info info = new ResponsePathSerializer.Info(List.of("GraphHopper"), 5, "2024-01-01T00:00:00Z");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponsePathBinaryFormat.write(out, new ResponsePathSerializer.JsonResponse(ghResponse, info, true, true, true, true, 1e6));
+        GHResponse decoded = ResponsePathBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()), true);
+
+        assertEquals(42L, decoded.getHints().getLong("visited_nodes.sum", 0));
+        assertEquals(5L, decoded.getHints().getLong("took", 0));
+        assertEquals("2024-01-01T00:00:00Z", decoded.getHints().getString("road_data_timestamp", ""));
+        assertEquals(List.of("GraphHopper"), decoded.getHints().getObject("copyrights", null));
+        ResponsePath decodedPath = decoded.getBest();
+        assertEquals(1234.568, decodedPath.getDistance(), 1e-9);
+        assertEquals(56789, decodedPath.getTime());
+        assertEquals(12.345679, decodedPath.getRouteWeight(), 1e-9);
+        assertEquals(1224, decodedPath.getAscend(), 1e-9);
+        assertEquals(List.of("a", "b"), decodedPath.getDescription());
+        assertEquals(points, decodedPath.getPoints());
+        assertEquals(path.getWaypoints(), decodedPath.getWaypoints());
+        assertEquals(List.of(0, 1), decodedPath.getPointsOrder());
+
+        InstructionList decodedInstructions = decodedPath.getInstructions();
+        assertEquals(3, decodedInstructions.size());
+        assertEquals("Main Street", decodedInstructions.get(0).getName());
+        assertEquals(12.5, decodedInstructions.get(0).getExtraInfoJSON().get("heading"));
+        assertEquals("B1", decodedInstructions.get(0).getExtraInfoJSON().get("street_ref"));
+        RoundaboutInstruction decodedRoundabout = (RoundaboutInstruction) decodedInstructions.get(1);
+        assertEquals(2, decodedRoundabout.getExitNumber());
+        assertTrue(decodedRoundabout.isExited());
+        assertEquals(Instruction.FINISH, decodedInstructions.get(2).getSign());
+        assertEquals(1000, decodedInstructions.get(2).getTime());
+
+        List<PathDetail> roadClass = decodedPath.getPathDetails().get("road_class");
+        assertEquals(2, roadClass.size());
+        assertEquals("secondary", roadClass.get(1).getValue());
+        assertEquals(1, roadClass.get(1).getFirst());
+        assertEquals(2, roadClass.get(1).getLast());
+        assertEquals(50.5, decodedPath.getPathDetails().get("max_speed").get(0).getValue());
+
+        // the binary response is much smaller than the JSON response
+        String json = Jackson.newObjectMapper().writeValueAsString(new ResponsePathSerializer.JsonResponse(ghResponse, info, true, true, true, true, 1e6));
+        assertTrue(out.size() < json.length() / 2, out.size() + " vs. " + json.length());
+    }
+
+    @Test
+    public void testBinaryWithoutPoints() throws Exception {
+        ResponsePath path = new ResponsePath().
+                setWaypoints(Helper.createPointList(38.5, -120.2, 43.252, -126.453)).
+                setDistance(10).setTime(20);
+        GHResponse ghResponse = new GHResponse();
+        ghResponse.add(path);
+        ResponsePathSerializer.Info info = new ResponsePathSerializer.Info(List.of(), 1, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponsePathBinaryFormat.write(out, new ResponsePathSerializer.JsonResponse(ghResponse, info, false, false, false, true, 1e5));
+        GHResponse decoded = ResponsePathBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()), true);
+        assertEquals(path.getWaypoints(), decoded.getBest().getWaypoints());
+        assertTrue(decoded.getBest().getPoints().isEmpty());
+        assertEquals(20, decoded.getBest().getTime());
+        assertFalse(decoded.getHints().has("road_data_timestamp"));
+
+        assertThrows(java.io.IOException.class, () -> ResponsePathBinaryFormat.read(new ByteArrayInputStream("{}".getBytes()), true));
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VarIntHelperTest {
+
+    @Test
+    public void testZigZag() {
+        assertEquals(0, VarIntHelper.zigZag(0L));
+        assertEquals(1, VarIntHelper.zigZag(-1L));
+        assertEquals(2, VarIntHelper.zigZag(1L));
+        assertEquals(3, VarIntHelper.zigZag(-2));
+        for (long value : new long[]{0, 1, -1, 63, -64, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE})
+            assertEquals(value, VarIntHelper.unZigZag(VarIntHelper.zigZag(value)));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        long[] values = {0, 1, -1, 127, 128, -300, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            VarIntHelper.writeSigned(out, value);
+            VarIntHelper.writeUnsigned(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, VarIntHelper.readSigned(in));
+            assertEquals(value, VarIntHelper.readUnsigned(in));
+        }
+        assertEquals(-1, in.read());
+
+        // the array variant writes the same bytes
+        bytes = new ByteArrayOutputStream();
+        VarIntHelper.writeUnsigned(new DataOutputStream(bytes), 300);
+        byte[] array = new byte[10];
+        assertEquals(2, VarIntHelper.writeUnsigned(array, 0, 300));
+        assertArrayEquals(bytes.toByteArray(), java.util.Arrays.copyOf(array, 2));
+    }
+
+    @Test
+    public void testMalformed() {
+        byte[] bytes = new byte[11];
+        java.util.Arrays.fill(bytes, (byte) 0x80);
+        assertThrows(IOException.class, () -> VarIntHelper.readUnsigned(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+}
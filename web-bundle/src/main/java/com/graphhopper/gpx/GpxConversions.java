@@ -217,7 +217,8 @@ public class GpxConversions {
         ArrayList<Observation> gpxEntries = new ArrayList<>();
         for (Gpx.Trkseg t : trk.trkseg) {
             for (Gpx.Trkpt trkpt : t.trkpt) {
-                gpxEntries.add(new Observation(new GHPoint3D(trkpt.lat, trkpt.lon, trkpt.ele)));
+                GHPoint3D point = new GHPoint3D(trkpt.lat, trkpt.lon, trkpt.ele);
+                gpxEntries.add(trkpt.time == null ? new Observation(point) : new Observation(point, trkpt.time.getTime()));
             }
         }
         return gpxEntries;
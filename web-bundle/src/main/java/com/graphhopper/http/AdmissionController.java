@@ -0,0 +1,166 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.GHPoint;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of requests that are processed concurrently, separately for each {@link CostClass}. This way a
+ * burst of expensive requests like flexible routes or isochrones cannot slow down the cheap CH requests. A request
+ * that exceeds the limit of its class waits for a short time in a bounded queue and is rejected with status 429 if
+ * no slot becomes free. The limits are configured via admission.{low,medium,high}.max_concurrent,
+ * admission.*.max_queued and admission.*.max_wait_ms. Classes without max_concurrent are not limited.
+ */
+public class AdmissionController {
+    public enum CostClass {LOW, MEDIUM, HIGH}
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+    private static final Permit UNLIMITED = () -> {
+    };
+    private final Map<CostClass, Limit> limits = new EnumMap<>(CostClass.class);
+    private final double shortDistance;
+    private final double longDistance;
+    private final int boundedVisitedNodes;
+
+    public AdmissionController(GraphHopperConfig config) {
+        for (CostClass costClass : CostClass.values()) {
+            String prefix = "admission." + costClass.name().toLowerCase(Locale.ROOT) + ".";
+            int maxConcurrent = config.getInt(prefix + "max_concurrent", 0);
+            if (maxConcurrent > 0)
+                limits.put(costClass, new Limit(costClass, maxConcurrent, config.getInt(prefix + "max_queued", 0),
+                        config.getLong(prefix + "max_wait_ms", 0)));
+        }
+        shortDistance = config.getDouble("admission.short_distance", 20_000);
+        longDistance = config.getDouble("admission.long_distance", 500_000);
+        boundedVisitedNodes = config.getInt("admission.bounded_visited_nodes", 100_000);
+    }
+
+    /**
+     * Estimates the cost of the given route request. This requires the final request, i.e. after the profile was
+     * resolved, because we use the same logic to pick the solver as the Router does.
+     */
+    public CostClass classifyRoute(GraphHopper graphHopper, GHRequest request) {
+        PMap hints = request.getHints();
+        boolean ch = !graphHopper.getCHGraphs().isEmpty() && !hints.getBool(Parameters.CH.DISABLE, false);
+        boolean lm = !graphHopper.getLandmarks().isEmpty() && !hints.getBool(Parameters.Landmark.DISABLE, false);
+        int maxVisitedNodes = Math.min(graphHopper.getRouterConfig().getMaxVisitedNodes(),
+                hints.getInt(Parameters.Routing.MAX_VISITED_NODES, Integer.MAX_VALUE));
+        double distance = Parameters.Algorithms.ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm())
+                ? hints.getDouble(Parameters.Algorithms.RoundTrip.DISTANCE, 10_000)
+                : calcBeelineDistance(request.getPoints());
+        return classify(ch, lm, distance, maxVisitedNodes);
+    }
+
+    CostClass classify(boolean ch, boolean lm, double distance, int maxVisitedNodes) {
+        if (ch)
+            return CostClass.LOW;
+        if (lm)
+            return distance > longDistance ? CostClass.HIGH : CostClass.MEDIUM;
+        // the flexible mode is only cheap for short routes or if the search space is limited
+        return distance < shortDistance || maxVisitedNodes <= boundedVisitedNodes ? CostClass.MEDIUM : CostClass.HIGH;
+    }
+
+    private static double calcBeelineDistance(List<GHPoint> points) {
+        double distance = 0;
+        for (int i = 1; i < points.size(); i++) {
+            distance += DistanceCalcEarth.DIST_EARTH.calcDist(points.get(i - 1).lat, points.get(i - 1).lon,
+                    points.get(i).lat, points.get(i).lon);
+        }
+        return distance;
+    }
+
+    /**
+     * Waits until a request of the given class can be processed. The returned permit must be closed when the request
+     * is finished.
+     *
+     * @throws WebApplicationException with status 429 if the limit for this class is exhausted
+     */
+    public Permit admit(CostClass costClass) {
+        Limit limit = limits.get(costClass);
+        if (limit == null)
+            return UNLIMITED;
+        if (!limit.semaphore.tryAcquire()) {
+            if (limit.queued.incrementAndGet() > limit.maxQueued) {
+                limit.queued.decrementAndGet();
+                throw limit.reject();
+            }
+            try {
+                if (!limit.semaphore.tryAcquire(limit.maxWaitMillis, TimeUnit.MILLISECONDS))
+                    throw limit.reject();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw limit.reject();
+            } finally {
+                limit.queued.decrementAndGet();
+            }
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true))
+                limit.semaphore.release();
+        };
+    }
+
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Limit {
+        final CostClass costClass;
+        final Semaphore semaphore;
+        final int maxQueued;
+        final long maxWaitMillis;
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+
+        Limit(CostClass costClass, int maxConcurrent, int maxQueued, long maxWaitMillis) {
+            this.costClass = costClass;
+            this.semaphore = new Semaphore(maxConcurrent, true);
+            this.maxQueued = maxQueued;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        WebApplicationException reject() {
+            // avoid flooding the log during an overload
+            if (rejected.incrementAndGet() % 100 == 1)
+                logger.warn("rejected {} requests of class {} so far", rejected.get(), costClass);
+            return new WebApplicationException("Too many requests of this kind, please try again later",
+                    Response.status(Response.Status.TOO_MANY_REQUESTS).header("Retry-After", "1").build());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.graphhopper.routing.RoutingMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the timings of the route requests to the metrics registry of Dropwizard, so they show up on the admin
+ * port under /metrics. For every profile and solver there is a timer named routing.[profile].[solver].[stage] for
+ * each {@link RoutingMetrics.Stage} and a histogram routing.[profile].[solver].visited_nodes.
+ */
+public class DropwizardRoutingMetrics implements RoutingMetrics {
+    private final MetricRegistry registry;
+    private final Map<String, SolverMetrics> metrics = new ConcurrentHashMap<>();
+
+    public DropwizardRoutingMetrics(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordTime(String profile, String solver, Stage stage, long nanos) {
+        getMetrics(profile, solver).timers[stage.ordinal()].update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordVisitedNodes(String profile, String solver, long visitedNodes) {
+        getMetrics(profile, solver).visitedNodes.update(visitedNodes);
+    }
+
+    private SolverMetrics getMetrics(String profile, String solver) {
+        return metrics.computeIfAbsent(profile + "." + solver, SolverMetrics::new);
+    }
+
+    private class SolverMetrics {
+        final Timer[] timers = new Timer[Stage.values().length];
+        final Histogram visitedNodes;
+
+        SolverMetrics(String prefix) {
+            for (Stage stage : Stage.values())
+                timers[stage.ordinal()] = registry.timer(MetricRegistry.name("routing", prefix, stage.getName()));
+            visitedNodes = registry.histogram(MetricRegistry.name("routing", prefix, "visited_nodes"));
+        }
+    }
+}
@@ -28,8 +28,10 @@ import com.graphhopper.http.health.GraphHopperHealthCheck;
 import com.graphhopper.isochrone.algorithm.JTSTriangulator;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.jackson.Jackson;
+import com.graphhopper.matching.CandidateEdgeCache;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.resources.*;
+import com.graphhopper.routing.RouteCache;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
@@ -44,9 +46,32 @@ import jakarta.inject.Singleton;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
+
+import java.util.concurrent.ExecutorService;
+import java.util.function.ToLongFunction;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
+    /**
+     * Provides the current GraphHopper instance for each request, see {@link GraphHopperManaged#acquire()}.
+     */
+    static class GraphHopperFactory implements Factory<GraphHopper> {
+
+        @Inject
+        GraphHopperManaged graphHopperManaged;
+
+        @Override
+        public GraphHopper provide() {
+            return graphHopperManaged.acquire();
+        }
+
+        @Override
+        public void dispose(GraphHopper instance) {
+            graphHopperManaged.release(instance);
+        }
+    }
+
     static class TranslationMapFactory implements Factory<TranslationMap> {
 
         @Inject
@@ -275,11 +300,56 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
         environment.lifecycle().manage(graphHopperManaged);
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        graphHopper.setRoutingMetrics(new DropwizardRoutingMetrics(environment.metrics()));
+        if (graphHopper.getRouteCache() != null) {
+            // the cache is replaced together with the graph, so we always ask for the current one
+            registerRouteCacheGauge(environment, graphHopperManaged, "hits", RouteCache::getHits);
+            registerRouteCacheGauge(environment, graphHopperManaged, "misses", RouteCache::getMisses);
+            registerRouteCacheGauge(environment, graphHopperManaged, "bytes", RouteCache::getBytes);
+        }
+        final RequestExecutor requestExecutor = new RequestExecutor(configuration.getGraphHopperConfiguration());
+        environment.lifecycle().manage(requestExecutor);
+        final AdmissionController admissionController = new AdmissionController(configuration.getGraphHopperConfiguration());
+        final RequestCoalescer requestCoalescer = new RequestCoalescer(configuration.getGraphHopperConfiguration());
+        // the cached results keep the previous graph alive
+        graphHopperManaged.addReloadListener(requestCoalescer::clear);
+        final MVTCache mvtCache = new MVTCache(configuration.getGraphHopperConfiguration());
+        // the tiles of the previous graph are never used again
+        graphHopperManaged.addReloadListener(mvtCache::clear);
+        final MapMatchingSessions mapMatchingSessions = new MapMatchingSessions(configuration.getGraphHopperConfiguration());
+        // removes the idle sessions even if no requests arrive
+        environment.lifecycle().manage(mapMatchingSessions);
+        // the sessions refer to the edges of the previous graph
+        graphHopperManaged.addReloadListener(mapMatchingSessions::clear);
+        // shared by all map matching requests, so tracks on the same roads do not query the location index again
+        final CandidateEdgeCache candidateEdgeCache = new CandidateEdgeCache(configuration.getGraphHopperConfiguration().getInt("map_matching.candidate_cache.max_cells", 50_000));
+        graphHopperManaged.addReloadListener(candidateEdgeCache::clear);
+        // the points of POST /nearest are snapped in parallel, but not on the common pool that is shared by the JVM
+        final int nearestThreads = configuration.getGraphHopperConfiguration().getInt("routing.nearest.threads", Runtime.getRuntime().availableProcessors());
+        final ExecutorService nearestExecutor = environment.lifecycle().executorService("gh-nearest-%d").
+                minThreads(nearestThreads).maxThreads(nearestThreads).build();
+        // the buckets of /isochrone and the bands of /isochrone/raster are computed in parallel on a separate pool as well
+        final int isochroneThreads = configuration.getGraphHopperConfiguration().getInt("routing.isochrone.threads", Runtime.getRuntime().availableProcessors());
+        final ExecutorService isochroneExecutor = environment.lifecycle().executorService("gh-isochrone-%d").
+                minThreads(isochroneThreads).maxThreads(isochroneThreads).build();
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
-                bind(graphHopper).to(GraphHopper.class);
+                bind(graphHopperManaged).to(GraphHopperManaged.class);
+                bind(requestExecutor).to(RequestExecutor.class);
+                bind(admissionController).to(AdmissionController.class);
+                bind(requestCoalescer).to(RequestCoalescer.class);
+                bind(mvtCache).to(MVTCache.class);
+                bind(mapMatchingSessions).to(MapMatchingSessions.class);
+                bind(candidateEdgeCache).to(CandidateEdgeCache.class);
+                bind(nearestExecutor).to(ExecutorService.class).named("nearestExecutor");
+                bind(isochroneExecutor).to(ExecutorService.class).named("isochroneExecutor");
+                if (graphHopperManaged.isReloadSupported())
+                    // the graph can be replaced at runtime, so every request needs to ask for the current one
+                    bindFactory(GraphHopperFactory.class).to(GraphHopper.class).in(RequestScoped.class);
+                else
+                    bind(graphHopper).to(GraphHopper.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
@@ -300,6 +370,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(RouteResource.class);
         environment.jersey().register(IsochroneResource.class);
         environment.jersey().register(MapMatchingResource.class);
+        environment.jersey().register(MapMatchingSessionResource.class);
 
         if (configuration.getGraphHopperConfiguration().has("gtfs.file")) {
             // These are pt-specific implementations of /route and /isochrone, but the same API.
@@ -328,7 +399,11 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
-        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged::getGraphHopper));
+        if (graphHopperManaged.isReloadSupported())
+            environment.admin().addTask(new ReloadGraphTask(graphHopperManaged));
+        if (mvtCache.isEnabled())
+            environment.admin().addTask(new PrerenderTilesTask(graphHopperManaged, mvtCache));
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
 
@@ -354,4 +429,12 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             });
         }
     }
+
+    private static void registerRouteCacheGauge(Environment environment, GraphHopperManaged graphHopperManaged, String name,
+                                                ToLongFunction<RouteCache> value) {
+        environment.metrics().gauge("routing.route_cache." + name, () -> () -> {
+            RouteCache routeCache = graphHopperManaged.getGraphHopper().getRouteCache();
+            return routeCache == null ? 0 : value.applyAsLong(routeCache);
+        });
+    }
 }
@@ -21,27 +21,56 @@ package com.graphhopper.http;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.routing.RoutingMetrics;
+import com.graphhopper.util.StopWatch;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Manages the lifecycle of the GraphHopper instance used by the web resources. Unless public transit is enabled a
+ * newly prepared graph can be loaded while the server is running, see {@link #reload(GraphHopperConfig)}. The
+ * resources obtain the current instance per request via {@link #acquire()} and give it back via {@link #release}, so
+ * that a replaced instance is only closed once all requests that are still using it are finished.
+ */
 public class GraphHopperManaged implements Managed {
 
     private final static Logger logger = LoggerFactory.getLogger(GraphHopperManaged.class);
-    private final GraphHopper graphHopper;
+    private final GraphHopperConfig configuration;
+    private final AtomicReference<LoadedGraph> current;
+    // the current graph and the replaced graphs that are still in use
+    private final List<LoadedGraph> loadedGraphs = new CopyOnWriteArrayList<>();
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
 
     public GraphHopperManaged(GraphHopperConfig configuration) {
+        this.configuration = configuration;
+        GraphHopper graphHopper;
         if (configuration.has("gtfs.file")) {
             graphHopper = new GraphHopperGtfs(configuration);
         } else {
             graphHopper = new GraphHopper();
         }
         graphHopper.init(configuration);
+        current = new AtomicReference<>(new LoadedGraph(graphHopper));
+        loadedGraphs.add(current.get());
     }
 
     @Override
     public void start() {
+        GraphHopper graphHopper = getGraphHopper();
         graphHopper.importOrLoad();
+        logInfo(graphHopper);
+        // the server does not accept connections, not even for the health check, before this is finished
+        runWarmUp(graphHopper, WarmUp.forStart(configuration));
+    }
+
+    private static void logInfo(GraphHopper graphHopper) {
         logger.info("loaded graph at:{}, data_reader_file:{}, encoded values:{}, {} bytes for edge flags, {}",
                 graphHopper.getGraphHopperLocation(), graphHopper.getOSMFile(),
                 graphHopper.getEncodingManager().toEncodedValuesAsString(),
@@ -49,14 +78,131 @@ public class GraphHopperManaged implements Managed {
                 graphHopper.getBaseGraph().toDetailsString());
     }
 
+    /**
+     * @return the GraphHopper instance that is currently used to serve new requests. This instance might be closed
+     * at any time if another graph is loaded, use {@link #acquire()} to prevent this.
+     */
     public GraphHopper getGraphHopper() {
-        return graphHopper;
+        return current.get().graphHopper;
+    }
+
+    public GraphHopperConfig getConfiguration() {
+        return configuration;
+    }
+
+    public boolean isReloadSupported() {
+        return !configuration.has("gtfs.file");
+    }
+
+    /**
+     * The given listener is called after a reloaded graph replaced the current one, see {@link #reload}
+     */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * @return the current GraphHopper instance, which will not be closed before it is passed to {@link #release}
+     */
+    public GraphHopper acquire() {
+        while (true) {
+            LoadedGraph graph = current.get();
+            graph.users.incrementAndGet();
+            // the graph might have been replaced in the meantime, in this case it could already be closed
+            if (graph == current.get())
+                return graph.graphHopper;
+            graph.release();
+        }
+    }
+
+    public void release(GraphHopper graphHopper) {
+        for (LoadedGraph graph : loadedGraphs) {
+            if (graph.graphHopper == graphHopper) {
+                graph.release();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown GraphHopper instance: " + graphHopper);
+    }
+
+    /**
+     * Loads the graph specified by the given configuration, which usually only differs from the initial one by
+     * graph.location (and maybe graph.dataaccess.default_type), and runs a few requests to warm it up. Afterwards
+     * new requests are served by the new graph and the previous one is closed once the requests that are still using
+     * it are finished. The graph must already contain the preparations for all configured profiles, otherwise they
+     * will be created before the graph is used. This method blocks until the new graph is in use.
+     */
+    public synchronized void reload(GraphHopperConfig newConfiguration) {
+        if (!isReloadSupported())
+            throw new IllegalStateException("Reloading the graph is not supported when public transit is enabled");
+        StopWatch sw = StopWatch.started();
+        GraphHopper graphHopper = new GraphHopper();
+        graphHopper.init(newConfiguration);
+        try {
+            if (!graphHopper.load())
+                throw new IllegalArgumentException("Could not load graph from " + graphHopper.getGraphHopperLocation());
+            runWarmUp(graphHopper, WarmUp.forReload(newConfiguration));
+            // the new graph reports to the same metrics as the current one
+            graphHopper.setRoutingMetrics(getGraphHopper().getRoutingMetrics());
+        } catch (RuntimeException e) {
+            graphHopper.close();
+            throw e;
+        }
+        LoadedGraph newGraph = new LoadedGraph(graphHopper);
+        loadedGraphs.add(newGraph);
+        LoadedGraph oldGraph = current.getAndSet(newGraph);
+        logInfo(graphHopper);
+        logger.info("switched from graph at:{} to graph at:{}, took: {}s", oldGraph.graphHopper.getGraphHopperLocation(),
+                graphHopper.getGraphHopperLocation(), sw.stop().getSeconds());
+        oldGraph.retire();
+        for (Runnable listener : reloadListeners)
+            listener.run();
+    }
+
+    private static void runWarmUp(GraphHopper graphHopper, WarmUp warmUp) {
+        // the warm-up requests should not show up in the metrics
+        RoutingMetrics routingMetrics = graphHopper.getRoutingMetrics();
+        graphHopper.setRoutingMetrics(RoutingMetrics.NONE);
+        try {
+            warmUp.run(graphHopper);
+        } finally {
+            graphHopper.setRoutingMetrics(routingMetrics);
+        }
     }
 
     @Override
     public void stop() {
-        graphHopper.close();
+        for (LoadedGraph graph : loadedGraphs)
+            graph.close();
     }
 
+    private class LoadedGraph {
+        final GraphHopper graphHopper;
+        final AtomicInteger users = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile boolean retired;
 
+        LoadedGraph(GraphHopper graphHopper) {
+            this.graphHopper = graphHopper;
+        }
+
+        void release() {
+            if (users.decrementAndGet() == 0 && retired)
+                close();
+        }
+
+        void retire() {
+            retired = true;
+            if (users.get() == 0)
+                close();
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                graphHopper.close();
+                loadedGraphs.remove(this);
+                logger.info("closed graph at:{}", graphHopper.getGraphHopperLocation());
+            }
+        }
+    }
 }
@@ -0,0 +1,215 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the encoded vector tiles of the /mvt endpoint, so that they do not have to be created again for every
+ * request. The tiles are kept in memory up to mvt.cache.max_bytes, evicting the least recently used tiles first, and
+ * optionally in mvt.cache.directory, where they survive a restart of the server. The tiles are stored per graph, i.e.
+ * the key contains the graph location and the dates of the import and of the last applied changes, so tiles of a
+ * previous graph are never returned. When the graph is reloaded the cache should be cleared to free the space of the
+ * old tiles.
+ */
+public class MVTCache {
+    private static final Logger logger = LoggerFactory.getLogger(MVTCache.class);
+    private final long maxBytes;
+    private final String directory;
+    private final LinkedHashMap<String, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public MVTCache(GraphHopperConfig config) {
+        this(config.getLong("mvt.cache.max_bytes", 0), config.getString("mvt.cache.directory", ""));
+    }
+
+    public MVTCache(long maxBytes, String directory) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("mvt.cache.max_bytes must not be negative but was " + maxBytes);
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0 || !directory.isEmpty();
+    }
+
+    /**
+     * @return the cached tile for the given coordinates or the tile created by the given function, which is then
+     * added to the cache
+     */
+    public Tile get(GraphHopper graphHopper, int z, int x, int y, boolean renderAll, Supplier<byte[]> createTile) {
+        if (!isEnabled())
+            return new Tile(createTile.get());
+        return get(getGraphVersion(graphHopper), z, x, y, renderAll, createTile);
+    }
+
+    Tile get(String graphVersion, int z, int x, int y, boolean renderAll, Supplier<byte[]> createTile) {
+        String key = graphVersion + "/" + z + "/" + x + "/" + y + (renderAll ? "_all" : "");
+        Tile tile = getFromMemory(key);
+        if (tile != null)
+            return tile;
+        tile = readFromDisk(key);
+        if (tile == null) {
+            tile = new Tile(createTile.get());
+            writeToDisk(key, tile);
+        }
+        putIntoMemory(key, tile);
+        return tile;
+    }
+
+    private synchronized Tile getFromMemory(String key) {
+        Tile tile = tiles.get(key);
+        if (tile == null)
+            misses++;
+        else
+            hits++;
+        return tile;
+    }
+
+    private synchronized void putIntoMemory(String key, Tile tile) {
+        if (tile.bytes.length > maxBytes)
+            return;
+        Tile previous = tiles.put(key, tile);
+        if (previous != null)
+            bytes -= previous.bytes.length;
+        bytes += tile.bytes.length;
+        Iterator<Tile> iter = tiles.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= iter.next().bytes.length;
+            iter.remove();
+        }
+    }
+
+    private Tile readFromDisk(String key) {
+        if (directory.isEmpty())
+            return null;
+        Path file = getFile(key);
+        try {
+            return Files.exists(file) ? new Tile(Files.readAllBytes(file)) : null;
+        } catch (IOException e) {
+            logger.warn("could not read tile " + file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Tile tile) {
+        if (directory.isEmpty())
+            return;
+        Path file = getFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            // other threads must never see a partially written tile
+            Path tmp = Files.createTempFile(file.getParent(), "tile", ".tmp");
+            Files.write(tmp, tile.bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("could not write tile " + file, e);
+        }
+    }
+
+    private Path getFile(String key) {
+        return Paths.get(directory, key + ".mvt");
+    }
+
+    private static String getGraphVersion(GraphHopper graphHopper) {
+        return getGraphVersion(graphHopper.getGraphHopperLocation(), graphHopper.getProperties().getAll());
+    }
+
+    /**
+     * @return a short string that changes whenever the graph is imported again or changes are applied to it, see
+     * GraphHopper.importChangesAndClose
+     */
+    static String getGraphVersion(String location, Map<String, String> properties) {
+        String version = location + "|" + properties.getOrDefault("datareader.import.date", "")
+                + "|" + properties.getOrDefault("datareader.changes.date", "");
+        CRC32 crc = new CRC32();
+        crc.update(version.getBytes());
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Removes all tiles from memory and from the directory.
+     */
+    public void clear() {
+        synchronized (this) {
+            tiles.clear();
+            bytes = 0;
+        }
+        if (!directory.isEmpty()) {
+            File[] graphDirs = new File(directory).listFiles(File::isDirectory);
+            if (graphDirs != null)
+                for (File graphDir : graphDirs)
+                    Helper.removeDir(graphDir);
+        }
+    }
+
+    public synchronized int getSize() {
+        return tiles.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public static class Tile {
+        private final byte[] bytes;
+        private final String etag;
+
+        public Tile(byte[] bytes) {
+            this.bytes = bytes;
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            this.etag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length);
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.matching.MapMatchingSession;
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link MapMatchingSession}s of the /match/sessions endpoint by an id that is chosen by the client, e.g.
+ * the id of a vehicle. At most map_matching.sessions.max sessions are kept, removing the least recently used ones
+ * first, and sessions that did not receive observations for map_matching.sessions.idle_timeout_seconds are removed
+ * together with their pending observations. Idle sessions are removed whenever a session is requested and, while
+ * this class is started, regularly in the background, so they do not keep their memory when no requests arrive. The
+ * sessions belong to the current graph, so they have to be cleared when the graph is reloaded. Until then a session is
+ * only returned for the GraphHopper instance that it was created for, because the graph of an old instance might
+ * already be closed.
+ */
+public class MapMatchingSessions implements Managed {
+    private final int maxSessions;
+    private final long idleTimeoutMillis;
+    // in access order, so the least recently used session comes first
+    private final LinkedHashMap<String, Entry> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private ScheduledExecutorService cleanupExecutor;
+
+    public MapMatchingSessions(GraphHopperConfig config) {
+        this(config.getInt("map_matching.sessions.max", 100_000),
+                config.getLong("map_matching.sessions.idle_timeout_seconds", 600) * 1000);
+    }
+
+    public MapMatchingSessions(int maxSessions, long idleTimeoutMillis) {
+        if (maxSessions < 0)
+            throw new IllegalArgumentException("map_matching.sessions.max must not be negative but was " + maxSessions);
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @return false if map_matching.sessions.max is 0, i.e. no sessions can be created
+     */
+    public boolean isEnabled() {
+        return maxSessions > 0;
+    }
+
+    /**
+     * @return the session with the given id or a new session created by the given function. A session that was
+     * created for another GraphHopper instance is replaced by a new one.
+     */
+    public synchronized MapMatchingSession getOrCreate(String id, GraphHopper graphHopper, Supplier<MapMatchingSession> createSession) {
+        long now = System.currentTimeMillis();
+        removeIdleSessions(now);
+        Entry entry = sessions.get(id);
+        if (entry == null || entry.graphHopper != graphHopper) {
+            if (maxSessions == 0)
+                throw new IllegalStateException("Map matching sessions are disabled, see map_matching.sessions.max");
+            entry = new Entry(graphHopper, createSession.get());
+            sessions.put(id, entry);
+            Iterator<Entry> iter = sessions.values().iterator();
+            while (sessions.size() > maxSessions) {
+                iter.next();
+                iter.remove();
+            }
+        }
+        entry.lastAccess = now;
+        return entry.session;
+    }
+
+    /**
+     * @return the removed session or null if there is no session with the given id for the given GraphHopper instance
+     */
+    public synchronized MapMatchingSession remove(String id, GraphHopper graphHopper) {
+        Entry entry = sessions.remove(id);
+        return entry == null || entry.graphHopper != graphHopper ? null : entry.session;
+    }
+
+    synchronized void removeIdleSessions(long now) {
+        Iterator<Entry> iter = sessions.values().iterator();
+        while (iter.hasNext()) {
+            // the sessions are in access order, so we can stop at the first session that is not idle
+            if (now - iter.next().lastAccess <= idleTimeoutMillis)
+                break;
+            iter.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        sessions.clear();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!isEnabled() || cleanupExecutor != null)
+            return;
+        cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gh-match-sessions-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // an idle session is kept at most for about 1.5 times the idle timeout, but we check at least every minute
+        long periodMillis = Math.max(1000, Math.min(60_000, idleTimeoutMillis / 2));
+        cleanupExecutor.scheduleWithFixedDelay(() -> removeIdleSessions(System.currentTimeMillis()),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (cleanupExecutor != null) {
+            cleanupExecutor.shutdownNow();
+            cleanupExecutor = null;
+        }
+    }
+
+    public synchronized int getSize() {
+        return sessions.size();
+    }
+
+    private static class Entry {
+        final GraphHopper graphHopper;
+        final MapMatchingSession session;
+        long lastAccess;
+
+        Entry(GraphHopper graphHopper, MapMatchingSession session) {
+            this.graphHopper = graphHopper;
+            this.session = session;
+        }
+    }
+}
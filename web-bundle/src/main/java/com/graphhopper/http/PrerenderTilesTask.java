@@ -0,0 +1,154 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.resources.MVTResource;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import io.dropwizard.servlets.tasks.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admin task to fill the {@link MVTCache} with all tiles of a range of zoom levels that overlap the bounds of the
+ * graph:
+ * <pre>
+ * curl -X POST 'localhost:8990/tasks/prerender-tiles?min_zoom=10&amp;max_zoom=14&amp;threads=4'
+ * </pre>
+ * The tiles are created in the background and the task returns immediately. Only one pre-rendering runs at a time.
+ */
+public class PrerenderTilesTask extends Task {
+    private static final Logger logger = LoggerFactory.getLogger(PrerenderTilesTask.class);
+    // tiles up to this zoom level are empty, see MVTResource
+    private static final int MIN_ZOOM = 10;
+    private static final int MAX_ZOOM = 18;
+    private final GraphHopperManaged graphHopperManaged;
+    private final MVTCache cache;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PrerenderTilesTask(GraphHopperManaged graphHopperManaged, MVTCache cache) {
+        super("prerender-tiles");
+        this.graphHopperManaged = graphHopperManaged;
+        this.cache = cache;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        if (!cache.isEnabled())
+            throw new IllegalStateException("The tile cache is disabled, see mvt.cache.max_bytes and mvt.cache.directory");
+        int minZoom = Math.max(MIN_ZOOM, getInt(parameters, "min_zoom", MIN_ZOOM));
+        int maxZoom = getInt(parameters, "max_zoom", 14);
+        int threads = getInt(parameters, "threads", 2);
+        if (maxZoom > MAX_ZOOM || minZoom > maxZoom)
+            throw new IllegalArgumentException("max_zoom must be between min_zoom and " + MAX_ZOOM);
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+        if (!running.compareAndSet(false, true)) {
+            output.println("pre-rendering is already running");
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                prerender(minZoom, maxZoom, threads);
+            } catch (Exception e) {
+                logger.error("pre-rendering tiles failed", e);
+            } finally {
+                running.set(false);
+            }
+        }, "prerender-tiles");
+        thread.setDaemon(true);
+        thread.start();
+        output.println("started pre-rendering tiles for zoom " + minZoom + " to " + maxZoom);
+    }
+
+    private void prerender(int minZoom, int maxZoom, int threads) throws InterruptedException {
+        StopWatch sw = StopWatch.started();
+        BBox bounds = graphHopperManaged.getGraphHopper().getBaseGraph().getBounds();
+        AtomicInteger tiles = new AtomicInteger();
+        // there can be millions of tiles, so with a bounded queue this thread renders a tile itself when the queue is
+        // full instead of queuing all tiles up front
+        ThreadPoolExecutor executorService = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (int z = minZoom; z <= maxZoom; z++) {
+                int[] range = getTileRange(bounds, z);
+                for (int x = range[0]; x <= range[2]; x++) {
+                    for (int y = range[1]; y <= range[3]; y++) {
+                        final int zoom = z, tileX = x, tileY = y;
+                        executorService.submit(() -> {
+                            // the graph might be replaced in the meantime, so we ask for the current one for every tile
+                            GraphHopper graphHopper = graphHopperManaged.acquire();
+                            try {
+                                cache.get(graphHopper, zoom, tileX, tileY, false,
+                                        () -> MVTResource.createTile(graphHopper, zoom, tileX, tileY, false));
+                                tiles.incrementAndGet();
+                            } finally {
+                                graphHopperManaged.release(graphHopper);
+                            }
+                        });
+                    }
+                }
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            executorService.shutdownNow();
+        }
+        logger.info("pre-rendered {} tiles for zoom {} to {}, took: {}s", tiles.get(), minZoom, maxZoom,
+                sw.stop().getSeconds());
+    }
+
+    /**
+     * @return the smallest and largest x and y of the tiles of the given zoom level that overlap the given bounds as
+     * minX, minY, maxX, maxY
+     */
+    static int[] getTileRange(BBox bounds, int zoom) {
+        return new int[]{
+                lonToTileX(bounds.minLon, zoom), latToTileY(bounds.maxLat, zoom),
+                lonToTileX(bounds.maxLon, zoom), latToTileY(bounds.minLat, zoom)};
+    }
+
+    private static int lonToTileX(double lon, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((lon + 180) / 360 * n)));
+    }
+
+    private static int latToTileY(double lat, int zoom) {
+        // web mercator projection, the y coordinates of the tiles go from north to south
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(lat);
+        double y = (1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(y)));
+    }
+
+    private static int getInt(Map<String, List<String>> parameters, String key, int defaultValue) {
+        List<String> values = parameters.get(key);
+        return values == null || values.isEmpty() ? defaultValue : Integer.parseInt(values.get(0));
+    }
+}
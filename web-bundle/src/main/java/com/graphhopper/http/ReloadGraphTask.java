@@ -0,0 +1,56 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task to replace the graph of the running server, e.g. after a new graph was prepared in another folder:
+ * <pre>
+ * curl -X POST 'localhost:8990/tasks/reload-graph?graph.location=graph-cache-new&amp;graph.dataaccess.default_type=MMAP'
+ * </pre>
+ * All other settings are taken from the current configuration. See {@link GraphHopperManaged#reload}.
+ */
+public class ReloadGraphTask extends Task {
+    private final GraphHopperManaged graphHopperManaged;
+
+    public ReloadGraphTask(GraphHopperManaged graphHopperManaged) {
+        super("reload-graph");
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        List<String> location = parameters.get("graph.location");
+        if (location == null || location.size() != 1)
+            throw new IllegalArgumentException("Specify exactly one graph.location");
+        GraphHopperConfig config = new GraphHopperConfig(graphHopperManaged.getConfiguration());
+        config.putObject("graph.location", location.get(0));
+        List<String> daType = parameters.get("graph.dataaccess.default_type");
+        if (daType != null && !daType.isEmpty())
+            config.putObject("graph.dataaccess.default_type", daType.get(0));
+        graphHopperManaged.reload(config);
+        output.println("now using graph at " + graphHopperManaged.getGraphHopper().getGraphHopperLocation());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Lets identical requests that arrive at the same time share a single computation. If routing.coalesce_requests is
+ * enabled, the first request for a key computes the result and all requests with an equal key that arrive in the
+ * meantime wait for this result instead of doing the same work again. Optionally the results are kept for
+ * routing.coalesce_requests.cache_ttl_ms, so that identical requests arriving shortly afterwards are answered from
+ * memory too. The keys must include everything the result depends on, and the results must not be modified later
+ * because they are shared between requests. Failures are passed to all waiting requests but are never cached, except
+ * if the first request was cancelled, e.g. because its client disconnected, see {@link RequestExecutor.CancelledException}.
+ * Then one of the waiting requests does the calculation instead.
+ * <p>
+ * The keys usually contain the GraphHopper instance, so the cache needs to be cleared when the graph is reloaded.
+ */
+public class RequestCoalescer {
+    // passed to the waiting requests if the first request was cancelled
+    private static final Object RETRY = new Object();
+    private final boolean enabled;
+    private final long cacheTtlMillis;
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Object, CachedResult> cache;
+
+    public RequestCoalescer(GraphHopperConfig config) {
+        this(config.getBool("routing.coalesce_requests", false),
+                config.getLong("routing.coalesce_requests.cache_ttl_ms", 0),
+                config.getInt("routing.coalesce_requests.cache_size", 1000));
+    }
+
+    public RequestCoalescer(boolean enabled, long cacheTtlMillis, int cacheSize) {
+        if (cacheTtlMillis < 0)
+            throw new IllegalArgumentException("routing.coalesce_requests.cache_ttl_ms must not be negative but was " + cacheTtlMillis);
+        this.enabled = enabled;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedResult> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the result for the given key, either by running the task or by waiting for another request with an
+     * equal key that is already running. Exceptions thrown by the task are rethrown unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> task) {
+        if (!enabled)
+            return task.get();
+
+        if (cacheTtlMillis > 0) {
+            synchronized (cache) {
+                CachedResult cached = cache.get(key);
+                if (cached != null) {
+                    if (cached.expiresAt > System.currentTimeMillis())
+                        return (T) cached.result;
+                    cache.remove(key);
+                }
+            }
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        while (true) {
+            CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+            if (running == null)
+                break;
+            Object result = await(running);
+            if (result != RETRY)
+                return (T) result;
+        }
+
+        try {
+            T result = task.get();
+            if (cacheTtlMillis > 0) {
+                synchronized (cache) {
+                    cache.put(key, new CachedResult(result, System.currentTimeMillis() + cacheTtlMillis));
+                }
+            }
+            future.complete(result);
+            return result;
+        } catch (RequestExecutor.CancelledException e) {
+            // the waiting requests are not cancelled, so we let them retry. the future must be removed first so that
+            // they do not find it again.
+            inFlight.remove(key, future);
+            future.complete(RETRY);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Removes all cached results, e.g. when the graph was replaced.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException("Request was interrupted", Response.Status.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class CachedResult {
+        final Object result;
+        final long expiresAt;
+
+        CachedResult(Object result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
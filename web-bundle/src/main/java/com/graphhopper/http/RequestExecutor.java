@@ -0,0 +1,204 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import io.dropwizard.lifecycle.Managed;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executes the expensive part of a request like the route calculation, the isochrone or the map matching. By default
+ * the work is done directly in the thread of the request. If routing.separate_threads is enabled the work is done in
+ * a separate thread instead, a virtual thread if the JVM supports them. The thread of the request then waits for the
+ * result and interrupts the separate thread if the client disconnects or if the request takes longer than
+ * routing.request_timeout_ms. The routing algorithms regularly check if their thread was interrupted and stop early,
+ * so that no CPU time is wasted for requests whose response nobody will read.
+ */
+public class RequestExecutor implements Managed {
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+    // how often we check if the client is still connected
+    private static final long POLL_MILLIS = 50;
+    private final ExecutorService executorService;
+    private final long timeoutMillis;
+
+    public RequestExecutor(GraphHopperConfig config) {
+        this(config.getBool("routing.separate_threads", false), config.getLong("routing.request_timeout_ms", Long.MAX_VALUE));
+    }
+
+    public RequestExecutor(boolean separateThreads, long timeoutMillis) {
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("routing.request_timeout_ms must be positive but was " + timeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.executorService = separateThreads ? createExecutorService() : null;
+    }
+
+    private static ExecutorService createExecutorService() {
+        try {
+            // only available since Java 21
+            ExecutorService executorService = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("running requests on virtual threads");
+            return executorService;
+        } catch (ReflectiveOperationException e) {
+            logger.info("virtual threads are not supported, running requests on a pool of platform threads");
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "gh-request-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return the maximum time for a request in milliseconds or Long.MAX_VALUE if there is no limit. This can be used
+     * for algorithms that run while the response is written, i.e. outside of {@link #execute}.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Runs the given task and returns its result. Exceptions thrown by the task are rethrown unchanged. If the request
+     * is cancelled this method still waits until the task stopped, because the task might use resources like the graph
+     * that are released when the request is finished.
+     *
+     * @throws CancelledException if the request took too long or the client disconnected
+     */
+    public <T> T execute(HttpServletRequest httpReq, Supplier<T> task) {
+        if (executorService == null)
+            return task.get();
+
+        long deadline = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMillis;
+        Task<T> callable = new Task<>(task);
+        Future<T> future = executorService.submit(callable);
+        try {
+            while (true) {
+                try {
+                    return future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        callable.cancel(future);
+                        throw new CancelledException("Request took longer than the limit of " + timeoutMillis + "ms");
+                    }
+                    if (isDisconnected(httpReq)) {
+                        callable.cancel(future);
+                        logger.info("cancelled request because the client disconnected: " + httpReq.getRequestURI());
+                        throw new CancelledException("Client disconnected");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            callable.cancel(future);
+            Thread.currentThread().interrupt();
+            throw new CancelledException("Request was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Wraps a task so that a cancelled task can be waited for. Future.cancel returns immediately, even if the task
+     * is still running.
+     */
+    private static class Task<T> implements Callable<T> {
+        private final Supplier<T> task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        Task(Supplier<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call() {
+            if (!claimed.compareAndSet(false, true))
+                throw new CancellationException();
+            try {
+                return task.get();
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Interrupts the task and waits until it stopped. A task that did not start yet will never start.
+         */
+        void cancel(Future<T> future) {
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true))
+                return;
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true if Jetty already noticed that the connection of the given request was closed
+     */
+    static boolean isDisconnected(HttpServletRequest httpReq) {
+        Request request = Request.getBaseRequest(httpReq);
+        if (request == null)
+            return false;
+        HttpChannel channel = request.getHttpChannel();
+        if (channel == null)
+            return false;
+        EndPoint endPoint = channel.getEndPoint();
+        return endPoint != null && !endPoint.isOpen();
+    }
+
+    @Override
+    public void stop() {
+        if (executorService != null)
+            executorService.shutdownNow();
+    }
+
+    /**
+     * Thrown with status 503 if the work for a request was cancelled, i.e. it failed because of the request and not
+     * because of its parameters.
+     */
+    public static class CancelledException extends WebApplicationException {
+        public CancelledException(String message) {
+            super(message, Response.Status.SERVICE_UNAVAILABLE);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.resources.RouteResource;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.graphhopper.util.Parameters.Details.PATH_DETAILS;
+import static com.graphhopper.util.Parameters.Routing.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Sends route requests to a freshly loaded graph before it is used for real requests, so that the JIT compiler has
+ * compiled the hot code paths, the classes for the custom models are created and the memory mapped pages of the graph
+ * are loaded. The requests are either read from a file or created randomly within the bounds of the graph for every
+ * profile and every solver (CH, LM and flexible) that is available for it.
+ */
+public class WarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+    // the flexible mode is only used for short routes, otherwise a single request could take very long
+    private static final double FLEX_MAX_OFFSET_DEGREES = 0.03;
+    private final int requestsPerSolver;
+    private final int threads;
+    private final String file;
+    private final List<String> snapPreventionsDefault;
+
+    public WarmUp(int requestsPerSolver, int threads, String file) {
+        this(requestsPerSolver, threads, file, List.of());
+    }
+
+    /**
+     * @param requestsPerSolver      the number of random requests per profile and solver, ignored if a file is
+     *                               specified
+     * @param file                   a file with one request per line, written like the query string of a GET /route
+     *                               request, e.g. point=51.1,12.3&amp;point=51.2,12.4&amp;profile=car. Can be empty.
+     * @param snapPreventionsDefault used for the requests of the file without snap_prevention, like for GET /route
+     */
+    public WarmUp(int requestsPerSolver, int threads, String file, List<String> snapPreventionsDefault) {
+        if (threads < 1)
+            throw new IllegalArgumentException("warm_up.threads must be positive but was " + threads);
+        this.requestsPerSolver = requestsPerSolver;
+        this.threads = threads;
+        this.file = file;
+        this.snapPreventionsDefault = snapPreventionsDefault;
+    }
+
+    /**
+     * Creates the warm-up that runs when the server starts, see warm_up.requests, warm_up.file and warm_up.threads
+     */
+    public static WarmUp forStart(GraphHopperConfig config) {
+        return new WarmUp(config.getInt("warm_up.requests", 0), config.getInt("warm_up.threads", 2),
+                config.getString("warm_up.file", ""), RouteResource.getSnapPreventionsDefault(config));
+    }
+
+    /**
+     * Creates the warm-up that runs before a reloaded graph is used, see graph.reload.warm_up_requests
+     */
+    public static WarmUp forReload(GraphHopperConfig config) {
+        return new WarmUp(config.getInt("graph.reload.warm_up_requests", 100), config.getInt("warm_up.threads", 2),
+                config.getString("warm_up.file", ""), RouteResource.getSnapPreventionsDefault(config));
+    }
+
+    public boolean isEnabled() {
+        return !file.isEmpty() || requestsPerSolver > 0;
+    }
+
+    public void run(GraphHopper graphHopper) {
+        if (!isEnabled())
+            return;
+        List<GHRequest> requests = file.isEmpty() ? createRandomRequests(graphHopper) : readRequests(file, snapPreventionsDefault);
+        StopWatch sw = StopWatch.started();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(requests.size());
+            for (GHRequest request : requests) {
+                futures.add(executorService.submit(() -> {
+                    try {
+                        // the responses do not matter, errors like points that cannot be snapped are expected here
+                        graphHopper.route(request);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (Exception e) {
+            throw new RuntimeException("warm-up was interrupted", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+        logger.info("warm-up with {} requests on {} threads took: {}s, failed requests: {}", requests.size(), threads,
+                sw.stop().getSeconds(), failed.get());
+    }
+
+    List<GHRequest> createRandomRequests(GraphHopper graphHopper) {
+        BBox bounds = graphHopper.getBaseGraph().getBounds();
+        Random random = new Random(123);
+        List<GHRequest> requests = new ArrayList<>();
+        for (Profile profile : graphHopper.getProfiles()) {
+            boolean ch = graphHopper.getCHGraphs().containsKey(profile.getName());
+            boolean lm = graphHopper.getLandmarks().containsKey(profile.getName());
+            for (int i = 0; i < requestsPerSolver; i++) {
+                if (ch)
+                    requests.add(new GHRequest(randomPoint(random, bounds), randomPoint(random, bounds)).
+                            setProfile(profile.getName()));
+                if (lm)
+                    requests.add(new GHRequest(randomPoint(random, bounds), randomPoint(random, bounds)).
+                            setProfile(profile.getName()).
+                            putHint(Parameters.CH.DISABLE, true));
+                GHPoint from = randomPoint(random, bounds);
+                GHPoint to = new GHPoint(
+                        from.lat + (2 * random.nextDouble() - 1) * FLEX_MAX_OFFSET_DEGREES,
+                        from.lon + (2 * random.nextDouble() - 1) * FLEX_MAX_OFFSET_DEGREES);
+                requests.add(new GHRequest(from, to).
+                        setProfile(profile.getName()).
+                        putHint(Parameters.CH.DISABLE, true).
+                        putHint(Parameters.Landmark.DISABLE, true));
+            }
+        }
+        return requests;
+    }
+
+    private static GHPoint randomPoint(Random random, BBox bounds) {
+        return new GHPoint(
+                bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat),
+                bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon));
+    }
+
+    static List<GHRequest> readRequests(String file, List<String> snapPreventionsDefault) {
+        try {
+            List<GHRequest> requests = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(file), UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    requests.add(parseRequest(line, snapPreventionsDefault));
+            }
+            return requests;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read warm-up requests from " + file, e);
+        }
+    }
+
+    /**
+     * Creates the request like GET /route does for the given query string, so that the warm-up runs the same code.
+     */
+    static GHRequest parseRequest(String queryString, List<String> snapPreventionsDefault) {
+        // the query string might have been copied from a log including the path
+        int index = queryString.indexOf('?');
+        if (index >= 0)
+            queryString = queryString.substring(index + 1);
+        MultivaluedMap<String, String> parameters = new MultivaluedHashMap<>();
+        for (String parameter : queryString.split("&")) {
+            if (parameter.isEmpty())
+                continue;
+            int equals = parameter.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), UTF_8);
+            parameters.add(key, value);
+        }
+        // the values are converted like the query parameters of GET /route with their default values
+        List<GHPoint> points = getList(parameters, "point").stream().map(GHPoint::fromString).collect(toList());
+        List<Double> headings = getList(parameters, "heading").stream().map(Double::parseDouble).collect(toList());
+        String elevationWayPointMaxDistance = parameters.getFirst(ELEVATION_WAY_POINT_MAX_DISTANCE);
+        boolean instructions = "gpx".equalsIgnoreCase(parameters.getFirst("type"))
+                || Boolean.parseBoolean(getString(parameters, INSTRUCTIONS, "true"));
+        GHRequest request = RouteResource.createGHRequest(parameters, points, parameters.getFirst("profile"),
+                getString(parameters, ALGORITHM, ""), getString(parameters, "locale", "en"), headings,
+                getList(parameters, POINT_HINT), getList(parameters, CURBSIDE),
+                getList(parameters, SNAP_PREVENTION), getList(parameters, PATH_DETAILS),
+                Boolean.parseBoolean(getString(parameters, CALC_POINTS, "true")), instructions,
+                Double.parseDouble(getString(parameters, WAY_POINT_MAX_DISTANCE, "0.5")),
+                elevationWayPointMaxDistance == null ? null : Double.parseDouble(elevationWayPointMaxDistance),
+                snapPreventionsDefault);
+        RouteResource.removeLegacyParameters(request.getHints());
+        return request;
+    }
+
+    private static List<String> getList(MultivaluedMap<String, String> parameters, String key) {
+        List<String> values = parameters.get(key);
+        return values == null ? List.of() : values;
+    }
+
+    private static String getString(MultivaluedMap<String, String> parameters, String key, String defaultValue) {
+        String value = parameters.getFirst(key);
+        return value == null ? defaultValue : value;
+    }
+}
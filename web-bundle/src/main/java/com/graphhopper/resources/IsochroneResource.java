@@ -5,9 +5,13 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
+import com.graphhopper.http.AdmissionController;
+import com.graphhopper.http.RequestCoalescer;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.http.RequestExecutor;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.IsochroneRasterizer;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
@@ -26,16 +30,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.function.ToDoubleFunction;
 
 import static com.graphhopper.resources.IsochroneResource.ResponseType.geojson;
@@ -52,15 +65,29 @@ public class IsochroneResource {
     private final GraphHopper graphHopper;
     private final Triangulator triangulator;
     private final ProfileResolver profileResolver;
+    private final RequestExecutor requestExecutor;
+    private final AdmissionController admissionController;
+    private final RequestCoalescer requestCoalescer;
     private final String osmDate;
+    private final int maxRasterCells;
+    private final ExecutorService executorService;
+    private final int rasterBands;
 
     @Inject
-    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver) {
+    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver, RequestExecutor requestExecutor, AdmissionController admissionController, RequestCoalescer requestCoalescer,
+                             @Named("isochroneExecutor") ExecutorService executorService) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.triangulator = triangulator;
         this.profileResolver = profileResolver;
+        this.requestExecutor = requestExecutor;
+        this.admissionController = admissionController;
+        this.requestCoalescer = requestCoalescer;
         this.osmDate = graphHopper.getProperties().get("datareader.data.date");
+        this.maxRasterCells = config.getInt("routing.isochrone.raster.max_cells", 10_000_000);
+        this.executorService = executorService;
+        // more bands than threads, so that a band with many segments does not delay the whole grid
+        this.rasterBands = 4 * config.getInt("routing.isochrone.threads", Runtime.getRuntime().availableProcessors());
     }
 
     public enum ResponseType {json, geojson}
@@ -68,6 +95,7 @@ public class IsochroneResource {
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response doGet(
+            @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
             @QueryParam("profile") String profileName,
             @QueryParam("buckets") @Range(min = 1, max = 20) @DefaultValue("1") OptionalInt nBuckets,
@@ -80,65 +108,41 @@ public class IsochroneResource {
             @QueryParam("tolerance") @DefaultValue("0") double toleranceInMeter,
             @QueryParam("full_geometry") @DefaultValue("false") boolean fullGeometry) {
         StopWatch sw = new StopWatch().start();
-        PMap hintsMap = new PMap();
-        RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
-        hintsMap.putObject(Parameters.CH.DISABLE, true);
-        hintsMap.putObject(Parameters.Landmark.DISABLE, true);
-
-        PMap profileResolverHints = new PMap(hintsMap);
-        profileResolverHints.putObject("profile", profileName);
-        profileName = profileResolver.resolveProfile(profileResolverHints);
-        removeLegacyParameters(hintsMap);
-
-        Profile profile = graphHopper.getProfile(profileName);
-        if (profile == null)
-            throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
-        LocationIndex locationIndex = graphHopper.getLocationIndex();
-        BaseGraph graph = graphHopper.getBaseGraph();
-        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
-        BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
-        Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
-        if (!snap.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-        QueryGraph queryGraph = QueryGraph.create(graph, snap);
-        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        Search search = createSearch(uriInfo, profileName, reverseFlow, point, timeLimitInSeconds, distanceLimitInMeter, weightLimit);
+        Snap snap = search.snap;
+        QueryGraph queryGraph = search.queryGraph;
+        ShortestPathTree shortestPathTree = search.shortestPathTree;
+        double limit = search.limit;
+        ToDoubleFunction<ShortestPathTree.IsoLabel> fz = search.fz;
 
-        double limit;
-        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
-        if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
-            limit = weightLimit.getAsLong();
-            shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 200));
-            fz = l -> l.weight;
-        } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
-            limit = distanceLimitInMeter.getAsLong();
-            shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
-            fz = l -> l.distance;
-        } else {
-            limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
-            shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
-            fz = l -> l.time;
-        }
         ArrayList<Double> zs = new ArrayList<>();
         double delta = limit / nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."));
         for (int i = 0; i < nBuckets.getAsInt(); i++) {
             zs.add((i + 1) * delta);
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
-
-        ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
-        ArrayList<Geometry> isochrones = new ArrayList<>();
-        for (Double z : zs) {
-            logger.info("Building contour z={}", z);
-            MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
-            if (fullGeometry) {
-                isochrones.add(isochrone);
-            } else {
-                Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
-                isochrones.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+        // the result only depends on the query parameters, but not on the order in which they were specified
+        Object key = requestCoalescer.isEnabled() ? Arrays.asList(graphHopper, new TreeMap<>(uriInfo.getQueryParameters())) : null;
+        List<Geometry> isochrones = requestCoalescer.execute(key, () -> {
+            try (AdmissionController.Permit permit = admissionController.admit(AdmissionController.CostClass.HIGH)) {
+                return requestExecutor.execute(httpReq, () -> {
+                    Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+
+                    ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+                    logger.info("Building contours z={}", zs);
+                    ArrayList<Geometry> list = new ArrayList<>();
+                    for (MultiPolygon isochrone : contourBuilder.computeIsolines(zs, result.seedEdges, executorService)) {
+                        if (fullGeometry) {
+                            list.add(isochrone);
+                        } else {
+                            Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
+                            list.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                        }
+                    }
+                    return list;
+                });
             }
-        }
+        });
         ArrayList<JsonFeature> features = new ArrayList<>();
         for (Geometry isochrone : isochrones) {
             JsonFeature feature = new JsonFeature();
@@ -173,6 +177,141 @@ public class IsochroneResource {
                 build();
     }
 
+    /**
+     * Returns the smallest time in milliseconds, distance in meters or weight (depending on the limit that is used)
+     * at which the cells of a grid are reached. No triangulation is needed for this. The grid is returned either in a
+     * binary format or as ESRI ASCII grid, which can be read by most GIS tools. The binary format consists of the
+     * number of columns and rows as 4 byte int, the longitude of the west edge, the latitude of the north edge and
+     * the cell size in degrees as 8 byte double, followed by the values of the cells row by row from north to south
+     * as 4 byte float, all in big-endian order. Cells that are not reached are NaN in the binary format.
+     */
+    @GET
+    @Path("raster")
+    @Produces({MediaType.APPLICATION_OCTET_STREAM, MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON})
+    public Response doGetRaster(
+            @Context HttpServletRequest httpReq,
+            @Context UriInfo uriInfo,
+            @QueryParam("profile") String profileName,
+            @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
+            @QueryParam("point") @NotNull GHPointParam point,
+            @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
+            @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceLimitInMeter,
+            @QueryParam("weight_limit") @DefaultValue("-1") OptionalLong weightLimit,
+            @QueryParam("cell_size") @DefaultValue("100") double cellSizeInMeter,
+            @QueryParam("type") @DefaultValue("binary") RasterType rasterType) {
+        if (!(cellSizeInMeter > 0) || Double.isInfinite(cellSizeInMeter))
+            throw new IllegalArgumentException("cell_size must be positive but was " + cellSizeInMeter);
+        StopWatch sw = new StopWatch().start();
+        Search search = createSearch(uriInfo, profileName, reverseFlow, point, timeLimitInSeconds, distanceLimitInMeter, weightLimit);
+        Object key = requestCoalescer.isEnabled() ? Arrays.asList(graphHopper, "raster", new TreeMap<>(uriInfo.getQueryParameters())) : null;
+        IsochroneRasterizer.Raster raster = requestCoalescer.execute(key, () -> {
+            try (AdmissionController.Permit permit = admissionController.admit(AdmissionController.CostClass.HIGH)) {
+                return requestExecutor.execute(httpReq, () -> new IsochroneRasterizer(degreesFromMeters(cellSizeInMeter)).
+                        addEdges(search.queryGraph, search.shortestPathTree, search.snap.getClosestNode(), search.fz).
+                        rasterize(search.limit, maxRasterCells, executorService, rasterBands));
+            }
+        });
+        sw.stop();
+        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + search.shortestPathTree.getVisitedNodes()
+                + ", cells: " + raster.width + "x" + raster.height);
+        StreamingOutput output = rasterType == RasterType.asc ? out -> writeAsciiGrid(raster, out) : out -> writeBinary(raster, out);
+        return Response.ok(output, rasterType == RasterType.asc ? MediaType.TEXT_PLAIN_TYPE : MediaType.APPLICATION_OCTET_STREAM_TYPE).
+                header("X-GH-Took", "" + sw.getSeconds() * 1000).
+                build();
+    }
+
+    public enum RasterType {binary, asc}
+
+    static void writeBinary(IsochroneRasterizer.Raster raster, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(raster.width);
+        out.writeInt(raster.height);
+        out.writeDouble(raster.minLon);
+        out.writeDouble(raster.maxLat);
+        out.writeDouble(raster.cellSize);
+        for (float value : raster.values)
+            out.writeFloat(value);
+        out.flush();
+    }
+
+    static void writeAsciiGrid(IsochroneRasterizer.Raster raster, OutputStream outputStream) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        out.write("ncols " + raster.width + "\n");
+        out.write("nrows " + raster.height + "\n");
+        out.write("xllcorner " + raster.minLon + "\n");
+        out.write("yllcorner " + (raster.maxLat - raster.height * raster.cellSize) + "\n");
+        out.write("cellsize " + raster.cellSize + "\n");
+        out.write("NODATA_value -1\n");
+        for (int row = 0; row < raster.height; row++) {
+            for (int col = 0; col < raster.width; col++) {
+                if (col > 0)
+                    out.write(' ');
+                float value = raster.getValue(row, col);
+                out.write(Float.isNaN(value) ? "-1" : Long.toString(Math.round(value)));
+            }
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private static class Search {
+        final Snap snap;
+        final QueryGraph queryGraph;
+        final ShortestPathTree shortestPathTree;
+        double limit;
+        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
+
+        Search(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree) {
+            this.snap = snap;
+            this.queryGraph = queryGraph;
+            this.shortestPathTree = shortestPathTree;
+        }
+    }
+
+    private Search createSearch(UriInfo uriInfo, String profileName, boolean reverseFlow, GHPointParam point,
+                                OptionalLong timeLimitInSeconds, OptionalLong distanceLimitInMeter, OptionalLong weightLimit) {
+        PMap hintsMap = new PMap();
+        RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        hintsMap.putObject(Parameters.CH.DISABLE, true);
+        hintsMap.putObject(Parameters.Landmark.DISABLE, true);
+
+        PMap profileResolverHints = new PMap(hintsMap);
+        profileResolverHints.putObject("profile", profileName);
+        profileName = profileResolver.resolveProfile(profileResolverHints);
+        removeLegacyParameters(hintsMap);
+
+        Profile profile = graphHopper.getProfile(profileName);
+        if (profile == null)
+            throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
+        LocationIndex locationIndex = graphHopper.getLocationIndex();
+        BaseGraph graph = graphHopper.getBaseGraph();
+        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+        BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
+        Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
+        if (!snap.isValid())
+            throw new IllegalArgumentException("Point not found:" + point);
+        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
+        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        shortestPathTree.setTimeoutMillis(requestExecutor.getTimeoutMillis());
+
+        Search search = new Search(snap, queryGraph, shortestPathTree);
+        if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
+            search.limit = weightLimit.getAsLong();
+            shortestPathTree.setWeightLimit(search.limit + Math.max(search.limit * 0.14, 200));
+            search.fz = l -> l.weight;
+        } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
+            search.limit = distanceLimitInMeter.getAsLong();
+            shortestPathTree.setDistanceLimit(search.limit + Math.max(search.limit * 0.14, 2_000));
+            search.fz = l -> l.distance;
+        } else {
+            search.limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
+            shortestPathTree.setTimeLimit(search.limit + Math.max(search.limit * 0.14, 200_000));
+            search.fz = l -> l.time;
+        }
+        return search;
+    }
+
     private Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
         int maxPoints = 0;
         Polygon maxPolygon = null;
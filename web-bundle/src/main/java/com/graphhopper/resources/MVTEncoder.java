@@ -0,0 +1,269 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.VarIntHelper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphhopper.util.VarIntHelper.zigZag;
+
+/**
+ * Writes a vector tile with a single layer of line strings directly in the Mapbox Vector Tile protobuf format. In
+ * contrast to the VectorTileEncoder it takes the coordinates from a PointList without creating JTS geometries, the
+ * property names are fixed per tile and the property values are interned while the features are added. Features
+ * that are completely outside of the tile are skipped, but the other geometries are not clipped to the tile, because
+ * coordinates outside of the tile are valid in this format.
+ */
+class MVTEncoder {
+    private static final int EXTENT = 4096;
+    // features are skipped if they are completely outside of the tile and this buffer, like in the VectorTileEncoder
+    private static final int BUFFER = 128;
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int LINESTRING = 2;
+    private final String layerName;
+    private final List<String> keys;
+    private final double minLon, maxLat, scaleX, scaleY;
+    private final Map<Object, Integer> values = new HashMap<>();
+    private final ProtoBuffer valuesBuffer = new ProtoBuffer();
+    private final ProtoBuffer featuresBuffer = new ProtoBuffer();
+    // reused for every feature
+    private final ProtoBuffer feature = new ProtoBuffer();
+    private final ProtoBuffer packed = new ProtoBuffer();
+    private int[] geometry = new int[64];
+
+    /**
+     * @param keys the names of the properties of all features, see {@link #addLineString}
+     */
+    MVTEncoder(String layerName, List<String> keys, double minLon, double minLat, double maxLon, double maxLat) {
+        this.layerName = layerName;
+        this.keys = keys;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.scaleX = EXTENT / (maxLon - minLon);
+        this.scaleY = EXTENT / (maxLat - minLat);
+    }
+
+    /**
+     * Adds a line string feature. The values belong to the keys of this encoder at the same index and must be String,
+     * Boolean or Number. Null values are skipped.
+     *
+     * @return false if the feature was skipped because it is outside of the tile or all its points are at the same
+     * position in the tile
+     */
+    boolean addLineString(long id, PointList points, Object[] properties) {
+        int geometrySize = encodeGeometry(points);
+        if (geometrySize == 0)
+            return false;
+
+        feature.reset();
+        feature.writeTag(1, 0);
+        feature.writeVarint(id);
+
+        packed.reset();
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] == null)
+                continue;
+            packed.writeVarint(i);
+            packed.writeVarint(getValueIndex(properties[i]));
+        }
+        feature.writeTag(2, 2);
+        feature.writeBytes(packed);
+
+        feature.writeTag(3, 0);
+        feature.writeVarint(LINESTRING);
+
+        packed.reset();
+        for (int i = 0; i < geometrySize; i++)
+            packed.writeVarint(geometry[i] & 0xFFFFFFFFL);
+        feature.writeTag(4, 2);
+        feature.writeBytes(packed);
+
+        featuresBuffer.writeTag(2, 2);
+        featuresBuffer.writeBytes(feature);
+        return true;
+    }
+
+    /**
+     * Writes the MoveTo and LineTo commands with the zig-zag encoded deltas into the geometry array.
+     *
+     * @return the number of used integers or 0 if the line string is outside of the tile or collapses to a single
+     * point
+     */
+    private int encodeGeometry(PointList points) {
+        int required = 2 * points.size() + 2;
+        if (geometry.length < required)
+            geometry = new int[Math.max(required, 2 * geometry.length)];
+        // index 0 is the MoveTo command, index 3 the LineTo command
+        int size = 4;
+        int lineToCount = 0;
+        int prevX = toTileX(points.getLon(0));
+        int prevY = toTileY(points.getLat(0));
+        geometry[1] = zigZag(prevX);
+        geometry[2] = zigZag(prevY);
+        int minX = prevX, minY = prevY, maxX = prevX, maxY = prevY;
+        for (int i = 1; i < points.size(); i++) {
+            int x = toTileX(points.getLon(i));
+            int y = toTileY(points.getLat(i));
+            if (x == prevX && y == prevY)
+                continue;
+            geometry[size++] = zigZag(x - prevX);
+            geometry[size++] = zigZag(y - prevY);
+            prevX = x;
+            prevY = y;
+            lineToCount++;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        if (lineToCount == 0 || maxX < -BUFFER || maxY < -BUFFER || minX > EXTENT + BUFFER || minY > EXTENT + BUFFER)
+            return 0;
+        geometry[0] = command(MOVE_TO, 1);
+        geometry[3] = command(LINE_TO, lineToCount);
+        return size;
+    }
+
+    private int toTileX(double lon) {
+        return (int) Math.round((lon - minLon) * scaleX);
+    }
+
+    private int toTileY(double lat) {
+        // the y-axis of the tile points south
+        return (int) Math.round((maxLat - lat) * scaleY);
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private int getValueIndex(Object value) {
+        // equal numbers of different types should share one entry
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+            value = ((Number) value).longValue();
+        else if (value instanceof Float)
+            value = ((Float) value).doubleValue();
+        Integer index = values.get(value);
+        if (index != null)
+            return index;
+        index = values.size();
+        values.put(value, index);
+
+        ProtoBuffer valueBuffer = new ProtoBuffer();
+        if (value instanceof String) {
+            valueBuffer.writeTag(1, 2);
+            valueBuffer.writeString((String) value);
+        } else if (value instanceof Double) {
+            valueBuffer.writeTag(3, 1);
+            valueBuffer.writeFixed64(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Long) {
+            valueBuffer.writeTag(4, 0);
+            valueBuffer.writeVarint((Long) value);
+        } else if (value instanceof Boolean) {
+            valueBuffer.writeTag(7, 0);
+            valueBuffer.writeVarint((Boolean) value ? 1 : 0);
+        } else {
+            throw new IllegalArgumentException("Unsupported property value " + value + " of type " + value.getClass());
+        }
+        valuesBuffer.writeTag(4, 2);
+        valuesBuffer.writeBytes(valueBuffer);
+        return index;
+    }
+
+    byte[] encode() {
+        ProtoBuffer layer = new ProtoBuffer();
+        layer.writeTag(15, 0);
+        layer.writeVarint(2);
+        layer.writeTag(1, 2);
+        layer.writeString(layerName);
+        layer.writeRaw(featuresBuffer);
+        for (String key : keys) {
+            layer.writeTag(3, 2);
+            layer.writeString(key);
+        }
+        layer.writeRaw(valuesBuffer);
+        layer.writeTag(5, 0);
+        layer.writeVarint(EXTENT);
+
+        ProtoBuffer tile = new ProtoBuffer();
+        tile.writeTag(3, 2);
+        tile.writeBytes(layer);
+        return tile.toByteArray();
+    }
+
+    private static class ProtoBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeTag(int field, int wireType) {
+            writeVarint(((long) field << 3) | wireType);
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            size = VarIntHelper.writeUnsigned(bytes, size, value);
+        }
+
+        void writeFixed64(long value) {
+            ensureCapacity(8);
+            for (int i = 0; i < 8; i++)
+                bytes[size++] = (byte) (value >>> (8 * i));
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        /**
+         * Writes the content of the other buffer prefixed by its length
+         */
+        void writeBytes(ProtoBuffer other) {
+            writeVarint(other.size);
+            writeRaw(other);
+        }
+
+        void writeRaw(ProtoBuffer other) {
+            ensureCapacity(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(size + additional, 2 * bytes.length));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.graphhopper.resources;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.http.MVTCache;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.search.KVStorage;
@@ -14,7 +15,6 @@ import com.graphhopper.util.shapes.BBox;
 import no.ecc.vectortile.VectorTileEncoder;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.util.AffineTransformation;
 import org.slf4j.Logger;
@@ -23,12 +23,12 @@ import org.slf4j.LoggerFactory;
 import jakarta.inject.Inject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.core.Context;
-import jakarta.ws.rs.core.MediaType;
-import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.core.*;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("mvt")
@@ -37,12 +37,12 @@ public class MVTResource {
     private static final Logger logger = LoggerFactory.getLogger(MVTResource.class);
     private static final MediaType PBF = new MediaType("application", "x-protobuf");
     private final GraphHopper graphHopper;
-    private final EncodingManager encodingManager;
+    private final MVTCache cache;
 
     @Inject
-    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager) {
+    public MVTResource(GraphHopper graphHopper, MVTCache cache) {
         this.graphHopper = graphHopper;
-        this.encodingManager = encodingManager;
+        this.cache = cache;
     }
 
     @GET
@@ -51,10 +51,12 @@ public class MVTResource {
     public Response doGetXyz(
             @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
+            @Context Request request,
             @PathParam("z") int zInfo,
             @PathParam("x") int xInfo,
             @PathParam("y") int yInfo,
-            @QueryParam("render_all") @DefaultValue("false") Boolean renderAll) {
+            @QueryParam("render_all") @DefaultValue("false") Boolean renderAll,
+            @QueryParam("properties") List<String> properties) {
 
         if (zInfo <= 9) {
             byte[] bytes = new VectorTileEncoder().encode();
@@ -64,6 +66,29 @@ public class MVTResource {
         }
 
         StopWatch totalSW = new StopWatch().start();
+        if (properties != null && !properties.isEmpty()) {
+            // these tiles are cheap and usually requested for debugging, so we do not cache them
+            byte[] bytes = createTile(graphHopper, zInfo, xInfo, yInfo, renderAll, properties);
+            return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.stop().getSeconds() * 1000).build();
+        }
+        MVTCache.Tile tile = cache.get(graphHopper, zInfo, xInfo, yInfo, renderAll,
+                () -> createTile(graphHopper, zInfo, xInfo, yInfo, renderAll));
+        totalSW.stop();
+        EntityTag etag = new EntityTag(tile.getETag());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null)
+            return notModified.build();
+        return Response.ok(tile.getBytes(), PBF).tag(etag).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
+                .build();
+    }
+
+    /**
+     * Creates the vector tile with the edges of the given graph for the given tile coordinates. Edges of minor roads
+     * are omitted for small zoom levels unless renderAll is true.
+     */
+    public static byte[] createTile(GraphHopper graphHopper, int zInfo, int xInfo, int yInfo, boolean renderAll) {
+        StopWatch totalSW = new StopWatch().start();
+        EncodingManager encodingManager = graphHopper.getEncodingManager();
         Coordinate nw = num2deg(xInfo, yInfo, zInfo);
         Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
         LocationIndexTree locationIndex = (LocationIndexTree) graphHopper.getLocationIndex();
@@ -72,7 +97,6 @@ public class MVTResource {
         if (!bbox.isValid())
             throw new IllegalStateException("Invalid bbox " + bbox);
 
-        final GeometryFactory geometryFactory = new GeometryFactory();
         if (!encodingManager.hasEncodedValue(RoadClass.KEY))
             throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
 
@@ -93,29 +117,10 @@ public class MVTResource {
         VectorTileEncoder vectorTileEncoder = new VectorTileEncoder();
         locationIndex.query(bbox, edgeId -> {
             EdgeIteratorState edge = graphHopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
-            LineString lineString;
-            if (renderAll) {
-                PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
-                lineString = pl.toLineString(false);
-            } else {
-                RoadClass rc = edge.get(roadClassEnc);
-                if (zInfo >= 14) {
-                    PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
-                    lineString = pl.toLineString(false);
-                } else if (rc == RoadClass.MOTORWAY
-                        || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
-                        || zInfo > 11 && (rc == RoadClass.SECONDARY)
-                        || zInfo > 12) {
-                    double lat = na.getLat(edge.getBaseNode());
-                    double lon = na.getLon(edge.getBaseNode());
-                    double toLat = na.getLat(edge.getAdjNode());
-                    double toLon = na.getLon(edge.getAdjNode());
-                    lineString = geometryFactory.createLineString(new Coordinate[]{new Coordinate(lon, lat), new Coordinate(toLon, toLat)});
-                } else {
-                    // skip edge for certain zoom
-                    return;
-                }
-            }
+            PointList pl = getGeometry(edge, na, roadClassEnc, zInfo, renderAll);
+            if (pl == null)
+                return;
+            LineString lineString = pl.toLineString(false);
 
             edgeCounter.incrementAndGet();
             Map<String, Object> map = new LinkedHashMap<>();
@@ -128,16 +133,9 @@ public class MVTResource {
             map.put("adj_node", edge.getAdjNode());
             map.put("distance", edge.getDistance());
             encodingManager.getEncodedValues().forEach(ev -> {
-                if (ev instanceof EnumEncodedValue)
-                    map.put(ev.getName(), edge.get((EnumEncodedValue) ev).toString() + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((EnumEncodedValue) ev).toString() : ""));
-                else if (ev instanceof DecimalEncodedValue)
-                    map.put(ev.getName(), edge.get((DecimalEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((DecimalEncodedValue) ev) : ""));
-                else if (ev instanceof BooleanEncodedValue)
-                    map.put(ev.getName(), edge.get((BooleanEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((BooleanEncodedValue) ev) : ""));
-                else if (ev instanceof StringEncodedValue)
-                    map.put(ev.getName(), edge.get((StringEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((StringEncodedValue) ev) : ""));
-                else if (ev instanceof IntEncodedValue)
-                    map.put(ev.getName(), edge.get((IntEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((IntEncodedValue) ev) : ""));
+                String value = formatEncodedValue(edge, ev);
+                if (value != null)
+                    map.put(ev.getName(), value);
             });
             lineString.setUserData(map);
 
@@ -149,11 +147,110 @@ public class MVTResource {
         byte[] bytes = vectorTileEncoder.encode();
         totalSW.stop();
         logger.debug("took: " + totalSW.getMillis() + "ms, edges:" + edgeCounter.get());
-        return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
-                .build();
+        return bytes;
+    }
+
+    /**
+     * Like {@link #createTile(GraphHopper, int, int, int, boolean)} but only with the given properties and encoded
+     * with the {@link MVTEncoder}, which is much faster. The properties can be edge_id, edge_key, base_node,
+     * adj_node, distance, the names of encoded values and the keys of the key-values like street_name.
+     */
+    public static byte[] createTile(GraphHopper graphHopper, int zInfo, int xInfo, int yInfo, boolean renderAll,
+                                    List<String> properties) {
+        StopWatch totalSW = new StopWatch().start();
+        EncodingManager encodingManager = graphHopper.getEncodingManager();
+        Coordinate nw = num2deg(xInfo, yInfo, zInfo);
+        Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
+        BBox bbox = new BBox(nw.x, se.x, se.y, nw.y);
+        if (!bbox.isValid())
+            throw new IllegalStateException("Invalid bbox " + bbox);
+        if (!encodingManager.hasEncodedValue(RoadClass.KEY))
+            throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
+        final EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        final NodeAccess na = graphHopper.getBaseGraph().getNodeAccess();
+
+        // resolve the properties once per tile instead of once per edge
+        List<Function<EdgeIteratorState, Object>> getters = new ArrayList<>(properties.size());
+        for (String property : properties)
+            getters.add(createPropertyGetter(encodingManager, property));
+        Object[] values = new Object[properties.size()];
+        MVTEncoder encoder = new MVTEncoder("roads", properties, nw.x, se.y, se.x, nw.y);
+        final AtomicInteger edgeCounter = new AtomicInteger(0);
+        ((LocationIndexTree) graphHopper.getLocationIndex()).query(bbox, edgeId -> {
+            EdgeIteratorState edge = graphHopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
+            PointList pl = getGeometry(edge, na, roadClassEnc, zInfo, renderAll);
+            if (pl == null)
+                return;
+            for (int i = 0; i < values.length; i++)
+                values[i] = getters.get(i).apply(edge);
+            if (encoder.addLineString(edge.getEdge(), pl, values))
+                edgeCounter.incrementAndGet();
+        });
+        byte[] bytes = encoder.encode();
+        logger.debug("took: " + totalSW.stop().getMillis() + "ms, edges:" + edgeCounter.get());
+        return bytes;
+    }
+
+    private static Function<EdgeIteratorState, Object> createPropertyGetter(EncodingManager encodingManager, String property) {
+        switch (property) {
+            case "edge_id":
+                return EdgeIteratorState::getEdge;
+            case "edge_key":
+                return EdgeIteratorState::getEdgeKey;
+            case "base_node":
+                return EdgeIteratorState::getBaseNode;
+            case "adj_node":
+                return EdgeIteratorState::getAdjNode;
+            case "distance":
+                return EdgeIteratorState::getDistance;
+            default:
+                if (encodingManager.hasEncodedValue(property)) {
+                    EncodedValue ev = encodingManager.getEncodedValue(property, EncodedValue.class);
+                    return edge -> formatEncodedValue(edge, ev);
+                }
+                return edge -> {
+                    Object value = edge.getValue(property);
+                    return value == null ? null : value.toString();
+                };
+        }
+    }
+
+    /**
+     * @return the geometry of the given edge that is shown for the given zoom level or null if the edge is hidden
+     */
+    private static PointList getGeometry(EdgeIteratorState edge, NodeAccess na, EnumEncodedValue<RoadClass> roadClassEnc,
+                                         int zInfo, boolean renderAll) {
+        if (renderAll || zInfo >= 14)
+            return edge.fetchWayGeometry(FetchMode.ALL);
+        RoadClass rc = edge.get(roadClassEnc);
+        if (rc == RoadClass.MOTORWAY
+                || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
+                || zInfo > 11 && (rc == RoadClass.SECONDARY)
+                || zInfo > 12) {
+            PointList pl = new PointList(2, false);
+            pl.add(na.getLat(edge.getBaseNode()), na.getLon(edge.getBaseNode()));
+            pl.add(na.getLat(edge.getAdjNode()), na.getLon(edge.getAdjNode()));
+            return pl;
+        }
+        // skip edge for certain zoom
+        return null;
+    }
+
+    private static String formatEncodedValue(EdgeIteratorState edge, EncodedValue ev) {
+        if (ev instanceof EnumEncodedValue)
+            return edge.get((EnumEncodedValue) ev).toString() + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((EnumEncodedValue) ev).toString() : "");
+        else if (ev instanceof DecimalEncodedValue)
+            return edge.get((DecimalEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((DecimalEncodedValue) ev) : "");
+        else if (ev instanceof BooleanEncodedValue)
+            return edge.get((BooleanEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((BooleanEncodedValue) ev) : "");
+        else if (ev instanceof StringEncodedValue)
+            return edge.get((StringEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((StringEncodedValue) ev) : "");
+        else if (ev instanceof IntEncodedValue)
+            return edge.get((IntEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((IntEncodedValue) ev) : "");
+        return null;
     }
 
-    Coordinate num2deg(int xInfo, int yInfo, int zoom) {
+    static Coordinate num2deg(int xInfo, int yInfo, int zoom) {
         // inverse web mercator projection
         double n = Math.pow(2, zoom);
         double lonDeg = xInfo / n * 360.0 - 180.0;
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.http.MapMatchingSessions;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.matching.CandidateEdgeCache;
+import com.graphhopper.matching.EdgeMatch;
+import com.graphhopper.matching.MapMatching;
+import com.graphhopper.matching.MapMatchingSession;
+import com.graphhopper.matching.Observation;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.shapes.GHPoint;
+
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.UriInfo;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+
+/**
+ * Matches the positions of many vehicles continuously, see {@link MapMatchingSession}. The client sends the new
+ * positions of a vehicle with POST /match/sessions/{id} and receives the edges that became final. The session is
+ * created with the first request, so the parameters like the profile, gps_accuracy and lag are only used for this
+ * first request. DELETE /match/sessions/{id} returns the remaining edges of the track and removes the session.
+ * Sessions without requests are removed after some time, see {@link MapMatchingSessions}.
+ */
+@Path("match/sessions")
+@Produces(MediaType.APPLICATION_JSON)
+public class MapMatchingSessionResource {
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+    private final MapMatchingResource.MapMatchingRouterFactory mapMatchingRouterFactory;
+    private final MapMatchingSessions sessions;
+    private final CandidateEdgeCache candidateEdgeCache;
+
+    @Inject
+    public MapMatchingSessionResource(GraphHopper graphHopper, ProfileResolver profileResolver,
+                                      MapMatchingResource.MapMatchingRouterFactory mapMatchingRouterFactory,
+                                      MapMatchingSessions sessions, CandidateEdgeCache candidateEdgeCache) {
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+        this.mapMatchingRouterFactory = mapMatchingRouterFactory;
+        this.sessions = sessions;
+        this.candidateEdgeCache = candidateEdgeCache;
+    }
+
+    public static class ObservationsRequest {
+        // [lon, lat] like the points of a POST /route request
+        @JsonProperty("points")
+        public List<double[]> points = List.of();
+    }
+
+    @POST
+    @Path("{id}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public ObjectNode add(
+            @PathParam("id") String id,
+            @NotNull ObservationsRequest request,
+            @Context UriInfo uriInfo,
+            @QueryParam("profile") String profile,
+            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy,
+            @QueryParam("lag") @DefaultValue("5") int lag) {
+        if (!sessions.isEnabled())
+            throw new ForbiddenException("Map matching sessions are disabled, see map_matching.sessions.max");
+        List<Observation> observations = new ArrayList<>(request.points.size());
+        for (int i = 0; i < request.points.size(); i++) {
+            double[] point = request.points.get(i);
+            if (point == null || point.length < 2)
+                throw new IllegalArgumentException("Point " + i + " must be specified as [lon, lat]");
+            observations.add(new Observation(new GHPoint(point[1], point[0])));
+        }
+        // the session uses the graph of the GraphHopper instance of this request, which stays open until the request
+        // is finished. If the graph was reloaded in the meantime a new session is created.
+        MapMatchingSession session = sessions.getOrCreate(id, graphHopper, () -> createSession(uriInfo, profile, gpsAccuracy, lag));
+        List<EdgeMatch> edges = new ArrayList<>();
+        // requests for the same vehicle must not change the session at the same time
+        synchronized (session) {
+            for (Observation observation : observations)
+                edges.addAll(session.add(observation));
+            return createResponse(edges, session.getPendingObservations());
+        }
+    }
+
+    @DELETE
+    @Path("{id}")
+    public ObjectNode finish(@PathParam("id") String id) {
+        // a session of a replaced graph cannot be finished, because its graph might already be closed
+        MapMatchingSession session = sessions.remove(id, graphHopper);
+        if (session == null)
+            throw new NotFoundException("Session " + id + " does not exist");
+        synchronized (session) {
+            return createResponse(session.finish(), 0);
+        }
+    }
+
+    private MapMatchingSession createSession(UriInfo uriInfo, String profile, double gpsAccuracy, int lag) {
+        PMap hints = new PMap();
+        RouteResource.initHints(hints, uriInfo.getQueryParameters());
+        // we need to explicitly disable CH here because map matching does not use it
+        PMap profileResolverHints = new PMap(hints);
+        profileResolverHints.putObject("profile", profile);
+        profileResolverHints.putObject(Parameters.CH.DISABLE, true);
+        hints.putObject("profile", profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(hints);
+
+        MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
+        matching.setMeasurementErrorSigma(gpsAccuracy);
+        matching.setCandidateEdgeCache(candidateEdgeCache);
+        return new MapMatchingSession(matching, lag);
+    }
+
+    private static ObjectNode createResponse(List<EdgeMatch> edges, int pendingObservations) {
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ArrayNode edgesNode = response.putArray("edges");
+        for (EdgeMatch edgeMatch : edges) {
+            EdgeIteratorState edge = edgeMatch.getEdgeState();
+            ObjectNode edgeNode = edgesNode.addObject();
+            edgeNode.put("edge_id", edge.getEdge());
+            // the edge key includes the direction, like the traversal_keys of POST /match
+            edgeNode.put("edge_key", edge.getEdgeKey());
+            edgeNode.put("distance", edge.getDistance());
+            edgeNode.put("observations", edgeMatch.getStates().size());
+        }
+        response.put("pending_observations", pendingObservations);
+        return response;
+    }
+}
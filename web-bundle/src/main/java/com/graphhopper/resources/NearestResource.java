@@ -19,12 +19,20 @@ package com.graphhopper.resources;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
 import com.graphhopper.jackson.MultiException;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.PMap;
 import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
@@ -33,7 +41,16 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @author svantulden
@@ -43,14 +60,23 @@ import java.util.List;
 @Produces(MediaType.APPLICATION_JSON)
 public class NearestResource {
 
+    // the number of points that are snapped in one task, they are close to each other after sorting
+    private static final int CHUNK_SIZE = 1024;
     private final DistanceCalc calc = DistanceCalcEarth.DIST_EARTH;
+    private final GraphHopper graphHopper;
     private final LocationIndex index;
     private final boolean hasElevation;
+    private final int maxBulkPoints;
+    private final ExecutorService executorService;
 
     @Inject
-    NearestResource(LocationIndex index, @Named("hasElevation") Boolean hasElevation) {
+    NearestResource(GraphHopperConfig config, GraphHopper graphHopper, LocationIndex index, @Named("hasElevation") Boolean hasElevation,
+                    @Named("nearestExecutor") ExecutorService executorService) {
+        this.graphHopper = graphHopper;
         this.index = index;
         this.hasElevation = hasElevation;
+        this.maxBulkPoints = config.getInt("routing.nearest.max_bulk_points", 1_000_000);
+        this.executorService = executorService;
     }
 
     public static class Response {
@@ -65,6 +91,16 @@ public class NearestResource {
         }
     }
 
+    public static class BulkRequest {
+        // [lon, lat] like the points of a POST /route request
+        @JsonProperty("points")
+        public List<double[]> points = List.of();
+        @JsonProperty("profile")
+        public String profile;
+        @JsonProperty("elevation")
+        public boolean elevation;
+    }
+
     @GET
     public Response doGet(@QueryParam("point") GHPoint point, @QueryParam("elevation") @DefaultValue("false") boolean elevation) {
         Snap snap = index.findClosest(point.lat, point.lon, EdgeFilter.ALL_EDGES);
@@ -77,4 +113,188 @@ public class NearestResource {
         }
     }
 
+    /**
+     * Snaps many points at once. The response contains an entry for every point in the same order, which is null if
+     * the point could not be snapped. If a profile is specified only edges that are accessible with this profile and
+     * that are not part of a small subnetwork are considered, like for the route requests.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public jakarta.ws.rs.core.Response doPost(BulkRequest request) {
+        int size = request.points.size();
+        checkBulkSize(size);
+        double[] lats = new double[size];
+        double[] lons = new double[size];
+        for (int i = 0; i < size; i++) {
+            double[] point = request.points.get(i);
+            if (point == null || point.length < 2)
+                throw new IllegalArgumentException("Point " + i + " must be specified as [lon, lat]");
+            lons[i] = point[0];
+            lats[i] = point[1];
+        }
+        boolean elevation = hasElevation && request.elevation;
+        Snap[] snaps = snapAll(lats, lons, createSnapFilter(request.profile));
+        StreamingOutput out = output -> {
+            try (JsonGenerator gen = new JsonFactory().createGenerator(output)) {
+                gen.writeStartObject();
+                gen.writeArrayFieldStart("points");
+                for (int i = 0; i < size; i++) {
+                    Snap snap = snaps[i];
+                    if (!snap.isValid()) {
+                        gen.writeNull();
+                        continue;
+                    }
+                    GHPoint3D snappedPoint = snap.getSnappedPoint();
+                    gen.writeStartObject();
+                    gen.writeArrayFieldStart("coordinates");
+                    gen.writeNumber(snappedPoint.lon);
+                    gen.writeNumber(snappedPoint.lat);
+                    if (elevation)
+                        gen.writeNumber(snappedPoint.ele);
+                    gen.writeEndArray();
+                    gen.writeNumberField("distance", calc.calcDist(lats[i], lons[i], snappedPoint.lat, snappedPoint.lon));
+                    gen.writeNumberField("edge_id", snap.getClosestEdge().getEdge());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+        };
+        return jakarta.ws.rs.core.Response.ok(out, MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Like {@link #doPost} but with a compact binary format. The body is a sequence of latitude and longitude pairs,
+     * both as 8 byte doubles in big-endian order. For every point the response contains the latitude and longitude of
+     * the snapped point as doubles, the edge id as 4 byte int and the distance in meters as double. The edge id is -1
+     * and the other values are NaN if a point could not be snapped.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces({MediaType.APPLICATION_OCTET_STREAM, MediaType.APPLICATION_JSON})
+    public jakarta.ws.rs.core.Response doPostBinary(InputStream body, @QueryParam("profile") String profile) throws IOException {
+        InputStream in = new BufferedInputStream(body);
+        ByteBuffer point = ByteBuffer.allocate(16);
+        double[] lats = new double[1024];
+        double[] lons = new double[1024];
+        int size = 0;
+        while (true) {
+            int read = in.readNBytes(point.array(), 0, 16);
+            if (read == 0)
+                break;
+            if (read < 16)
+                throw new IllegalArgumentException("Point " + size + " is incomplete, it needs 16 bytes but the body ends after " + read);
+            checkBulkSize(size + 1);
+            if (size == lats.length) {
+                lats = Arrays.copyOf(lats, 2 * size);
+                lons = Arrays.copyOf(lons, 2 * size);
+            }
+            lats[size] = point.getDouble(0);
+            lons[size] = point.getDouble(8);
+            size++;
+        }
+        final double[] finalLats = Arrays.copyOf(lats, size);
+        final double[] finalLons = Arrays.copyOf(lons, size);
+        Snap[] snaps = snapAll(finalLats, finalLons, createSnapFilter(profile));
+        StreamingOutput out = output -> {
+            DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(output));
+            for (int i = 0; i < snaps.length; i++) {
+                Snap snap = snaps[i];
+                if (snap.isValid()) {
+                    GHPoint3D snappedPoint = snap.getSnappedPoint();
+                    dataOut.writeDouble(snappedPoint.lat);
+                    dataOut.writeDouble(snappedPoint.lon);
+                    dataOut.writeInt(snap.getClosestEdge().getEdge());
+                    dataOut.writeDouble(calc.calcDist(finalLats[i], finalLons[i], snappedPoint.lat, snappedPoint.lon));
+                } else {
+                    dataOut.writeDouble(Double.NaN);
+                    dataOut.writeDouble(Double.NaN);
+                    dataOut.writeInt(-1);
+                    dataOut.writeDouble(Double.NaN);
+                }
+            }
+            dataOut.flush();
+        };
+        return jakarta.ws.rs.core.Response.ok(out, MediaType.APPLICATION_OCTET_STREAM).build();
+    }
+
+    private void checkBulkSize(int size) {
+        if (size > maxBulkPoints)
+            throw new IllegalArgumentException("Too many points, the maximum is " + maxBulkPoints);
+    }
+
+    private EdgeFilter createSnapFilter(String profileName) {
+        if (profileName == null || profileName.isEmpty())
+            return EdgeFilter.ALL_EDGES;
+        Profile profile = graphHopper.getProfile(profileName);
+        if (profile == null)
+            throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
+        return new DefaultSnapFilter(graphHopper.createWeighting(profile, new PMap()),
+                graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName)));
+    }
+
+    /**
+     * Snaps the points in parallel. Neighboring points are snapped by the same thread, one after the other, so that
+     * they find the cells of the location index in the CPU cache and the pages of the memory mapped files in RAM. The
+     * threads are not shared with the rest of the JVM, so large requests do not slow down e.g. parallel streams.
+     */
+    private Snap[] snapAll(double[] lats, double[] lons, EdgeFilter snapFilter) {
+        Snap[] snaps = new Snap[lats.length];
+        int[] order = sortSpatially(lats, lons);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int start = 0; start < order.length; start += CHUNK_SIZE) {
+            int chunkStart = start;
+            futures.add(executorService.submit(() -> {
+                for (int i = chunkStart; i < Math.min(order.length, chunkStart + CHUNK_SIZE); i++) {
+                    int point = order[i];
+                    snaps[point] = index.findClosest(lats[point], lons[point], snapFilter);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Snapping was interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        return snaps;
+    }
+
+    /**
+     * @return the indices of the given points in the order of a Z-order curve
+     */
+    static int[] sortSpatially(double[] lats, double[] lons) {
+        long[] keys = new long[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            // 15 bits per axis, which are cells of roughly 1km, are enough to group the points
+            long y = (long) (clamp((lats[i] + 90) / 180) * 0x7FFF);
+            long x = (long) (clamp((lons[i] + 180) / 360) * 0x7FFF);
+            keys[i] = (interleave(x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            order[i] = (int) keys[i];
+        return order;
+    }
+
+    private static double clamp(double value) {
+        return Double.isNaN(value) ? 0 : Math.max(0, Math.min(1, value));
+    }
+
+    private static long interleave(long x, long y) {
+        long result = 0;
+        for (int bit = 0; bit < 15; bit++) {
+            result |= ((x >> bit) & 1) << (2 * bit);
+            result |= ((y >> bit) & 1) << (2 * bit + 1);
+        }
+        return result;
+    }
 }
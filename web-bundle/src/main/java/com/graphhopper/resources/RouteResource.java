@@ -22,10 +22,14 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.http.AdmissionController;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.GHRequestTransformer;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.http.RequestCoalescer;
+import com.graphhopper.http.RequestExecutor;
 import com.graphhopper.jackson.MultiException;
+import com.graphhopper.jackson.ResponsePathBinaryFormat;
 import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
@@ -51,6 +55,9 @@ import static java.util.stream.Collectors.toList;
  * Resource to use GraphHopper in a remote client application like mobile or browser. Note: If type
  * is json it returns the points in GeoJson array format [longitude,latitude] unlike the format "lat,lon"
  * used for the request. See the full API response format in docs/web/api-doc.md
+ * <p>
+ * Machine clients can request a compact binary response instead of JSON via the Accept header, see
+ * {@link ResponsePathBinaryFormat}. Errors are still returned as JSON.
  *
  * @author Peter Karich
  */
@@ -63,27 +70,38 @@ public class RouteResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final GHRequestTransformer ghRequestTransformer;
+    private final RequestExecutor requestExecutor;
+    private final AdmissionController admissionController;
+    private final RequestCoalescer requestCoalescer;
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
 
     @Inject
-    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, RequestExecutor requestExecutor, AdmissionController admissionController, RequestCoalescer requestCoalescer, @Named("hasElevation") Boolean hasElevation) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.ghRequestTransformer = ghRequestTransformer;
+        this.requestExecutor = requestExecutor;
+        this.admissionController = admissionController;
+        this.requestCoalescer = requestCoalescer;
         this.hasElevation = hasElevation;
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
-        this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
+        this.snapPreventionsDefault = getSnapPreventionsDefault(config);
+    }
+
+    public static List<String> getSnapPreventionsDefault(GraphHopperConfig config) {
+        return Arrays.stream(config.getString("routing.snap_preventions_default", "")
                 .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", ResponsePathBinaryFormat.MEDIA_TYPE})
     public Response doGet(
             @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("0.5") double minPathPrecision,
             @QueryParam(ELEVATION_WAY_POINT_MAX_DISTANCE) Double minPathElevationPrecision,
             @QueryParam("point") @NotNull List<GHPointParam> pointParams,
@@ -113,35 +131,9 @@ public class RouteResource {
         if (enableElevation && !hasElevation)
             throw new IllegalArgumentException("Elevation not supported!");
 
-        GHRequest request = new GHRequest();
-        initHints(request.getHints(), uriInfo.getQueryParameters());
-
-        if (minPathElevationPrecision != null)
-            request.getHints().putObject(ELEVATION_WAY_POINT_MAX_DISTANCE, minPathElevationPrecision);
-
-        request.setPoints(points).
-                setProfile(profileName).
-                setAlgorithm(algoStr).
-                setLocale(localeStr).
-                setHeadings(headings).
-                setPointHints(pointHints).
-                setCurbsides(curbsides).
-                setPathDetails(pathDetails).
-                getHints().
-                putObject(CALC_POINTS, calcPoints).
-                putObject(INSTRUCTIONS, instructions).
-                putObject(WAY_POINT_MAX_DISTANCE, minPathPrecision);
-
-        if (uriInfo.getQueryParameters().containsKey(SNAP_PREVENTION)) {
-            if (snapPreventions.size() == 1 && snapPreventions.contains(""))
-                request.setSnapPreventions(List.of()); // e.g. "&snap_prevention=&" to force empty list
-            else
-                request.setSnapPreventions(snapPreventions);
-        } else {
-            // no "snap_prevention" was specified
-            request.setSnapPreventions(snapPreventionsDefault);
-        }
-
+        GHRequest request = createGHRequest(uriInfo.getQueryParameters(), points, profileName, algoStr, localeStr, headings,
+                pointHints, curbsides, snapPreventions, pathDetails, calcPoints, instructions, minPathPrecision,
+                minPathElevationPrecision, snapPreventionsDefault);
         request = ghRequestTransformer.transformRequest(request);
 
         PMap profileResolverHints = new PMap(request.getHints());
@@ -151,7 +143,7 @@ public class RouteResource {
         removeLegacyParameters(request.getHints());
         request.setProfile(profileName);
 
-        GHResponse ghResponse = graphHopper.route(request);
+        GHResponse ghResponse = route(httpReq, request);
 
         double took = sw.stop().getMillisDouble();
         String logStr = (httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")) + " " + points + ", took: " + String.format("%.1f", took) + "ms, algo: " + algoStr + ", profile: " + profileName;
@@ -174,17 +166,16 @@ public class RouteResource {
                             header("X-GH-Took", "" + Math.round(took)).
                             build()
                     :
-                    Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
+                    successResponseBuilder(headers, new ResponsePathSerializer.JsonResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
                             header("X-GH-Took", "" + Math.round(took)).
-                            type(MediaType.APPLICATION_JSON).
                             build();
         }
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
+    @Produces({MediaType.APPLICATION_JSON, ResponsePathBinaryFormat.MEDIA_TYPE})
+    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq, @Context HttpHeaders headers) {
         if (!request.hasSnapPreventions())
             request.setSnapPreventions(snapPreventionsDefault);
 
@@ -201,7 +192,7 @@ public class RouteResource {
         request.setProfile(profileResolver.resolveProfile(profileResolverHints));
         removeLegacyParameters(request.getHints());
 
-        GHResponse ghResponse = graphHopper.route(request);
+        GHResponse ghResponse = route(httpReq, request);
         boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
         boolean enableElevation = request.getHints().getBool("elevation", false);
         boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
@@ -223,13 +214,32 @@ public class RouteResource {
                     + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
                     + ", points0: " + ghResponse.getBest().getPoints().size()
                     + ", debugInfo: " + ghResponse.getDebugInfo());
-            return Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
+            return successResponseBuilder(headers, new ResponsePathSerializer.JsonResponse(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
                     header("X-GH-Took", "" + Math.round(took)).
-                    type(MediaType.APPLICATION_JSON).
                     build();
         }
     }
 
+    private GHResponse route(HttpServletRequest httpReq, GHRequest request) {
+        Object key = requestCoalescer.isEnabled() ? createCoalescingKey(graphHopper, request) : null;
+        return requestCoalescer.execute(key, () -> {
+            try (AdmissionController.Permit permit = admissionController.admit(admissionController.classifyRoute(graphHopper, request))) {
+                return requestExecutor.execute(httpReq, () -> graphHopper.route(request));
+            }
+        });
+    }
+
+    /**
+     * @return a key that is equal for all requests that lead to the same GHResponse. The GraphHopper instance is part
+     * of the key, so results calculated on a replaced graph are never returned.
+     */
+    static Object createCoalescingKey(GraphHopper graphHopper, GHRequest request) {
+        return Arrays.asList(graphHopper, request.getPoints(), request.getProfile(), request.getAlgorithm(),
+                request.getLocale(), request.getHeadings(), request.getPointHints(), request.getCurbsides(),
+                request.getSnapPreventions(), request.getPathDetails(), request.getHints().toMap(),
+                request.getCustomModel() == null ? null : request.getCustomModel().toString());
+    }
+
     public static void removeLegacyParameters(PMap hints) {
         // these parameters should only be used to resolve the profile, but should not be passed to GraphHopper
         hints.remove("weighting");
@@ -238,6 +248,26 @@ public class RouteResource {
         hints.remove("turn_costs");
     }
 
+    private static Response.ResponseBuilder successResponseBuilder(HttpHeaders headers, ResponsePathSerializer.JsonResponse rsp) {
+        if (acceptsBinary(headers))
+            return Response.ok((StreamingOutput) output -> ResponsePathBinaryFormat.write(output, rsp), ResponsePathBinaryFormat.MEDIA_TYPE);
+        return Response.ok(rsp).type(MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * @return true if the binary format is preferred over JSON. JSON stays the default, e.g. for a missing Accept
+     * header or for wildcards.
+     */
+    static boolean acceptsBinary(HttpHeaders headers) {
+        for (MediaType mediaType : headers.getAcceptableMediaTypes()) {
+            if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE))
+                return false;
+            if (mediaType.isCompatible(MediaType.valueOf(ResponsePathBinaryFormat.MEDIA_TYPE)))
+                return true;
+        }
+        return false;
+    }
+
     private static Response.ResponseBuilder gpxSuccessResponseBuilder(GHResponse ghRsp, String timeString, String
             trackName, boolean enableElevation, boolean withRoute, boolean withTrack, boolean withWayPoints, String version) {
         if (ghRsp.getAll().size() > 1) {
@@ -250,6 +280,49 @@ public class RouteResource {
                 header("Content-Disposition", "attachment;filename=" + "GraphHopper.gpx");
     }
 
+    /**
+     * Creates the GHRequest of a GET /route request from its query parameters, which must already be converted like
+     * {@link #doGet} does. The profile is not resolved and the request is not transformed yet.
+     *
+     * @param queryParameters all query parameters, the unknown ones are passed as hints
+     */
+    public static GHRequest createGHRequest(MultivaluedMap<String, String> queryParameters, List<GHPoint> points,
+                                            String profileName, String algoStr, String localeStr, List<Double> headings,
+                                            List<String> pointHints, List<String> curbsides, List<String> snapPreventions,
+                                            List<String> pathDetails, boolean calcPoints, boolean instructions,
+                                            double minPathPrecision, Double minPathElevationPrecision,
+                                            List<String> snapPreventionsDefault) {
+        GHRequest request = new GHRequest();
+        initHints(request.getHints(), queryParameters);
+
+        if (minPathElevationPrecision != null)
+            request.getHints().putObject(ELEVATION_WAY_POINT_MAX_DISTANCE, minPathElevationPrecision);
+
+        request.setPoints(points).
+                setProfile(profileName).
+                setAlgorithm(algoStr).
+                setLocale(localeStr).
+                setHeadings(headings).
+                setPointHints(pointHints).
+                setCurbsides(curbsides).
+                setPathDetails(pathDetails).
+                getHints().
+                putObject(CALC_POINTS, calcPoints).
+                putObject(INSTRUCTIONS, instructions).
+                putObject(WAY_POINT_MAX_DISTANCE, minPathPrecision);
+
+        if (queryParameters.containsKey(SNAP_PREVENTION)) {
+            if (snapPreventions.size() == 1 && snapPreventions.contains(""))
+                request.setSnapPreventions(List.of()); // e.g. "&snap_prevention=&" to force empty list
+            else
+                request.setSnapPreventions(snapPreventions);
+        } else {
+            // no "snap_prevention" was specified
+            request.setSnapPreventions(snapPreventionsDefault);
+        }
+        return request;
+    }
+
     static void initHints(PMap m, MultivaluedMap<String, String> parameterMap) {
         for (Map.Entry<String, List<String>> e : parameterMap.entrySet()) {
             if (e.getValue().size() == 1) {
@@ -1,9 +1,12 @@
 package com.graphhopper.resources;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.http.RequestExecutor;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
@@ -23,14 +26,9 @@ import org.slf4j.LoggerFactory;
 import jakarta.inject.Inject;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.core.Context;
-import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.core.StreamingOutput;
-import jakarta.ws.rs.core.UriInfo;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import jakarta.ws.rs.core.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
@@ -40,6 +38,16 @@ import static com.graphhopper.util.Parameters.Details.STREET_NAME;
 
 /**
  * This resource provides the entire shortest path tree as response. In a simple CSV format discussed at #1577.
+ * If multiple points are specified all of them are searched at the same time and every node is reached from the
+ * nearest point, whose index is returned in the source column. This can be used to calculate catchment areas.
+ * <p>
+ * With Accept: application/octet-stream the same columns are returned column by column in a binary format that can be
+ * loaded into a dataframe without parsing text. All numbers are big-endian. The response starts with an int with the
+ * number of rows and an int with the number of columns. Then follows for every column its name (an unsigned short
+ * with the number of bytes and the UTF-8 bytes), a byte with the type (1=int32, 2=float64, 3=int8 for booleans,
+ * 4=string), an int with the number of bytes of the values and the values of all rows. Every string is an int with
+ * the number of bytes followed by the UTF-8 bytes. Values that do not exist for a row, like the edge properties of
+ * the start nodes, are -1 for int32 and int8, NaN for float64 and empty for strings.
  */
 @Path("spt")
 public class SPTResource {
@@ -48,6 +56,7 @@ public class SPTResource {
 
     public static class IsoLabelWithCoordinates {
         public int nodeId = -1;
+        public int source;
         public int edgeId, prevEdgeId, prevNodeId = -1;
         public int timeMillis, prevTimeMillis;
         public int distance, prevDistance;
@@ -57,26 +66,32 @@ public class SPTResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final EncodingManager encodingManager;
+    private final RequestExecutor requestExecutor;
 
     @Inject
-    public SPTResource(GraphHopper graphHopper, ProfileResolver profileResolver, EncodingManager encodingManager) {
+    public SPTResource(GraphHopper graphHopper, ProfileResolver profileResolver, EncodingManager encodingManager, RequestExecutor requestExecutor) {
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.encodingManager = encodingManager;
+        this.requestExecutor = requestExecutor;
     }
 
     // Annotating this as application/json because errors come out as json, and
     // IllegalArgumentExceptions are not mapped to a fixed mediatype, because in RouteResource, it could be GPX.
     @GET
-    @Produces({"text/csv", "application/json"})
+    @Produces({"text/csv", "application/json", MediaType.APPLICATION_OCTET_STREAM})
     public Response doGet(
             @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
             @QueryParam("profile") String profileName,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
-            @QueryParam("point") @NotNull GHPointParam point,
+            @QueryParam("point") @NotNull List<GHPointParam> points,
             @QueryParam("columns") String columnsParam,
             @QueryParam("time_limit") @DefaultValue("600") OptionalLong timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") OptionalLong distanceInMeter) {
+        // the validation of @NotNull does not apply to an empty list, so we report a missing point in the same way
+        if (points.isEmpty())
+            throw new IllegalArgumentException("query param point must not be null");
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
@@ -95,13 +110,22 @@ public class SPTResource {
         BaseGraph graph = graphHopper.getBaseGraph();
         Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
-        Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
-        if (!snap.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-        QueryGraph queryGraph = QueryGraph.create(graph, snap);
+        List<Snap> snaps = new ArrayList<>(points.size());
+        for (GHPointParam point : points) {
+            Snap snap = locationIndex.findClosest(point.get().lat, point.get().lon, new DefaultSnapFilter(weighting, inSubnetworkEnc));
+            if (!snap.isValid())
+                throw new IllegalArgumentException("Point not found:" + point);
+            snaps.add(snap);
+        }
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        // the snaps of the points are only valid in the query graph once it is created
+        int[] sources = snaps.stream().mapToInt(Snap::getClosestNode).toArray();
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
         ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        // the tree is searched while the response is written, so it stops with a write error if the client
+        // disconnects, but we need to limit the time explicitly
+        shortestPathTree.setTimeoutMillis(requestExecutor.getTimeoutMillis());
 
         if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
@@ -114,6 +138,8 @@ public class SPTResource {
         List<String> columns;
         if (!Helper.isEmpty(columnsParam))
             columns = Arrays.asList(columnsParam.split(","));
+        else if (points.size() > 1)
+            columns = Arrays.asList("longitude", "latitude", "time", "distance", "source");
         else
             columns = Arrays.asList("longitude", "latitude", "time", "distance");
 
@@ -126,6 +152,29 @@ public class SPTResource {
                 pathDetails.put(col, encodingManager.getEncodedValue(col, EncodedValue.class));
         }
 
+        if (isBinaryRequested(headers)) {
+            List<Column> binaryColumns = new ArrayList<>(columns.size());
+            for (String col : columns)
+                binaryColumns.add(new Column(col, pathDetails.get(col)));
+            StreamingOutput out = output -> {
+                // the number of rows is written first, so we have to finish the search before we can write anything
+                shortestPathTree.search(sources, l -> {
+                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                    EdgeIteratorState edge = EdgeIterator.Edge.isValid(label.edgeId) ? queryGraph.getEdgeIteratorState(label.edgeId, label.nodeId) : null;
+                    for (Column column : binaryColumns)
+                        column.add(label, edge, reverseFlow);
+                });
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(output));
+                dos.writeInt(binaryColumns.isEmpty() ? 0 : binaryColumns.get(0).size);
+                dos.writeInt(binaryColumns.size());
+                for (Column column : binaryColumns)
+                    column.write(dos);
+                dos.flush();
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+            };
+            return Response.ok(out).type(MediaType.APPLICATION_OCTET_STREAM_TYPE).build();
+        }
+
         StreamingOutput out = output -> {
             try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
                 StringBuilder sb = new StringBuilder();
@@ -136,7 +185,7 @@ public class SPTResource {
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
+                shortestPathTree.search(sources, l -> {
                     IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
@@ -148,6 +197,9 @@ public class SPTResource {
                             case "node_id":
                                 sb.append(label.nodeId);
                                 continue;
+                            case "source":
+                                sb.append(label.source);
+                                continue;
                             case "prev_node_id":
                                 sb.append(label.prevNodeId);
                                 continue;
@@ -234,6 +286,7 @@ public class SPTResource {
         double lon = na.getLon(label.node);
         IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
         isoLabelWC.nodeId = label.node;
+        isoLabelWC.source = label.source;
         isoLabelWC.coordinate = new GHPoint(lat, lon);
         isoLabelWC.timeMillis = Math.round(label.time);
         isoLabelWC.distance = (int) Math.round(label.distance);
@@ -251,4 +304,173 @@ public class SPTResource {
         }
         return isoLabelWC;
     }
+
+    private static boolean isBinaryRequested(HttpHeaders headers) {
+        // the media types are sorted by preference and a wildcard should still return CSV like before
+        for (MediaType mediaType : headers.getAcceptableMediaTypes()) {
+            if (mediaType.isWildcardType() || mediaType.isWildcardSubtype())
+                return false;
+            if (mediaType.isCompatible(MediaType.APPLICATION_OCTET_STREAM_TYPE))
+                return true;
+            if (mediaType.isCompatible(MediaType.valueOf("text/csv")))
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * The values of one column of the binary output. They are collected while the tree is searched, because the
+     * number of rows has to be written first.
+     */
+    private static class Column {
+        private static final byte INT = 1, DOUBLE = 2, BOOLEAN = 3, STRING = 4;
+        private final String name;
+        private final EncodedValue ev;
+        private final byte type;
+        private final IntArrayList ints = new IntArrayList();
+        private final DoubleArrayList doubles = new DoubleArrayList();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream bytesOutput = new DataOutputStream(bytes);
+        private int size;
+
+        Column(String name, EncodedValue ev) {
+            this.name = name;
+            this.ev = ev;
+            switch (name) {
+                case "node_id":
+                case "source":
+                case "prev_node_id":
+                case "edge_id":
+                case "prev_edge_id":
+                case "distance":
+                case "prev_distance":
+                case "time":
+                case "prev_time":
+                    type = INT;
+                    return;
+                case "longitude":
+                case "prev_longitude":
+                case "latitude":
+                case "prev_latitude":
+                    type = DOUBLE;
+                    return;
+                case STREET_NAME:
+                    type = STRING;
+                    return;
+            }
+            if (ev instanceof DecimalEncodedValue)
+                type = DOUBLE;
+            else if (ev instanceof EnumEncodedValue)
+                type = STRING;
+            else if (ev instanceof BooleanEncodedValue)
+                type = BOOLEAN;
+            else if (ev instanceof IntEncodedValue)
+                type = INT;
+            else
+                throw new IllegalArgumentException("Unknown property " + name);
+        }
+
+        void add(IsoLabelWithCoordinates label, EdgeIteratorState edge, boolean reverse) {
+            size++;
+            switch (name) {
+                case "node_id":
+                    ints.add(label.nodeId);
+                    return;
+                case "source":
+                    ints.add(label.source);
+                    return;
+                case "prev_node_id":
+                    ints.add(label.prevNodeId);
+                    return;
+                case "edge_id":
+                    ints.add(label.edgeId);
+                    return;
+                case "prev_edge_id":
+                    ints.add(label.prevEdgeId);
+                    return;
+                case "distance":
+                    ints.add(label.distance);
+                    return;
+                case "prev_distance":
+                    ints.add(label.prevCoordinate == null ? 0 : label.prevDistance);
+                    return;
+                case "time":
+                    ints.add(label.timeMillis);
+                    return;
+                case "prev_time":
+                    ints.add(label.prevCoordinate == null ? 0 : label.prevTimeMillis);
+                    return;
+                case "longitude":
+                    doubles.add(label.coordinate.lon);
+                    return;
+                case "prev_longitude":
+                    doubles.add(label.prevCoordinate == null ? Double.NaN : label.prevCoordinate.lon);
+                    return;
+                case "latitude":
+                    doubles.add(label.coordinate.lat);
+                    return;
+                case "prev_latitude":
+                    doubles.add(label.prevCoordinate == null ? Double.NaN : label.prevCoordinate.lat);
+                    return;
+            }
+
+            if (edge == null) {
+                addMissing();
+            } else if (name.equals(STREET_NAME)) {
+                addString(edge.getName());
+            } else if (type == DOUBLE) {
+                DecimalEncodedValue dev = (DecimalEncodedValue) ev;
+                doubles.add(reverse ? edge.getReverse(dev) : edge.get(dev));
+            } else if (type == STRING) {
+                EnumEncodedValue<?> eev = (EnumEncodedValue<?>) ev;
+                addString(String.valueOf(reverse ? edge.getReverse(eev) : edge.get(eev)));
+            } else if (type == BOOLEAN) {
+                BooleanEncodedValue bev = (BooleanEncodedValue) ev;
+                bytes.write((reverse ? edge.getReverse(bev) : edge.get(bev)) ? 1 : 0);
+            } else {
+                IntEncodedValue iev = (IntEncodedValue) ev;
+                ints.add(reverse ? edge.getReverse(iev) : edge.get(iev));
+            }
+        }
+
+        private void addMissing() {
+            if (type == INT)
+                ints.add(-1);
+            else if (type == DOUBLE)
+                doubles.add(Double.NaN);
+            else if (type == BOOLEAN)
+                bytes.write(-1);
+            else
+                addString("");
+        }
+
+        private void addString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            try {
+                bytesOutput.writeInt(utf8.length);
+                bytesOutput.write(utf8);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            output.writeShort(nameBytes.length);
+            output.write(nameBytes);
+            output.writeByte(type);
+            if (type == INT) {
+                output.writeInt(4 * ints.size());
+                for (int i = 0; i < ints.size(); i++)
+                    output.writeInt(ints.get(i));
+            } else if (type == DOUBLE) {
+                output.writeInt(8 * doubles.size());
+                for (int i = 0; i < doubles.size(); i++)
+                    output.writeDouble(doubles.get(i));
+            } else {
+                output.writeInt(bytes.size());
+                bytes.writeTo(output);
+            }
+        }
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopperConfig;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphhopper.http.AdmissionController.CostClass.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testClassify() {
+        AdmissionController controller = new AdmissionController(new GraphHopperConfig());
+        assertEquals(LOW, controller.classify(true, true, 1_000_000, Integer.MAX_VALUE));
+        assertEquals(MEDIUM, controller.classify(false, true, 100_000, Integer.MAX_VALUE));
+        assertEquals(HIGH, controller.classify(false, true, 1_000_000, Integer.MAX_VALUE));
+        assertEquals(MEDIUM, controller.classify(false, false, 5_000, Integer.MAX_VALUE));
+        assertEquals(HIGH, controller.classify(false, false, 100_000, Integer.MAX_VALUE));
+        // a limited search space makes flexible requests cheaper
+        assertEquals(MEDIUM, controller.classify(false, false, 100_000, 50_000));
+    }
+
+    @Test
+    public void testRejectWhenLimitIsExhausted() {
+        AdmissionController controller = new AdmissionController(new GraphHopperConfig().
+                putObject("admission.high.max_concurrent", 1));
+        AdmissionController.Permit permit = controller.admit(HIGH);
+        WebApplicationException ex = assertThrows(WebApplicationException.class, () -> controller.admit(HIGH));
+        assertEquals(429, ex.getResponse().getStatus());
+        // other classes are not affected
+        controller.admit(LOW).close();
+        permit.close();
+        // closing twice must not release two slots
+        permit.close();
+        controller.admit(HIGH);
+        assertThrows(WebApplicationException.class, () -> controller.admit(HIGH));
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        AdmissionController controller = new AdmissionController(new GraphHopperConfig().
+                putObject("admission.medium.max_concurrent", 1).
+                putObject("admission.medium.max_queued", 1).
+                putObject("admission.medium.max_wait_ms", 10_000));
+        AdmissionController.Permit permit = controller.admit(MEDIUM);
+        CompletableFuture<AdmissionController.Permit> queued = CompletableFuture.supplyAsync(() -> controller.admit(MEDIUM));
+        // the second request is queued, so the third one is rejected immediately
+        Thread.sleep(200);
+        assertFalse(queued.isDone());
+        assertThrows(WebApplicationException.class, () -> controller.admit(MEDIUM));
+        // the queued request gets the slot once the first one is finished
+        permit.close();
+        queued.get(10, TimeUnit.SECONDS).close();
+        controller.admit(MEDIUM).close();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.shapes.BBox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTCacheTest {
+
+    @Test
+    public void testMemory() {
+        String graphVersion = "1";
+        AtomicInteger created = new AtomicInteger();
+        MVTCache cache = new MVTCache(250, "");
+        MVTCache.Tile tile = cache.get(graphVersion, 14, 1, 2, false, () -> createTile(created, 100));
+        assertSame(tile, cache.get(graphVersion, 14, 1, 2, false, () -> createTile(created, 100)));
+        assertEquals(1, created.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        // render_all is a different tile
+        cache.get(graphVersion, 14, 1, 2, true, () -> createTile(created, 100));
+        assertEquals(2, created.get());
+        assertEquals(200, cache.getBytes());
+
+        // the least recently used tile is evicted
+        cache.get(graphVersion, 14, 1, 3, false, () -> createTile(created, 100));
+        assertEquals(2, cache.getSize());
+        cache.get(graphVersion, 14, 1, 2, false, () -> createTile(created, 100));
+        assertEquals(4, created.get());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testDisk(@TempDir Path dir) {
+        String graphVersion = "1";
+        AtomicInteger created = new AtomicInteger();
+        MVTCache.Tile tile = new MVTCache(0, dir.toString()).get(graphVersion, 14, 1, 2, false, () -> createTile(created, 100));
+        // a new cache, e.g. after a restart, reads the tile from the directory
+        MVTCache cache = new MVTCache(0, dir.toString());
+        MVTCache.Tile fromDisk = cache.get(graphVersion, 14, 1, 2, false, () -> createTile(created, 100));
+        assertEquals(1, created.get());
+        assertArrayEquals(tile.getBytes(), fromDisk.getBytes());
+        assertEquals(tile.getETag(), fromDisk.getETag());
+
+        cache.clear();
+        cache.get(graphVersion, 14, 1, 2, false, () -> createTile(created, 100));
+        assertEquals(2, created.get());
+
+        // tiles of another graph are not used
+        cache.get("2", 14, 1, 2, false, () -> createTile(created, 100));
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    public void testGraphVersion() {
+        Map<String, String> properties = new HashMap<>(Map.of("datareader.import.date", "2024-11-05T10:00:00Z"));
+        String version = MVTCache.getGraphVersion("graph-cache", properties);
+        assertEquals(version, MVTCache.getGraphVersion("graph-cache", new HashMap<>(properties)));
+        assertNotEquals(version, MVTCache.getGraphVersion("other-graph-cache", properties));
+        // after applying a change file the tiles of the disk cache must not be used anymore
+        properties.put("datareader.changes.date", "2024-11-06T10:00:00Z");
+        assertNotEquals(version, MVTCache.getGraphVersion("graph-cache", properties));
+    }
+
+    @Test
+    public void testTileRange() {
+        // andorra
+        int[] range = PrerenderTilesTask.getTileRange(new BBox(1.41, 1.79, 42.42, 42.66), 14);
+        assertArrayEquals(new int[]{8256, 6041, 8273, 6056}, range);
+        assertArrayEquals(new int[]{0, 0, 0, 0}, PrerenderTilesTask.getTileRange(new BBox(-180, 180, -85, 85), 0));
+    }
+
+    private static byte[] createTile(AtomicInteger created, int size) {
+        byte[] bytes = new byte[size];
+        bytes[0] = (byte) created.incrementAndGet();
+        return bytes;
+    }
+}
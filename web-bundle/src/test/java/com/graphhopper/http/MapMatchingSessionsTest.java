@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.matching.MapMatchingSession;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapMatchingSessionsTest {
+    private final GraphHopper hopper = new GraphHopper();
+
+    private static MapMatchingSession createSession() {
+        // the sessions are never used for matching here
+        return new MapMatchingSession(null, 5);
+    }
+
+    @Test
+    public void testMaxSessions() {
+        MapMatchingSessions sessions = new MapMatchingSessions(2, 60_000);
+        assertTrue(sessions.isEnabled());
+        MapMatchingSession a = sessions.getOrCreate("a", hopper, MapMatchingSessionsTest::createSession);
+        sessions.getOrCreate("b", hopper, MapMatchingSessionsTest::createSession);
+        assertSame(a, sessions.getOrCreate("a", hopper, MapMatchingSessionsTest::createSession));
+        // b is the least recently used session
+        sessions.getOrCreate("c", hopper, MapMatchingSessionsTest::createSession);
+        assertEquals(2, sessions.getSize());
+        assertNull(sessions.remove("b", hopper));
+        assertSame(a, sessions.remove("a", hopper));
+
+        assertFalse(new MapMatchingSessions(0, 60_000).isEnabled());
+    }
+
+    @Test
+    public void testReloadedGraph() {
+        MapMatchingSessions sessions = new MapMatchingSessions(10, 60_000);
+        MapMatchingSession a = sessions.getOrCreate("a", hopper, MapMatchingSessionsTest::createSession);
+        // the graph was reloaded, but the sessions were not cleared yet
+        GraphHopper newHopper = new GraphHopper();
+        MapMatchingSession newA = sessions.getOrCreate("a", newHopper, MapMatchingSessionsTest::createSession);
+        assertNotSame(a, newA);
+        assertSame(newA, sessions.getOrCreate("a", newHopper, MapMatchingSessionsTest::createSession));
+        assertEquals(1, sessions.getSize());
+        assertNull(sessions.remove("a", hopper));
+        assertEquals(0, sessions.getSize());
+    }
+
+    @Test
+    public void testRemoveIdleSessions() throws InterruptedException {
+        MapMatchingSessions sessions = new MapMatchingSessions(10, 1_000);
+        sessions.getOrCreate("a", hopper, MapMatchingSessionsTest::createSession);
+        sessions.removeIdleSessions(System.currentTimeMillis() + 500);
+        assertEquals(1, sessions.getSize());
+        sessions.removeIdleSessions(System.currentTimeMillis() + 1_500);
+        assertEquals(0, sessions.getSize());
+
+        // without any requests the idle sessions are removed in the background
+        sessions.getOrCreate("b", hopper, MapMatchingSessionsTest::createSession);
+        sessions.start();
+        try {
+            long start = System.currentTimeMillis();
+            while (sessions.getSize() > 0 && System.currentTimeMillis() - start < 10_000)
+                Thread.sleep(50);
+            assertEquals(0, sessions.getSize());
+        } finally {
+            sessions.stop();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestCoalescerTest {
+
+    @Test
+    public void testDisabled() {
+        RequestCoalescer coalescer = new RequestCoalescer(false, 60_000, 10);
+        AtomicInteger calls = new AtomicInteger();
+        coalescer.execute("a", calls::incrementAndGet);
+        coalescer.execute("a", calls::incrementAndGet);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareResult() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true, 0, 10);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(5);
+        try {
+            Future<Integer> first = executorService.submit(() -> coalescer.execute("a", () -> {
+                started.countDown();
+                await(finish);
+                return calls.incrementAndGet();
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            List<Future<Integer>> others = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                others.add(executorService.submit(() -> coalescer.execute("a", calls::incrementAndGet)));
+            // a request with a different key is not blocked
+            assertEquals("other", coalescer.execute("b", () -> "other"));
+            // give the other requests some time to start waiting
+            Thread.sleep(100);
+            finish.countDown();
+            assertEquals(1, first.get(10, TimeUnit.SECONDS));
+            // requests that were not waiting yet might do their own calculation, but most of them should share
+            for (Future<Integer> other : others)
+                assertTrue(other.get(10, TimeUnit.SECONDS) <= 5);
+            assertTrue(calls.get() < 5, "calls: " + calls.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCache() throws InterruptedException {
+        RequestCoalescer coalescer = new RequestCoalescer(true, 200, 10);
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals(1, coalescer.execute("a", calls::incrementAndGet));
+        assertEquals(1, coalescer.execute("a", calls::incrementAndGet));
+        assertEquals(2, coalescer.execute("b", calls::incrementAndGet));
+        Thread.sleep(300);
+        assertEquals(3, coalescer.execute("a", calls::incrementAndGet));
+    }
+
+    @Test
+    public void testFailuresAreNotCached() {
+        RequestCoalescer coalescer = new RequestCoalescer(true, 60_000, 10);
+        assertThrows(IllegalArgumentException.class, () -> coalescer.execute("a", () -> {
+            throw new IllegalArgumentException("bad request");
+        }));
+        assertEquals("ok", coalescer.execute("a", () -> "ok"));
+    }
+
+    @Test
+    public void testCancelledRequestDoesNotFailWaitingRequests() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true, 0, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executorService.submit(() -> coalescer.execute("a", () -> {
+                started.countDown();
+                await(finish);
+                throw new RequestExecutor.CancelledException("Client disconnected");
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<String> second = executorService.submit(() -> coalescer.execute("a", () -> "second"));
+            // give the second request some time to start waiting
+            Thread.sleep(100);
+            finish.countDown();
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(RequestExecutor.CancelledException.class, ex.getCause());
+            // the second request does the calculation itself instead of failing with the cancellation
+            assertEquals("second", second.get(10, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClear() {
+        RequestCoalescer coalescer = new RequestCoalescer(true, 60_000, 10);
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals(1, coalescer.execute("a", calls::incrementAndGet));
+        assertEquals(1, coalescer.execute("a", calls::incrementAndGet));
+        coalescer.clear();
+        assertEquals(2, coalescer.execute("a", calls::incrementAndGet));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
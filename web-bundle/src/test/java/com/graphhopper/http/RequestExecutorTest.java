@@ -0,0 +1,100 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestExecutorTest {
+
+    // a request that is not connected to Jetty, so it is never considered as disconnected
+    private final HttpServletRequest httpReq = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[]{HttpServletRequest.class}, (proxy, method, args) -> null);
+
+    @Test
+    public void testDirect() {
+        RequestExecutor executor = new RequestExecutor(false, Long.MAX_VALUE);
+        Thread requestThread = Thread.currentThread();
+        assertSame(requestThread, executor.execute(httpReq, Thread::currentThread));
+    }
+
+    @Test
+    public void testSeparateThreads() {
+        RequestExecutor executor = new RequestExecutor(true, Long.MAX_VALUE);
+        try {
+            Thread requestThread = Thread.currentThread();
+            assertNotSame(requestThread, executor.execute(httpReq, Thread::currentThread));
+            // exceptions are passed through so that they are mapped to the usual responses
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> executor.execute(httpReq, () -> {
+                throw new IllegalArgumentException("bad request");
+            }));
+            assertEquals("bad request", ex.getMessage());
+        } finally {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor(true, 100);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            WebApplicationException ex = assertThrows(WebApplicationException.class, () -> executor.execute(httpReq, () -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.onSpinWait();
+                }
+                interrupted.countDown();
+                return null;
+            }));
+            assertEquals(503, ex.getResponse().getStatus());
+            // the request must not finish before the task stopped, otherwise the graph could be released too early
+            assertEquals(0, interrupted.getCount(), "task was still running");
+        } finally {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testCancelWaitsForTask() {
+        RequestExecutor executor = new RequestExecutor(true, 100);
+        AtomicBoolean running = new AtomicBoolean();
+        try {
+            assertThrows(WebApplicationException.class, () -> executor.execute(httpReq, () -> {
+                running.set(true);
+                // like the path extraction, this does not check if the thread was interrupted
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                running.set(false);
+                return null;
+            }));
+            assertFalse(running.get(), "task was still running");
+        } finally {
+            executor.stop();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarmUpTest {
+
+    @Test
+    public void testParseRequest() {
+        GHRequest request = WarmUp.parseRequest("/route?point=51.1%2C12.3&point=51.2,12.4&profile=car&ch.disable=true&instructions=false", List.of("ferry"));
+        assertEquals(List.of(new GHPoint(51.1, 12.3), new GHPoint(51.2, 12.4)), request.getPoints());
+        assertEquals("car", request.getProfile());
+        assertTrue(request.getHints().getBool("ch.disable", false));
+        assertFalse(request.getHints().getBool("instructions", true));
+        assertEquals(List.of("ferry"), request.getSnapPreventions());
+    }
+
+    @Test
+    public void testParseRequestLikeRouteResource() {
+        GHRequest request = WarmUp.parseRequest("point=51.1,12.3&point=51.2,12.4&profile=car&algorithm=alternative_route" +
+                "&heading=90&heading=180&details=road_class&details=surface&locale=de&curbside=right&curbside=any" +
+                "&snap_prevention=tunnel&snap_prevention=bridge&point_hint=Main%20Street&point_hint=", List.of("ferry"));
+        assertEquals("alternative_route", request.getAlgorithm());
+        assertEquals(List.of(90.0, 180.0), request.getHeadings());
+        assertEquals(List.of("road_class", "surface"), request.getPathDetails());
+        assertEquals("de", request.getLocale().getLanguage());
+        assertEquals(List.of("right", "any"), request.getCurbsides());
+        assertEquals(List.of("tunnel", "bridge"), request.getSnapPreventions());
+        assertEquals(List.of("Main Street", ""), request.getPointHints());
+        // the defaults of GET /route
+        assertTrue(request.getHints().getBool("instructions", false));
+        assertTrue(request.getHints().getBool("calc_points", false));
+        assertEquals(0.5, request.getHints().getDouble("way_point_max_distance", 0), 1.e-9);
+    }
+
+    @Test
+    public void testReadRequests(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("requests.txt");
+        Files.writeString(file, "# sample of the requests from yesterday\n" +
+                "point=51.1,12.3&point=51.2,12.4&profile=car\n" +
+                "\n" +
+                "point=51.1,12.3&point=51.2,12.4&point=51.3,12.5&profile=bike\n");
+        List<GHRequest> requests = WarmUp.readRequests(file.toString(), List.of());
+        assertEquals(2, requests.size());
+        assertEquals(3, requests.get(1).getPoints().size());
+        assertEquals("bike", requests.get(1).getProfile());
+    }
+
+    @Test
+    public void testEnabled() {
+        assertFalse(WarmUp.forStart(new GraphHopperConfig()).isEnabled());
+        assertTrue(WarmUp.forStart(new GraphHopperConfig().putObject("warm_up.requests", 10)).isEnabled());
+        assertTrue(WarmUp.forStart(new GraphHopperConfig().putObject("warm_up.file", "requests.txt")).isEnabled());
+        // a reloaded graph is warmed up by default
+        assertTrue(WarmUp.forReload(new GraphHopperConfig()).isEnabled());
+        assertThrows(IllegalArgumentException.class, () -> new WarmUp(10, 0, ""));
+    }
+}
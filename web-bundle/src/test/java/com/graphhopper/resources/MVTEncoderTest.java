@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.util.PointList;
+import no.ecc.vectortile.VectorTileDecoder;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTEncoderTest {
+
+    @Test
+    public void testEncode() throws IOException {
+        MVTEncoder encoder = new MVTEncoder("roads", List.of("name", "distance", "edge_id", "oneway"), 10, 50, 11, 51);
+        PointList pl = new PointList();
+        pl.add(50.5, 10.5);
+        pl.add(50.75, 10.5);
+        // collapses with the previous point
+        pl.add(50.75, 10.50001);
+        pl.add(50.75, 10.75);
+        assertTrue(encoder.addLineString(3, pl, new Object[]{"main street", 12.5, 3, true}));
+
+        PointList samePoint = new PointList();
+        samePoint.add(50.5, 10.5);
+        samePoint.add(50.5, 10.5);
+        assertFalse(encoder.addLineString(4, samePoint, new Object[]{"main street", 0.0, 4, false}));
+
+        PointList outside = new PointList();
+        outside.add(51.5, 9.5);
+        outside.add(50.5, 10.5);
+        assertTrue(encoder.addLineString(5, outside, new Object[]{"main street", null, 5, false}));
+
+        PointList farAway = new PointList();
+        farAway.add(52, 10.5);
+        farAway.add(52, 10.6);
+        assertFalse(encoder.addLineString(6, farAway, new Object[]{"main street", null, 6, false}));
+
+        List<VectorTileDecoder.Feature> features = new VectorTileDecoder().decode(encoder.encode()).asList();
+        assertEquals(2, features.size());
+        VectorTileDecoder.Feature first = features.get(0);
+        assertEquals("roads", first.getLayerName());
+        assertEquals(3, first.getId());
+        assertEquals(4096, first.getExtent());
+        assertEquals("main street", first.getAttributes().get("name"));
+        assertEquals(12.5, first.getAttributes().get("distance"));
+        assertEquals(3L, ((Number) first.getAttributes().get("edge_id")).longValue());
+        assertEquals(true, first.getAttributes().get("oneway"));
+        // the decoder scales the coordinates from the extent to 256
+        Coordinate[] coordinates = first.getGeometry().getCoordinates();
+        assertEquals(3, coordinates.length);
+        assertEquals(new Coordinate(128, 128), coordinates[0]);
+        assertEquals(new Coordinate(128, 64), coordinates[1]);
+        assertEquals(new Coordinate(192, 64), coordinates[2]);
+
+        VectorTileDecoder.Feature second = features.get(1);
+        assertEquals("main street", second.getAttributes().get("name"));
+        assertFalse(second.getAttributes().containsKey("distance"));
+        assertEquals(false, second.getAttributes().get("oneway"));
+        assertEquals(new Coordinate(-128, -128), second.getGeometry().getCoordinates()[0]);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NearestResourceTest {
+
+    @Test
+    public void testSortSpatially() {
+        // two clusters far apart, the points are interleaved in the input
+        double[] lats = {42.5, 52.5, 42.5001, 52.5001, Double.NaN};
+        double[] lons = {1.5, 13.4, 1.5001, 13.4001, 200};
+        int[] order = NearestResource.sortSpatially(lats, lons);
+        assertEquals(5, order.length);
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, sorted);
+        // the points of each cluster are next to each other
+        assertEquals(1, Math.abs(indexOf(order, 0) - indexOf(order, 2)));
+        assertEquals(1, Math.abs(indexOf(order, 1) - indexOf(order, 3)));
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++)
+            if (array[i] == value)
+                return i;
+        return -1;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.application.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.CandidateEdgeCache;
+import com.graphhopper.matching.EdgeSpeedStatistics;
+import com.graphhopper.matching.MapMatching;
+import com.graphhopper.matching.Observation;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Argument;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Matches many tracks in parallel and collects the traversals and speeds per edge, see {@link EdgeSpeedStatistics}.
+ * The input is either a directory with GPX files or a file with one JSON track per line like
+ * {"id": "track1", "points": [[lon, lat, time], ...]} where the time is in milliseconds and optional. All threads
+ * share the same graph, so the memory does not grow with the number of threads.
+ */
+public class BulkMatchCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
+
+    public BulkMatchCommand() {
+        super("match-bulk", "map-match many tracks in parallel and aggregate the speeds per edge");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        subparser.addArgument("input")
+                .type(File.class)
+                .required(true)
+                .help("directory with GPX files or a file with one JSON track per line");
+        subparser.addArgument("--file")
+                .required(true)
+                .help("application configuration file");
+        subparser.addArgument("--profile")
+                .type(String.class)
+                .required(true)
+                .help("profile to use for map-matching (must be configured in configuration file)");
+        subparser.addArgument("--gps_accuracy")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(40);
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(Runtime.getRuntime().availableProcessors());
+        subparser.addArgument("--output")
+                .type(File.class)
+                .required(false)
+                .help("file for the edge speeds, by default edge_speeds in the graph folder");
+    }
+
+    @Override
+    protected Argument addFileArgument(Subparser subparser) {
+        // Never called, the configuration file is a named argument like for the match command
+        throw new RuntimeException();
+    }
+
+    @Override
+    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) throws Exception {
+        GraphHopper hopper = new GraphHopper().init(configuration.getGraphHopperConfiguration());
+        hopper.importOrLoad();
+        try {
+            File output = args.get("output");
+            if (output == null)
+                output = new File(hopper.getGraphHopperLocation(), "edge_speeds");
+            StopWatch sw = new StopWatch().start();
+            EdgeSpeedStatistics statistics = match(hopper, args.getString("profile"), args.getInt("gps_accuracy"),
+                    args.getInt("threads"), args.get("input"));
+            statistics.write(output);
+            System.out.println("wrote speeds of " + statistics.getEdges() + " edges to " + output + ", took: " + sw.stop().getSeconds() + "s");
+        } finally {
+            hopper.close();
+        }
+    }
+
+    static EdgeSpeedStatistics match(GraphHopper hopper, String profile, int gpsAccuracy, int threads, File input) throws Exception {
+        PMap hints = new PMap();
+        hints.putObject("profile", profile);
+        EdgeSpeedStatistics statistics = new EdgeSpeedStatistics(5, 32);
+        // tracks of the same area look up the same candidate edges
+        CandidateEdgeCache candidateEdgeCache = new CandidateEdgeCache(50_000);
+        AtomicInteger matched = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        // the tracks are read faster than they are matched, so with a bounded queue the reading thread matches a
+        // track itself when the queue is full instead of reading all tracks into memory
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            readTracks(input, (id, observations) -> executor.execute(() -> {
+                try {
+                    // MapMatching is not thread-safe, but it is cheap to create compared to the matching itself
+                    MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, hints);
+                    mapMatching.setMeasurementErrorSigma(gpsAccuracy);
+                    mapMatching.setCandidateEdgeCache(candidateEdgeCache);
+                    statistics.add(mapMatching.match(observations));
+                    matched.incrementAndGet();
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                    System.err.println("Problem with track " + id + ": " + ex.getMessage());
+                }
+            }), (id, ex) -> {
+                failed.incrementAndGet();
+                System.err.println("Problem with track " + id + ": " + ex.getMessage());
+            });
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("matched tracks: " + matched.get() + ", failed: " + failed.get());
+        return statistics;
+    }
+
+    private interface TrackConsumer {
+        void accept(String id, List<Observation> observations);
+    }
+
+    private interface ErrorConsumer {
+        void accept(String id, Exception ex);
+    }
+
+    /**
+     * Reads the tracks of the given input. Files or lines that cannot be read are passed to the errorConsumer and
+     * skipped, so a single broken track does not abort the whole run.
+     */
+    private static void readTracks(File input, TrackConsumer consumer, ErrorConsumer errorConsumer) throws IOException {
+        if (input.isDirectory()) {
+            XmlMapper xmlMapper = new XmlMapper();
+            File[] files = input.listFiles((dir, name) -> name.endsWith(".gpx"));
+            if (files == null)
+                throw new IOException("Cannot read directory " + input);
+            for (File gpxFile : files) {
+                List<Observation> observations = new ArrayList<>();
+                try {
+                    Gpx gpx = xmlMapper.readValue(gpxFile, Gpx.class);
+                    if (gpx.trk != null)
+                        for (Gpx.Trk trk : gpx.trk)
+                            observations.addAll(GpxConversions.getEntries(trk));
+                } catch (IOException ex) {
+                    errorConsumer.accept(gpxFile.getName(), ex);
+                    continue;
+                }
+                consumer.accept(gpxFile.getName(), observations);
+            }
+        } else {
+            ObjectMapper objectMapper = new ObjectMapper();
+            try (BufferedReader reader = Files.newBufferedReader(input.toPath())) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank())
+                        continue;
+                    String id = "line " + lineNumber;
+                    List<Observation> observations = new ArrayList<>();
+                    try {
+                        JsonNode track = objectMapper.readTree(line);
+                        if (track.has("id"))
+                            id = track.get("id").asText();
+                        for (JsonNode point : track.path("points")) {
+                            if (!point.isArray() || point.size() < 2)
+                                throw new IllegalArgumentException("point must be [lon, lat] or [lon, lat, time] but was " + point);
+                            GHPoint ghPoint = new GHPoint(point.get(1).asDouble(), point.get(0).asDouble());
+                            observations.add(point.size() > 2 ? new Observation(ghPoint, point.get(2).asLong()) : new Observation(ghPoint));
+                        }
+                    } catch (IOException | IllegalArgumentException ex) {
+                        errorConsumer.accept(id, ex);
+                        continue;
+                    }
+                    consumer.accept(id, observations);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.matching.CandidateEdgeCache;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CandidateEdgeCacheTest {
+    private static final String GH_LOCATION = "../target/candidate-edge-cache-gh";
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        Helper.removeDir(new File(GH_LOCATION));
+    }
+
+    @Test
+    public void testSameEdgesAsLocationIndex() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.importOrLoad();
+        LocationIndexTree locationIndex = (LocationIndexTree) hopper.getLocationIndex();
+        BBox bounds = hopper.getBaseGraph().getBounds();
+
+        CandidateEdgeCache cache = new CandidateEdgeCache(5);
+        Random random = new Random(123);
+        for (int i = 0; i < 100; i++) {
+            double lat = bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat);
+            double lon = bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon);
+            BBox bbox = new BBox(lon - 0.0005, lon + 0.0005, lat - 0.0003, lat + 0.0003);
+            IntHashSet expected = new IntHashSet();
+            locationIndex.query(bbox, expected::add);
+            IntHashSet edges = new IntHashSet();
+            cache.query(locationIndex, bbox, edges::add);
+            // the cells can contain more edges, but never less
+            for (int edge : expected.toArray())
+                assertTrue(edges.contains(edge), "missing edge " + edge + " for " + bbox);
+            assertTrue(cache.getSize() <= 5);
+
+            // the cells are the tiles of the index, so for a single point we get the same edges as the index
+            BBox point = new BBox(lon, lon, lat, lat);
+            expected = new IntHashSet();
+            locationIndex.query(point, expected::add);
+            edges = new IntHashSet();
+            cache.query(locationIndex, point, edges::add);
+            assertEquals(expected, edges, "edges for " + point);
+        }
+        assertTrue(cache.getSize() > 0);
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        hopper.close();
+    }
+}
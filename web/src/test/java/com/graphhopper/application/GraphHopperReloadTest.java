@@ -0,0 +1,93 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests replacing the graph of a running server via the reload-graph admin task
+ */
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class GraphHopperReloadTest {
+    private static final String DIR = "./target/reload-andorra-gh/";
+    private static final String NEW_DIR = "./target/reload-monaco-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.reload.warm_up_requests", 10).
+                setProfiles(List.of(TestProfiles.constantSpeed("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+        Helper.removeDir(new File(NEW_DIR));
+    }
+
+    @Test
+    public void testReload() {
+        assertEquals(200, route("42.554851,1.536198", "42.510071,1.548128").getStatus());
+        assertEquals(400, route("43.730729,7.42135", "43.727697,7.419199").getStatus());
+
+        GraphHopperConfig newConfig = new GraphHopperConfig(app.getConfiguration().getGraphHopperConfiguration()).
+                putObject("datareader.file", "../core/files/monaco.osm.gz").
+                putObject("graph.location", NEW_DIR);
+        new GraphHopper().init(newConfig).importAndClose();
+
+        Response response = app.client().target("http://localhost:" + app.getAdminPort() + "/tasks/reload-graph")
+                .queryParam("graph.location", NEW_DIR)
+                .request().post(Entity.text(""));
+        assertEquals(200, response.getStatus(), response.readEntity(String.class));
+
+        assertEquals(400, route("42.554851,1.536198", "42.510071,1.548128").getStatus());
+        Response routeResponse = route("43.730729,7.42135", "43.727697,7.419199");
+        assertEquals(200, routeResponse.getStatus());
+        JsonNode path = routeResponse.readEntity(JsonNode.class).get("paths").get(0);
+        assertEquals(1553, path.get("distance").asDouble(), 10);
+    }
+
+    private static Response route(String from, String to) {
+        return clientTarget(app, "/route?profile=car&point=" + from + "&point=" + to).request().get();
+    }
+}
@@ -80,6 +80,30 @@ public class MapMatching2Test {
         assertEquals(28790, mr.getMatchMillis(), 50);
     }
 
+    @Test
+    public void testOneToManyDijkstraMatchesLikeLM() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("my_profile"));
+        hopper.importOrLoad();
+
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+        MatchResult lmResult = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"))
+                .match(GpxConversions.getEntries(gpx.trk.get(0)));
+        // without landmarks the transitions of every candidate are calculated with a single one-to-many search
+        MatchResult dijkstraResult = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile").putObject("lm.disable", true))
+                .match(GpxConversions.getEntries(gpx.trk.get(0)));
+
+        assertEquals(lmResult.getMatchLength(), dijkstraResult.getMatchLength(), 1.e-6);
+        assertEquals(lmResult.getMatchMillis(), dijkstraResult.getMatchMillis());
+        assertEquals(lmResult.getEdgeMatches().size(), dijkstraResult.getEdgeMatches().size());
+        for (int i = 0; i < lmResult.getEdgeMatches().size(); i++)
+            assertEquals(lmResult.getEdgeMatches().get(i).getEdgeState().getEdge(), dijkstraResult.getEdgeMatches().get(i).getEdgeState().getEdge());
+    }
+
     @Test
     public void testIssue70() throws IOException {
         GraphHopper hopper = new GraphHopper();
@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.cli;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.matching.EdgeSpeedStatistics;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkMatchCommandTest {
+    private static final String GH_LOCATION = "../target/bulk-match-gh";
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        Helper.removeDir(new File(GH_LOCATION));
+    }
+
+    @Test
+    public void testSpeeds() throws Exception {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../core/files/andorra.osm.pbf");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("car"));
+        hopper.importOrLoad();
+
+        GHResponse rsp = hopper.route(new GHRequest(42.506694, 1.521616, 42.543311, 1.588984).setProfile("car"));
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        PointList points = rsp.getBest().getPoints();
+        assertTrue(points.size() > 100, "" + points.size());
+
+        // a vehicle that drives with 36km/h, i.e. 10m/s
+        StringBuilder track = new StringBuilder("{\"id\": \"track1\", \"points\": [");
+        double distance = 0;
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                distance += DistanceCalcEarth.DIST_EARTH.calcDist(points.getLat(i - 1), points.getLon(i - 1), points.getLat(i), points.getLon(i));
+                track.append(", ");
+            }
+            track.append("[").append(points.getLon(i)).append(", ").append(points.getLat(i)).append(", ").append((long) (distance * 100)).append("]");
+        }
+        track.append("]}");
+        File input = new File(GH_LOCATION, "tracks.ndjson");
+        // broken lines are skipped like broken GPX files
+        Files.write(input.toPath(), List.of(track.toString(), "", "{\"id\": \"broken", "{\"id\": \"track3\", \"points\": [[1.5]]}",
+                track.toString().replace("track1", "track2")));
+
+        EdgeSpeedStatistics statistics = BulkMatchCommand.match(hopper, "car", 10, 2, input);
+        assertTrue(statistics.getEdges() > 50, "" + statistics.getEdges());
+        int speeds = 0, expectedSpeeds = 0;
+        AllEdgesIterator iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next()) {
+            for (int edgeKey : new int[]{iter.getEdgeKey(), iter.getReverseEdgeKey()}) {
+                int traversals = statistics.getTraversals(edgeKey);
+                assertTrue(traversals == 0 || traversals == 2, "" + traversals);
+                int[] histogram = statistics.getSpeedHistogram(edgeKey);
+                for (int count : histogram)
+                    speeds += count;
+                // 36km/h is in the bucket from 35 to 40km/h
+                expectedSpeeds += histogram[7];
+            }
+        }
+        assertTrue(speeds > statistics.getEdges(), "" + speeds);
+        // the positions are snapped to the edges, so only a few speeds deviate
+        assertTrue(expectedSpeeds > 0.9 * speeds, expectedSpeeds + " vs. " + speeds);
+
+        File output = new File(GH_LOCATION, "edge_speeds");
+        statistics.write(output);
+        EdgeSpeedStatistics read = EdgeSpeedStatistics.read(output);
+        assertEquals(statistics.getEdges(), read.getEdges());
+        assertEquals(5, read.getBucketWidthKmh());
+        assertEquals(32, read.getBuckets());
+        iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next()) {
+            assertEquals(statistics.getTraversals(iter.getEdgeKey()), read.getTraversals(iter.getEdgeKey()));
+            assertArrayEquals(statistics.getSpeedHistogram(iter.getEdgeKey()), read.getSpeedHistogram(iter.getEdgeKey()));
+        }
+        hopper.close();
+    }
+}
@@ -40,7 +40,10 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Polygon;
 
 import jakarta.ws.rs.client.WebTarget;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
@@ -96,6 +99,51 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @Test
+    public void requestRaster() throws IOException {
+        byte[] bytes = clientTarget(app, "/isochrone/raster")
+                .queryParam("profile", "fast_car")
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("time_limit", 5 * 60)
+                .queryParam("cell_size", 100)
+                .request().get(byte[].class);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int width = in.readInt();
+        int height = in.readInt();
+        double minLon = in.readDouble();
+        double maxLat = in.readDouble();
+        double cellSize = in.readDouble();
+        assertEquals(4 * 2 + 8 * 3 + 4 * width * height, bytes.length);
+        float[] values = new float[width * height];
+        for (int i = 0; i < values.length; i++)
+            values[i] = in.readFloat();
+        // the same points as for the polygons: the first within the first half of the time limit, the second within
+        // the time limit and the third not at all
+        int col = (int) ((1.587224 - minLon) / cellSize), row = (int) ((maxLat - 42.5386) / cellSize);
+        float first = values[row * width + col];
+        assertTrue(first < 150_000, "first: " + first);
+        col = (int) ((1.589756 - minLon) / cellSize);
+        row = (int) ((maxLat - 42.558012) / cellSize);
+        float second = values[row * width + col];
+        assertTrue(second > 150_000 && second <= 300_000, "second: " + second);
+        col = (int) ((1.635246 - minLon) / cellSize);
+        row = (int) ((maxLat - 42.53841) / cellSize);
+        assertTrue(col >= width || row >= height || Float.isNaN(values[row * width + col]));
+
+        String asc = clientTarget(app, "/isochrone/raster")
+                .queryParam("profile", "fast_car")
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("time_limit", 5 * 60)
+                .queryParam("cell_size", 100)
+                .queryParam("type", "asc")
+                .request().get(String.class);
+        String[] lines = asc.split("\n");
+        assertEquals("ncols " + width, lines[0]);
+        assertEquals("nrows " + height, lines[1]);
+        assertEquals(6 + height, lines.length);
+        assertEquals(width, lines[6].split(" ").length);
+    }
+
     @Test
     public void requestByTimeLimitNoTurnRestrictions() {
         JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
@@ -194,6 +242,14 @@ public class IsochroneResourceTest {
         assertTrue(error.contains("Point not found:-1.816719,51.557148"), error);
     }
 
+    @Test
+    public void requestRasterWithInvalidCellSize() {
+        for (String cellSize : new String[]{"0", "-100", "1e-9"}) {
+            BodyAndStatus response = getWithStatus(clientTarget(app, "/isochrone/raster?profile=fast_car&point=42.531073,1.573792&cell_size=" + cellSize));
+            assertEquals(400, response.getStatus(), "cell_size=" + cellSize);
+        }
+    }
+
     @Test
     public void profileWithLegacyParametersNotAllowed() {
         assertNotAllowed("&profile=fast_car&weighting=fastest", "The 'weighting' parameter is no longer supported. You used 'weighting=fastest'");
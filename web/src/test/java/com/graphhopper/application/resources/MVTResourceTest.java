@@ -24,6 +24,8 @@ import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
 import no.ecc.vectortile.VectorTileDecoder;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -39,10 +41,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -60,6 +64,7 @@ public class MVTResourceTest {
                 putObject("datareader.file", "../core/files/andorra.osm.pbf").
                 putObject("import.osm.ignored_highways", "").
                 putObject("graph.location", DIR).
+                putObject("mvt.cache.max_bytes", 10_000_000).
                 setProfiles(List.of(TestProfiles.constantSpeed("car")));
         return config;
     }
@@ -96,6 +101,43 @@ public class MVTResourceTest {
         assertEquals("primary", feature.getAttributes().get("road_class"));
     }
 
+    @Test
+    public void testOnlyRequestedProperties() throws IOException {
+        InputStream is = clientTarget(app, "/mvt/15/16522/12102.mvt?properties=street_name&properties=max_speed&properties=road_class&properties=edge_id").
+                request().get(InputStream.class);
+        List<VectorTileDecoder.Feature> features = new VectorTileDecoder().decode(readInputStream(is)).asList();
+        // the geometries are not clipped, so edges that are close to the tile but do not intersect it can be included
+        InputStream allPropertiesIs = clientTarget(app, "/mvt/15/16522/12102.mvt").request().get(InputStream.class);
+        Set<Long> ids = features.stream().map(VectorTileDecoder.Feature::getId).collect(Collectors.toSet());
+        for (VectorTileDecoder.Feature f : new VectorTileDecoder().decode(readInputStream(allPropertiesIs)).asList())
+            assertTrue(ids.contains(f.getId()), "missing edge " + f.getId());
+        assertEquals(29, features.size());
+
+        VectorTileDecoder.Feature feature = features.stream()
+                .filter(f -> "Avinguda de Tarragona".equals(f.getAttributes().get(STREET_NAME)))
+                .findFirst().get();
+        assertEquals("50.0 | 50.0", feature.getAttributes().get("max_speed"));
+        assertEquals("primary", feature.getAttributes().get("road_class"));
+        assertEquals(feature.getId(), ((Number) feature.getAttributes().get("edge_id")).longValue());
+        assertFalse(feature.getAttributes().containsKey("road_environment"));
+    }
+
+    @Test
+    public void testETag() throws IOException {
+        Response response = clientTarget(app, "/mvt/15/16522/12102.mvt").request().get();
+        assertEquals(200, response.getStatus());
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        byte[] bytes = response.readEntity(byte[].class);
+
+        Response cached = clientTarget(app, "/mvt/15/16522/12102.mvt").request().get();
+        assertEquals(etag, cached.getHeaderString(HttpHeaders.ETAG));
+        assertArrayEquals(bytes, cached.readEntity(byte[].class));
+
+        Response notModified = clientTarget(app, "/mvt/15/16522/12102.mvt").request().header(HttpHeaders.IF_NONE_MATCH, etag).get();
+        assertEquals(304, notModified.getStatus());
+    }
+
     private static byte[] readInputStream(InputStream is) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int nRead;
@@ -0,0 +1,129 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MapMatchingSessionResourceTest {
+    private static final String DIR = "./target/match-sessions-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testStreamingMatchesLikeBatch() {
+        // we use the points of a route as track
+        JsonNode route = clientTarget(app, "/route?profile=car&point=42.506694,1.521616&point=42.543311,1.588984&points_encoded=false&instructions=false").
+                request().get(JsonNode.class);
+        JsonNode coordinates = route.get("paths").get(0).get("points").get("coordinates");
+        List<List<Double>> points = new ArrayList<>();
+        StringBuilder gpx = new StringBuilder("<gpx><trk><trkseg>");
+        for (JsonNode c : coordinates) {
+            points.add(List.of(c.get(0).asDouble(), c.get(1).asDouble()));
+            gpx.append("<trkpt lat=\"").append(c.get(1).asDouble()).append("\" lon=\"").append(c.get(0).asDouble()).append("\"/>");
+        }
+        gpx.append("</trkseg></trk></gpx>");
+        assertTrue(points.size() > 100, "" + points.size());
+
+        JsonNode batch = clientTarget(app, "/match?profile=car&traversal_keys=true").request().
+                post(Entity.entity(gpx.toString(), "application/gpx+xml"), JsonNode.class);
+        List<Integer> expected = new ArrayList<>();
+        batch.get("traversal_keys").forEach(k -> expected.add(k.asInt()));
+
+        List<Integer> edgeKeys = new ArrayList<>();
+        int chunk = 20;
+        for (int i = 0; i < points.size(); i += chunk) {
+            JsonNode rsp = clientTarget(app, "/match/sessions/vehicle1?profile=car&lag=5").request().
+                    post(Entity.json(Map.of("points", points.subList(i, Math.min(points.size(), i + chunk)))), JsonNode.class);
+            rsp.get("edges").forEach(e -> edgeKeys.add(e.get("edge_key").asInt()));
+            assertTrue(rsp.get("pending_observations").asInt() <= 5);
+        }
+        // most edges are final before the end of the track
+        assertTrue(edgeKeys.size() > expected.size() / 2, edgeKeys.size() + " vs. " + expected.size());
+        JsonNode rsp = clientTarget(app, "/match/sessions/vehicle1").request().delete(JsonNode.class);
+        rsp.get("edges").forEach(e -> edgeKeys.add(e.get("edge_key").asInt()));
+        assertEquals(0, rsp.get("pending_observations").asInt());
+        assertEquals(expected, edgeKeys);
+
+        // the session was removed
+        Response response = clientTarget(app, "/match/sessions/vehicle1").request().delete();
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    public void testObservationWithoutCandidatesIsIgnored() {
+        JsonNode route = clientTarget(app, "/route?profile=car&point=42.506694,1.521616&point=42.543311,1.588984&points_encoded=false&instructions=false").
+                request().get(JsonNode.class);
+        List<List<Double>> points = new ArrayList<>();
+        for (JsonNode c : route.get("paths").get(0).get("points").get("coordinates"))
+            points.add(List.of(c.get(0).asDouble(), c.get(1).asDouble()));
+        List<Integer> expected = matchInSession("vehicle2", points);
+
+        // a position far away from all roads in the middle of the track
+        List<List<Double>> withOutlier = new ArrayList<>(points);
+        withOutlier.add(points.size() / 2, List.of(1.0, 42.0));
+        assertEquals(expected, matchInSession("vehicle3", withOutlier));
+    }
+
+    private static List<Integer> matchInSession(String id, List<List<Double>> points) {
+        List<Integer> edgeKeys = new ArrayList<>();
+        JsonNode rsp = clientTarget(app, "/match/sessions/" + id + "?profile=car&lag=5").request().
+                post(Entity.json(Map.of("points", points)), JsonNode.class);
+        rsp.get("edges").forEach(e -> edgeKeys.add(e.get("edge_key").asInt()));
+        rsp = clientTarget(app, "/match/sessions/" + id).request().delete(JsonNode.class);
+        rsp.get("edges").forEach(e -> edgeKeys.add(e.get("edge_key").asInt()));
+        return edgeKeys;
+    }
+}
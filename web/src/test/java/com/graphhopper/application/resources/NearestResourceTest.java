@@ -17,6 +17,7 @@
  */
 package com.graphhopper.application.resources;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
@@ -25,16 +26,19 @@ import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.MediaType;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
-import java.io.File;
+import java.io.*;
 import java.util.List;
+import java.util.Map;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
-import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author svantulden
@@ -65,4 +69,60 @@ public class NearestResourceTest {
         NearestResource.Response json = clientTarget(app, "/nearest?point=42.554851,1.536198").request().get(NearestResource.Response.class);
         assertArrayEquals(new double[]{1.5363743623376815, 42.554839049600155}, json.coordinates, "nearest point");
     }
+
+    @Test
+    public void testBulkNearestQuery() {
+        Map<String, Object> body = Map.of("points", List.of(
+                List.of(1.536198, 42.554851),
+                List.of(0, 0),
+                List.of(1.525, 42.51)),
+                "profile", "car");
+        JsonNode json = clientTarget(app, "/nearest").request().post(Entity.json(body), JsonNode.class);
+        JsonNode points = json.get("points");
+        assertEquals(3, points.size());
+        assertEquals(1.5363743623376815, points.get(0).get("coordinates").get(0).asDouble(), 1.e-6);
+        assertEquals(42.554839049600155, points.get(0).get("coordinates").get(1).asDouble(), 1.e-6);
+        assertTrue(points.get(0).get("edge_id").asInt() >= 0);
+        assertTrue(points.get(0).get("distance").asDouble() < 20);
+        // the point far outside the graph cannot be snapped, but the order is preserved
+        assertTrue(points.get(1).isNull());
+        assertTrue(points.get(2).get("distance").asDouble() < 500);
+    }
+
+    @Test
+    public void testBulkNearestQueryBinary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeDouble(42.554851);
+        out.writeDouble(1.536198);
+        out.writeDouble(0);
+        out.writeDouble(0);
+        byte[] response = clientTarget(app, "/nearest").request(MediaType.APPLICATION_OCTET_STREAM).
+                post(Entity.entity(bytes.toByteArray(), MediaType.APPLICATION_OCTET_STREAM), byte[].class);
+        assertEquals(2 * (3 * 8 + 4), response.length);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response));
+        assertEquals(42.554839049600155, in.readDouble(), 1.e-6);
+        assertEquals(1.5363743623376815, in.readDouble(), 1.e-6);
+        assertTrue(in.readInt() >= 0);
+        assertTrue(in.readDouble() < 20);
+        assertTrue(Double.isNaN(in.readDouble()));
+        assertTrue(Double.isNaN(in.readDouble()));
+        assertEquals(-1, in.readInt());
+        assertTrue(Double.isNaN(in.readDouble()));
+    }
+
+    @Test
+    public void testBulkNearestQueryBinaryIncomplete() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeDouble(42.554851);
+        out.writeDouble(1.536198);
+        // the longitude of the second point is missing
+        out.writeDouble(42.554851);
+        jakarta.ws.rs.core.Response response = clientTarget(app, "/nearest").request().
+                post(Entity.entity(bytes.toByteArray(), MediaType.APPLICATION_OCTET_STREAM));
+        assertEquals(400, response.getStatus());
+        String message = response.readEntity(JsonNode.class).get("message").asText();
+        assertTrue(message.contains("Point 1 is incomplete"), message);
+    }
 }
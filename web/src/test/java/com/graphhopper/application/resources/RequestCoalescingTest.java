@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class RequestCoalescingTest {
+    private static final String DIR = "./target/request-coalescing-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("routing.coalesce_requests", true).
+                putObject("routing.coalesce_requests.cache_ttl_ms", 10_000).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testConcurrentRouteRequests() throws Exception {
+        String url = "/route?profile=car&point=42.506694,1.521616&point=42.543311,1.588984";
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JsonNode>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                responses.add(executorService.submit(() -> clientTarget(app, url).request().get(JsonNode.class)));
+            JsonNode expected = responses.get(0).get(10, TimeUnit.SECONDS).get("paths");
+            for (Future<JsonNode> response : responses)
+                assertEquals(expected, response.get(10, TimeUnit.SECONDS).get("paths"));
+        } finally {
+            executorService.shutdownNow();
+        }
+        // a different request is not answered with the cached result
+        JsonNode other = clientTarget(app, url + "&instructions=false").request().get(JsonNode.class);
+        assertEquals(0, other.get("paths").get(0).path("instructions").size());
+    }
+
+    @Test
+    public void testCachedIsochrone() {
+        String url = "/isochrone?profile=car&point=42.531073,1.573792&time_limit=300";
+        JsonNode first = clientTarget(app, url).request().get(JsonNode.class);
+        JsonNode second = clientTarget(app, url).request().get(JsonNode.class);
+        assertEquals(first.get("polygons"), second.get("polygons"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.codahale.metrics.Gauge;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class RouteCacheResourceTest {
+    private static final String DIR = "./target/route-cache-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("routing.route_cache.max_bytes", 10_000_000).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car"))).
+                setCHProfiles(List.of(new CHProfile("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    private static long getGauge(String name) {
+        Gauge<?> gauge = app.getEnvironment().metrics().getGauges().get("routing.route_cache." + name);
+        return ((Number) gauge.getValue()).longValue();
+    }
+
+    @Test
+    public void testCachedRoute() {
+        String url = "/route?profile=car&point=42.506694,1.521616&point=42.543311,1.588984";
+        JsonNode first = clientTarget(app, url).request().get(JsonNode.class);
+        long hits = getGauge("hits");
+        JsonNode second = clientTarget(app, url).request().get(JsonNode.class);
+        assertEquals(hits + 1, getGauge("hits"));
+        assertEquals(first.get("paths"), second.get("paths"));
+
+        // a request with other output parameters is not answered with the cached result
+        long misses = getGauge("misses");
+        JsonNode other = clientTarget(app, url + "&instructions=false").request().get(JsonNode.class);
+        assertEquals(misses + 1, getGauge("misses"));
+        assertEquals(0, other.get("paths").get(0).path("instructions").size());
+        assertEquals(first.get("paths").get(0).get("distance"), other.get("paths").get(0).get("distance"));
+    }
+}
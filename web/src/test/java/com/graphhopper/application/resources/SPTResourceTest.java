@@ -33,9 +33,16 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import jakarta.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
 import static com.graphhopper.application.util.TestUtils.clientTarget;
@@ -101,6 +108,78 @@ public class SPTResourceTest {
         assertEquals("2385,2821,1234,13121,262", lines[3]);
     }
 
+    @Test
+    public void requestSPTMultipleSources() {
+        String rspCsvString = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&point=42.508552,1.532936&time_limit=300").request().get(String.class);
+        String[] lines = rspCsvString.split("\n");
+        assertEquals("longitude,latitude,time,distance,source", lines[0]);
+        // the second point reaches nodes that cannot be reached from the first point within the time limit
+        int singleSourceLines = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300").request().get(String.class).split("\n").length;
+        assertTrue(lines.length > singleSourceLines, lines.length + " vs. " + singleSourceLines);
+        int[] timeZero = new int[2];
+        int[] count = new int[2];
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",");
+            int source = Integer.parseInt(row[4]);
+            count[source]++;
+            if (Integer.parseInt(row[2]) == 0)
+                timeZero[source]++;
+        }
+        // both points are the start of the search and each of them reaches a part of the network first
+        assertEquals(1, timeZero[0]);
+        assertEquals(1, timeZero[1]);
+        assertTrue(count[0] > 50, "" + count[0]);
+        assertTrue(count[1] > 50, "" + count[1]);
+    }
+
+    @Test
+    public void requestBinary() throws IOException {
+        String query = "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=node_id,longitude,time,road_class,street_name";
+        String[] lines = clientTarget(app, query).request().get(String.class).split("\n");
+        byte[] bytes = clientTarget(app, query).request(MediaType.APPLICATION_OCTET_STREAM).get(byte[].class);
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        int rows = dis.readInt();
+        assertEquals(lines.length - 1, rows);
+        assertEquals(5, dis.readInt());
+        Map<String, Object> columns = new HashMap<>();
+        for (int c = 0; c < 5; c++) {
+            String name = dis.readUTF();
+            byte type = dis.readByte();
+            int length = dis.readInt();
+            if (type == 1) {
+                assertEquals(4 * rows, length);
+                int[] values = new int[rows];
+                for (int i = 0; i < rows; i++)
+                    values[i] = dis.readInt();
+                columns.put(name, values);
+            } else if (type == 2) {
+                assertEquals(8 * rows, length);
+                double[] values = new double[rows];
+                for (int i = 0; i < rows; i++)
+                    values[i] = dis.readDouble();
+                columns.put(name, values);
+            } else {
+                assertEquals(4, type);
+                String[] values = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    byte[] utf8 = new byte[dis.readInt()];
+                    dis.readFully(utf8);
+                    values[i] = new String(utf8, StandardCharsets.UTF_8);
+                }
+                columns.put(name, values);
+            }
+        }
+        assertEquals(-1, dis.read());
+        for (int i = 0; i < rows; i++) {
+            String[] row = lines[i + 1].split(",", -1);
+            assertEquals(Integer.parseInt(row[0]), ((int[]) columns.get("node_id"))[i]);
+            assertEquals(Double.parseDouble(row[1]), ((double[]) columns.get("longitude"))[i], 1e-6);
+            assertEquals(Integer.parseInt(row[2]), ((int[]) columns.get("time"))[i]);
+            assertEquals(row[3], ((String[]) columns.get("road_class"))[i]);
+            assertEquals(row[4], ((String[]) columns.get("street_name"))[i].replaceAll(",", ""));
+        }
+    }
+
     @Test
     public void requestDetails() {
         String rspCsvString = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=street_name,road_class,max_speed").request().get(String.class);
@@ -0,0 +1,84 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts the server with a warm-up from a file, including parameters that are not just hints.
+ */
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class WarmUpStartTest {
+    private static final String DIR = "./target/warm-up-gh/";
+    private static final String WARM_UP_FILE = "./target/warm-up-requests.txt";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        Helper.removeDir(new File(DIR));
+        try {
+            Files.write(new File(WARM_UP_FILE).toPath(), List.of(
+                    "# comments and empty lines are ignored",
+                    "",
+                    "/route?point=42.506694,1.521616&point=42.543311,1.588984&profile=car",
+                    "point=42.506694,1.521616&point=42.543311,1.588984&profile=car&algorithm=alternative_route" +
+                            "&details=road_class&details=max_speed&heading=90&locale=de&snap_prevention=ferry"));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", DIR).
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.encoded_values", "car_access, car_average_speed, road_class, max_speed").
+                putObject("warm_up.file", WARM_UP_FILE).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car")));
+        return config;
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+        new File(WARM_UP_FILE).delete();
+    }
+
+    @Test
+    public void testRouteAfterWarmUp() {
+        JsonNode json = clientTarget(app, "/route?profile=car&point=42.506694,1.521616&point=42.543311,1.588984").request().get(JsonNode.class);
+        assertTrue(json.get("paths").get(0).get("distance").asDouble() > 0, json.toString());
+    }
+}